@@ -0,0 +1,72 @@
+package com.mlspamdetection.webapp_backend.config;
+
+import com.mlspamdetection.webapp_backend.util.Deadline;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * DataSource that applies the current request's remaining time budget as JDBC query timeout.
+ *
+ * <p>Every statement created while a {@link Deadline} is bound to the thread gets
+ * {@link Statement#setQueryTimeout(int)} set to the remaining budget, rounded up to whole seconds.
+ * Creating a statement after the deadline has passed throws a {@code DeadlineExceededException},
+ * so the query is not sent at all. Work without a deadline, such as scheduled jobs and the
+ * prediction log flusher, is left untouched.</p>
+ */
+class DeadlineAwareDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    DeadlineAwareDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    /**
+     * Closes the wrapped pool, which would otherwise not be shut down with the context.
+     */
+    @Override
+    public void close() throws Exception {
+        if (getTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private static Connection wrap(Connection target) {
+        return (Connection) Proxy.newProxyInstance(DeadlineAwareDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("unwrap") && args[0] == Connection.class) {
+                        return target;
+                    }
+                    Deadline deadline = Deadline.current();
+                    boolean createsStatement = name.equals("createStatement") || name.startsWith("prepare");
+                    if (createsStatement && deadline != null) {
+                        deadline.check("database query");
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (createsStatement && deadline != null && result instanceof Statement statement) {
+                        statement.setQueryTimeout((int) Math.max(1, (deadline.remainingMillis() + 999) / 1000));
+                    }
+                    return result;
+                });
+    }
+}
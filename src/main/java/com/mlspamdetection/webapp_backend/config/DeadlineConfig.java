@@ -0,0 +1,38 @@
+package com.mlspamdetection.webapp_backend.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Configuration for request deadlines outside the web layer.
+ *
+ * <p>Deadlines are created by {@code DeadlineFilter}. This class makes the application's
+ * DataSource honour them, so JPA queries issued for a request are cancelled by the database once
+ * the request's budget is spent. Set {@code app.deadline.enabled=false} to turn both off.</p>
+ */
+@Configuration
+public class DeadlineConfig {
+
+    /**
+     * Wraps the application's DataSource in a {@link DeadlineAwareDataSource}.
+     *
+     * @param enabled whether request deadlines are enabled
+     * @return the post-processor wrapping the DataSource bean
+     */
+    @Bean
+    public static BeanPostProcessor deadlineDataSourcePostProcessor(@Value("${app.deadline.enabled:true}") boolean enabled) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (enabled && bean instanceof DataSource dataSource && !(bean instanceof DeadlineAwareDataSource)) {
+                    return new DeadlineAwareDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
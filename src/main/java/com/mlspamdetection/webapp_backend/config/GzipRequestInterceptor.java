@@ -0,0 +1,57 @@
+package com.mlspamdetection.webapp_backend.config;
+
+import com.mlspamdetection.webapp_backend.service.MLWireFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip-compresses request bodies of at least {@code minBytes} sent to the ML service.
+ *
+ * <p>If the ML service answers {@code 415 Unsupported Media Type} to a compressed body, the request
+ * is sent again uncompressed, so replicas without request decompression keep working. The rejection
+ * is recorded in {@link MLWireFormat}, so that replica is sent uncompressed bodies from then on
+ * until renegotiation.</p>
+ */
+class GzipRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    private final int minBytes;
+    private final MLWireFormat wireFormat;
+
+    GzipRequestInterceptor(int minBytes, MLWireFormat wireFormat) {
+        this.minBytes = minBytes;
+        this.wireFormat = wireFormat;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (body.length < minBytes || request.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)
+                || !wireFormat.acceptsGzip(request.getURI())) {
+            return execution.execute(request, body);
+        }
+
+        request.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        ClientHttpResponse response = execution.execute(request, gzip(body));
+        if (response.getStatusCode().value() != 415) {
+            return response;
+        }
+        response.close();
+        wireFormat.fallBackToUncompressed(request.getURI());
+        request.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        return execution.execute(request, body);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,247 @@
+package com.mlspamdetection.webapp_backend.config;
+
+import com.mlspamdetection.webapp_backend.service.MLWireFormat;
+import com.mlspamdetection.webapp_backend.util.Deadline;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.message.MessageSupport;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration class for the HTTP transport used to talk to the ML service.
+ *
+ * <p>This class builds two independent pooled transports on top of Apache HttpClient 5:
+ * one for live predictions and one for model retraining. Both share the same setup
+ * (keep-alive, idle eviction, connect/read/pool-acquire timeouts), but each has its own
+ * connection pool so a long-running retraining upload can never take connections away
+ * from {@code /api/predict}.</p>
+ *
+ * <p>All limits and timeouts are configured through {@code ml.service.*} properties:</p>
+ * <ul>
+ *   <li>{@code ml.service.pool.*} - pool size, keep-alive, connection lifetime and idle eviction for predictions</li>
+ *   <li>{@code ml.service.connect-timeout-ms} / {@code ml.service.read-timeout-ms} - per-call timeouts for predictions</li>
+ *   <li>{@code ml.service.retraining.*} - the same settings for the retraining transport</li>
+ *   <li>{@code ml.service.wire.gzip-*} - gzip compression of large request bodies, on both transports</li>
+ * </ul>
+ *
+ * <p>On the prediction transport, the response timeout is further cut to the remaining budget
+ * of the request being served, if it has a {@code Deadline}.</p>
+ *
+ * <p>Both RestTemplates read and write JSON and, since jackson-dataformat-cbor is on the classpath,
+ * CBOR; which one is sent is decided per request by {@code MLWireFormat}. CBOR is only spoken to
+ * the ML service; {@code WebMvcConfig} keeps it out of the application's own endpoints. Gzip-compressed responses
+ * are decompressed transparently by HttpClient.</p>
+ */
+@Configuration
+public class MLServiceConfig {
+
+    /**
+     * Creates the connection pool used for prediction calls.
+     *
+     * @param maxTotal maximum number of pooled connections
+     * @param maxPerRoute maximum number of pooled connections per ML service host
+     * @param connectTimeoutMs TCP connect timeout in milliseconds
+     * @param readTimeoutMs socket read timeout in milliseconds
+     * @param ttlMs maximum lifetime of a pooled connection, or 0 for no limit
+     * @return the pooling connection manager for prediction traffic
+     */
+    @Bean
+    public PoolingHttpClientConnectionManager mlConnectionManager(
+            @Value("${ml.service.pool.max-total:50}") int maxTotal,
+            @Value("${ml.service.pool.max-per-route:50}") int maxPerRoute,
+            @Value("${ml.service.connect-timeout-ms:2000}") long connectTimeoutMs,
+            @Value("${ml.service.read-timeout-ms:5000}") long readTimeoutMs,
+            @Value("${ml.service.pool.ttl-ms:0}") long ttlMs) {
+        return buildConnectionManager(maxTotal, maxPerRoute, connectTimeoutMs, readTimeoutMs, ttlMs);
+    }
+
+    /**
+     * Creates the connection pool used for retraining calls.
+     *
+     * <p>Retraining uploads the whole feedback set and waits for the model to train,
+     * so this pool is small and uses a much longer read timeout than the prediction pool.</p>
+     *
+     * @param maxTotal maximum number of pooled connections
+     * @param connectTimeoutMs TCP connect timeout in milliseconds
+     * @param readTimeoutMs socket read timeout in milliseconds
+     * @param ttlMs maximum lifetime of a pooled connection, or 0 for no limit
+     * @return the pooling connection manager for retraining traffic
+     */
+    @Bean
+    public PoolingHttpClientConnectionManager retrainingConnectionManager(
+            @Value("${ml.service.retraining.pool.max-total:2}") int maxTotal,
+            @Value("${ml.service.retraining.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${ml.service.retraining.read-timeout-ms:600000}") long readTimeoutMs,
+            @Value("${ml.service.retraining.pool.ttl-ms:0}") long ttlMs) {
+        return buildConnectionManager(maxTotal, maxTotal, connectTimeoutMs, readTimeoutMs, ttlMs);
+    }
+
+    /**
+     * Creates the RestTemplate used by {@code MLServiceClient} for prediction calls.
+     *
+     * @param connectionManager the prediction connection pool
+     * @param readTimeoutMs response timeout in milliseconds
+     * @param acquireTimeoutMs maximum time to wait for a free pooled connection
+     * @param keepAliveMs keep-alive applied when the ML service does not send one
+     * @param idleEvictionMs idle time after which pooled connections are closed
+     * @param gzipEnabled whether large request bodies are gzip-compressed
+     * @param gzipMinBytes minimum body size in bytes that is compressed
+     * @param wireFormat per-replica encoding state, which remembers replicas rejecting gzip
+     * @return a RestTemplate backed by the pooled prediction transport
+     */
+    @Bean
+    public RestTemplate mlRestTemplate(
+            @Qualifier("mlConnectionManager") PoolingHttpClientConnectionManager connectionManager,
+            @Value("${ml.service.read-timeout-ms:5000}") long readTimeoutMs,
+            @Value("${ml.service.pool.acquire-timeout-ms:1000}") long acquireTimeoutMs,
+            @Value("${ml.service.pool.keep-alive-ms:30000}") long keepAliveMs,
+            @Value("${ml.service.pool.idle-eviction-ms:60000}") long idleEvictionMs,
+            @Value("${ml.service.wire.gzip-enabled:false}") boolean gzipEnabled,
+            @Value("${ml.service.wire.gzip-min-bytes:16384}") int gzipMinBytes,
+            MLWireFormat wireFormat) {
+        RestTemplate restTemplate = buildRestTemplate(connectionManager, readTimeoutMs, acquireTimeoutMs, keepAliveMs, idleEvictionMs, true);
+        if (gzipEnabled) {
+            restTemplate.getInterceptors().add(new GzipRequestInterceptor(gzipMinBytes, wireFormat));
+        }
+        return restTemplate;
+    }
+
+    /**
+     * Creates the RestTemplate used by {@code RetrainingService} for retraining calls.
+     *
+     * @param connectionManager the retraining connection pool
+     * @param readTimeoutMs response timeout in milliseconds
+     * @param acquireTimeoutMs maximum time to wait for a free pooled connection
+     * @param keepAliveMs keep-alive applied when the ML service does not send one
+     * @param idleEvictionMs idle time after which pooled connections are closed
+     * @param gzipEnabled whether large request bodies are gzip-compressed
+     * @param gzipMinBytes minimum body size in bytes that is compressed
+     * @param wireFormat per-replica encoding state, which remembers replicas rejecting gzip
+     * @return a RestTemplate backed by the pooled retraining transport
+     */
+    @Bean
+    public RestTemplate retrainingRestTemplate(
+            @Qualifier("retrainingConnectionManager") PoolingHttpClientConnectionManager connectionManager,
+            @Value("${ml.service.retraining.read-timeout-ms:600000}") long readTimeoutMs,
+            @Value("${ml.service.retraining.pool.acquire-timeout-ms:5000}") long acquireTimeoutMs,
+            @Value("${ml.service.retraining.pool.keep-alive-ms:30000}") long keepAliveMs,
+            @Value("${ml.service.retraining.pool.idle-eviction-ms:60000}") long idleEvictionMs,
+            @Value("${ml.service.wire.gzip-enabled:false}") boolean gzipEnabled,
+            @Value("${ml.service.wire.gzip-min-bytes:16384}") int gzipMinBytes,
+            MLWireFormat wireFormat) {
+        RestTemplate restTemplate = buildRestTemplate(connectionManager, readTimeoutMs, acquireTimeoutMs, keepAliveMs, idleEvictionMs, false);
+        if (gzipEnabled) {
+            restTemplate.getInterceptors().add(new GzipRequestInterceptor(gzipMinBytes, wireFormat));
+        }
+        return restTemplate;
+    }
+
+    /**
+     * Returns a snapshot of a connection pool's usage, suitable for an admin response.
+     *
+     * @param connectionManager the pool to inspect
+     * @return leased, pending, available and maximum connection counts
+     */
+    public static Map<String, Object> poolStats(PoolingHttpClientConnectionManager connectionManager) {
+        PoolStats stats = connectionManager.getTotalStats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("leased", stats.getLeased());
+        result.put("pending", stats.getPending());
+        result.put("available", stats.getAvailable());
+        result.put("max", stats.getMax());
+        result.put("maxPerRoute", connectionManager.getDefaultMaxPerRoute());
+        return result;
+    }
+
+    private PoolingHttpClientConnectionManager buildConnectionManager(
+            int maxTotal, int maxPerRoute, long connectTimeoutMs, long readTimeoutMs, long ttlMs) {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                // Keep-alive is per response, in the keep-alive strategy; this caps a connection's
+                // total age, e.g. to spread load again after ML service replicas are added
+                .setTimeToLive(ttlMs > 0 ? TimeValue.ofMilliseconds(ttlMs) : TimeValue.NEG_ONE_MILLISECOND)
+                // Re-check connections that sat idle for a while before handing them out
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build();
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(connectionConfig)
+                .build();
+    }
+
+    private RestTemplate buildRestTemplate(PoolingHttpClientConnectionManager connectionManager, long readTimeoutMs,
+                                           long acquireTimeoutMs, long keepAliveMs, long idleEvictionMs,
+                                           boolean deadlineAware) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(acquireTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> keepAlive(response, keepAliveMs))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictionMs))
+                .build();
+
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        if (deadlineAware) {
+            // Wait no longer for a response than the request being served has left
+            requestFactory.setHttpContextFactory((method, uri) -> {
+                Deadline deadline = Deadline.current();
+                if (deadline == null) {
+                    return null;
+                }
+                HttpClientContext context = HttpClientContext.create();
+                context.setRequestConfig(RequestConfig.copy(requestConfig)
+                        .setResponseTimeout(Timeout.ofMilliseconds(deadline.capMillis(readTimeoutMs)))
+                        .build());
+                return context;
+            });
+        }
+        return new RestTemplate(requestFactory);
+    }
+
+    /**
+     * Returns how long a connection may idle in the pool after a response: the ML service's own
+     * {@code Keep-Alive: timeout} if it sent a shorter one, otherwise {@code keepAliveMs}.
+     */
+    private static TimeValue keepAlive(HttpResponse response, long keepAliveMs) {
+        Iterator<HeaderElement> elements = MessageSupport.iterate(response, HttpHeaders.KEEP_ALIVE);
+        while (elements.hasNext()) {
+            HeaderElement element = elements.next();
+            if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                try {
+                    return TimeValue.ofMilliseconds(Math.min(keepAliveMs, Long.parseLong(element.getValue()) * 1000));
+                } catch (NumberFormatException ignored) {
+                    // Fall back to our own keep-alive
+                }
+            }
+        }
+        return TimeValue.ofMilliseconds(keepAliveMs);
+    }
+}
@@ -50,6 +50,18 @@ public class MailConfig {
     @Value("${spring.mail.password}")
     private String password;
 
+    /**
+     * Whether JavaMail logs the SMTP conversation, including credentials exchanged during login.
+     */
+    @Value("${app.mail.debug:false}")
+    private boolean debug;
+
+    /**
+     * Connect, read and write timeout for the SMTP connection in milliseconds.
+     */
+    @Value("${app.mail.timeout-ms:10000}")
+    private int timeoutMs;
+
     /**
      * Creates and configures a JavaMailSender bean for sending emails.
      * 
@@ -59,7 +71,8 @@ public class MailConfig {
      *   <li>SMTP as the transport protocol</li>
      *   <li>SMTP authentication</li>
      *   <li>STARTTLS for secure communication</li>
-     *   <li>Debug mode (should be disabled in production)</li>
+     *   <li>Debug output, off unless {@code app.mail.debug} is set</li>
+     *   <li>Connection and read timeouts, so an unresponsive server cannot stall the outbox dispatcher</li>
      * </ul>
      * 
      * @return A configured JavaMailSender instance
@@ -77,7 +90,10 @@ public class MailConfig {
         props.put("mail.transport.protocol", "smtp");
         props.put("mail.smtp.auth", "true");
         props.put("mail.smtp.starttls.enable", "true");
-        props.put("mail.debug", "true"); // Set to false in production
+        props.put("mail.debug", String.valueOf(debug));
+        props.put("mail.smtp.connectiontimeout", String.valueOf(timeoutMs));
+        props.put("mail.smtp.timeout", String.valueOf(timeoutMs));
+        props.put("mail.smtp.writetimeout", String.valueOf(timeoutMs));
 
         return mailSender;
     }
@@ -1,41 +1,112 @@
 package com.mlspamdetection.webapp_backend.config;
 
+import com.mlspamdetection.webapp_backend.security.BoundedPasswordEncoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Configuration class for password encoding.
- * 
+ *
  * <p>This class provides a bean for password encoding using BCrypt, which is a strong
  * one-way hashing algorithm specifically designed for password hashing.</p>
- * 
+ *
  * <p>BCrypt automatically handles salting of passwords and has a configurable work factor
  * that allows the algorithm to be slowed down as hardware gets faster, maintaining its
  * resistance to brute-force attacks over time.</p>
- * 
+ *
  * <p>The PasswordEncoder bean is used throughout the application for:</p>
  * <ul>
  *   <li>Encoding passwords during user registration</li>
  *   <li>Verifying passwords during authentication</li>
  *   <li>Encoding passwords during password reset operations</li>
  * </ul>
+ *
+ * <p>Hashing runs on a bounded pool (see {@link BoundedPasswordEncoder}) so that bursts of
+ * logins and registrations cannot take every core away from the other endpoints.</p>
  */
 @Configuration
+@Slf4j
 public class PasswordConfig {
 
+    private static final int MAX_BCRYPT_STRENGTH = 16;
+
+    /**
+     * BCrypt work factor, or the lowest one considered when calibrating.
+     */
+    @Value("${app.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    /**
+     * Target time in milliseconds for one hash; when positive, the work factor is raised on startup
+     * as far as this target allows. 0 disables calibration.
+     */
+    @Value("${app.password.target-hash-ms:0}")
+    private long targetHashMs;
+
+    /**
+     * Number of passwords hashed or checked at once; 0 uses half the available processors.
+     */
+    @Value("${app.password.hash-threads:0}")
+    private int hashThreads;
+
     /**
-     * Creates a BCryptPasswordEncoder bean for secure password hashing.
-     * 
-     * <p>This implementation uses the BCrypt strong hashing function with a default strength of 10.
-     * The higher the strength parameter, the more work is required to compute the hash, making
-     * brute force attacks more difficult but also increasing the time required to hash passwords.</p>
-     * 
+     * Maximum number of hashes waiting for a thread before new ones are rejected.
+     */
+    @Value("${app.password.queue-capacity:64}")
+    private int queueCapacity;
+
+    /**
+     * Longest time in milliseconds a request waits for its hash, including queueing.
+     */
+    @Value("${app.password.max-wait-ms:5000}")
+    private long maxWaitMs;
+
+    /**
+     * Creates a BCrypt password encoder that hashes on a bounded pool.
+     *
+     * <p>The strength is {@code app.password.bcrypt-strength}, or, when
+     * {@code app.password.target-hash-ms} is set, the highest strength whose measured hash time on
+     * this machine stays within the target. Stored hashes with a lower strength are upgraded the
+     * next time their owner logs in.</p>
+     *
      * @return A configured PasswordEncoder instance using BCrypt algorithm
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder() {
+        int strength = targetHashMs > 0 ? calibrateStrength() : bcryptStrength;
+        int threads = hashThreads > 0 ? hashThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        log.info("Password hashing with BCrypt strength {} on {} threads (queue {})", strength, threads, queueCapacity);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), threads, queueCapacity, maxWaitMs);
+    }
+
+    /**
+     * Finds the highest strength, starting from the configured one, whose hash time stays within
+     * the target. Each step doubles the work, so the next step is only taken if twice the measured
+     * time still fits.
+     */
+    private int calibrateStrength() {
+        int strength = bcryptStrength;
+        // Warm up the JIT on a cheap hash first so it does not count against the first measurement
+        new BCryptPasswordEncoder(4).encode("calibration");
+        long elapsedMs = measureHashMillis(strength);
+        while (strength < MAX_BCRYPT_STRENGTH && elapsedMs * 2 <= targetHashMs) {
+            strength++;
+            elapsedMs = measureHashMillis(strength);
+        }
+        log.info("Calibrated BCrypt strength {} ({} ms per hash, target {} ms)", strength, elapsedMs, targetHashMs);
+        return strength;
+    }
+
+    private static long measureHashMillis(int strength) {
+        PasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long start = System.nanoTime();
+        encoder.encode("calibration");
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
     }
 }
@@ -3,12 +3,9 @@ package com.mlspamdetection.webapp_backend.config;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Refill;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Configuration class for API rate limiting.
@@ -23,24 +20,21 @@ import java.util.concurrent.ConcurrentHashMap;
  * until the bucket is refilled according to a defined rate.</p>
  * 
  * <p>In this implementation, rate limiting is applied to authentication endpoints to prevent
- * brute force attacks. Each client (identified by IP address) gets their own bucket.</p>
+ * brute force attacks. Each client (identified by IP address) gets their own bucket, kept in the
+ * bounded {@code RateLimitBucketStore}.</p>
  */
 @Configuration
 public class RateLimitingConfig {
 
     /**
-     * Creates a concurrent map to store rate limiting buckets.
-     * 
-     * <p>This bean maintains a mapping between client identifiers (typically IP addresses)
-     * and their corresponding rate limit buckets. Using a ConcurrentHashMap ensures thread-safety
-     * for concurrent access in a multi-threaded web application environment.</p>
-     * 
-     * @return A thread-safe map for storing rate limiting buckets
+     * Number of requests a client may make per {@link #REFILL_PERIOD}.
      */
-    @Bean
-    public Map<String, Bucket> buckets() {
-        return new ConcurrentHashMap<>();
-    }
+    public static final long CAPACITY = 10;
+
+    /**
+     * Period over which a bucket is refilled to {@link #CAPACITY}.
+     */
+    public static final Duration REFILL_PERIOD = Duration.ofMinutes(1);
 
     /**
      * Creates a new rate limiting bucket with the specified limits.
@@ -56,7 +50,7 @@ public class RateLimitingConfig {
      */
     public Bucket createNewBucket() {
         // 10 requests per minute as specified in requirements
-        Bandwidth limit = Bandwidth.classic(10, Refill.greedy(10, Duration.ofMinutes(1)));
+        Bandwidth limit = Bandwidth.classic(CAPACITY, Refill.greedy(CAPACITY, REFILL_PERIOD));
         return Bucket.builder().addLimit(limit).build();
     }
 }
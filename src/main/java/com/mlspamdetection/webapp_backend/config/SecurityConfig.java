@@ -1,10 +1,11 @@
 package com.mlspamdetection.webapp_backend.config;
 
-import com.mlspamdetection.webapp_backend.repo.UserRepository;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUserCache;
 import com.mlspamdetection.webapp_backend.security.JwtAuthenticationFilter;
 import com.mlspamdetection.webapp_backend.security.JwtUtil;
 import com.mlspamdetection.webapp_backend.security.OAuth2AuthenticationSuccessHandler;
 import com.mlspamdetection.webapp_backend.service.UserService;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -16,6 +17,7 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.core.GrantedAuthorityDefaults;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
@@ -61,9 +63,9 @@ public class SecurityConfig {
     private final JwtUtil jwtUtil;
     
     /**
-     * Repository for accessing user data, used for token validation and user lookups.
+     * Cache of authenticated principals, used to resolve the user of a validated token.
      */
-    private final UserRepository userRepository;
+    private final AuthenticatedUserCache authenticatedUserCache;
     
     /**
      * CORS filter for handling Cross-Origin Resource Sharing, applied before authentication.
@@ -76,18 +78,18 @@ public class SecurityConfig {
      * @param userDetailsService service for loading user-specific data
      * @param userService service for user-related operations
      * @param jwtUtil utility for JWT operations
-     * @param userRepository repository for user data access
+     * @param authenticatedUserCache cache of authenticated principals
      * @param corsFilter filter for handling Cross-Origin Resource Sharing
      */
     public SecurityConfig(UserDetailsService userDetailsService,
                           UserService userService,
                           JwtUtil jwtUtil,
-                          UserRepository userRepository,
+                          AuthenticatedUserCache authenticatedUserCache,
                           CorsFilter corsFilter) {
         this.userDetailsService = userDetailsService;
         this.userService = userService;
         this.jwtUtil = jwtUtil;
-        this.userRepository = userRepository;
+        this.authenticatedUserCache = authenticatedUserCache;
         this.corsFilter = corsFilter;
     }
 
@@ -114,12 +116,14 @@ public class SecurityConfig {
      */
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
-        JwtAuthenticationFilter jwtAuthFilter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, userRepository);
+        JwtAuthenticationFilter jwtAuthFilter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, authenticatedUserCache);
 
         http
                 .cors(cors -> cors.disable()) // Disable Spring Security's CORS handling
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
+                        // Async dispatches resume a request that was already authorized (e.g. /api/predict)
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(HttpMethod.GET, "/ping").permitAll()
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/admin/register-admin").permitAll()
@@ -183,6 +187,9 @@ public class SecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder);
+        if (userDetailsService instanceof UserDetailsPasswordService passwordService) {
+            authProvider.setUserDetailsPasswordService(passwordService);
+        }
         return authProvider;
     }
 
@@ -1,11 +1,16 @@
 package com.mlspamdetection.webapp_backend.config;
 
 import com.mlspamdetection.webapp_backend.interceptor.RateLimitingInterceptor;
+import com.mlspamdetection.webapp_backend.interceptor.UserQuotaInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 /**
  * Configuration class for Spring MVC customization.
  * 
@@ -27,13 +32,20 @@ public class WebMvcConfig implements WebMvcConfigurer {
     private final RateLimitingInterceptor rateLimitingInterceptor;
 
     /**
-     * Constructs a new WebMvcConfig with the specified rate limiting interceptor.
+     * The per-user quota interceptor applied to prediction endpoints.
+     */
+    private final UserQuotaInterceptor userQuotaInterceptor;
+
+    /**
+     * Constructs a new WebMvcConfig with the specified interceptors.
      * 
      * @param rateLimitingInterceptor The interceptor that implements rate limiting functionality
+     * @param userQuotaInterceptor The interceptor that enforces per-user prediction quotas
      */
     @Autowired
-    public WebMvcConfig(RateLimitingInterceptor rateLimitingInterceptor) {
+    public WebMvcConfig(RateLimitingInterceptor rateLimitingInterceptor, UserQuotaInterceptor userQuotaInterceptor) {
         this.rateLimitingInterceptor = rateLimitingInterceptor;
+        this.userQuotaInterceptor = userQuotaInterceptor;
     }
 
     /**
@@ -46,17 +58,43 @@ public class WebMvcConfig implements WebMvcConfigurer {
      * 
      * <p>The following endpoints are rate-limited:</p>
      * <ul>
-     *   <li>/api/login - User login endpoint</li>
-     *   <li>/api/register - User registration endpoint</li>
-     *   <li>/api/refresh-token - JWT token refresh endpoint</li>
+     *   <li>/api/auth/login - User login endpoint</li>
+     *   <li>/api/auth/register - User registration endpoint</li>
+     *   <li>/api/auth/refresh-token - JWT token refresh endpoint</li>
+     *   <li>/api/auth/google-auth - Google sign-in endpoint</li>
+     *   <li>/api/auth/resend-verification - Verification email endpoint</li>
      * </ul>
      * 
+     * <p>Prediction endpoints additionally get per-user quotas, since each request there costs
+     * an ML inference. Batch predictions are charged per item by the controller instead, once the
+     * items have been validated.</p>
+     * 
      * @param registry The interceptor registry to which interceptors are added
      */
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         // Apply rate limiting only to authentication endpoints
         registry.addInterceptor(rateLimitingInterceptor)
-                .addPathPatterns("/api/login", "/api/register", "/api/refresh-token");
+                .addPathPatterns("/api/auth/login", "/api/auth/register", "/api/auth/refresh-token",
+                        "/api/auth/google-auth", "/api/auth/resend-verification");
+
+        // Apply per-user quotas to prediction endpoints
+        registry.addInterceptor(userQuotaInterceptor)
+                .addPathPatterns("/api/predict", "/api/predict/**")
+                .excludePathPatterns("/api/predict/batch");
+    }
+
+    /**
+     * Removes the CBOR converter from the application's endpoints.
+     * 
+     * <p>Spring MVC registers it automatically because jackson-dataformat-cbor is on the classpath
+     * for talking to the ML service. The public API only speaks JSON, so a client sending
+     * {@code Accept: application/cbor} must not get CBOR back.</p>
+     * 
+     * @param converters The message converters configured for Spring MVC
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(MappingJackson2CborHttpMessageConverter.class::isInstance);
     }
 }
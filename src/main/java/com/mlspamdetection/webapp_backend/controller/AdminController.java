@@ -2,8 +2,17 @@ package com.mlspamdetection.webapp_backend.controller;
 
 import com.mlspamdetection.webapp_backend.dto.AdminRegistrationRequest;
 import com.mlspamdetection.webapp_backend.dto.UserDTO;
+import com.mlspamdetection.webapp_backend.filter.AdmissionControlFilter;
 import com.mlspamdetection.webapp_backend.model.User;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUserCache;
+import com.mlspamdetection.webapp_backend.security.BoundedPasswordEncoder;
 import com.mlspamdetection.webapp_backend.service.AdminService;
+import com.mlspamdetection.webapp_backend.service.AuthTokenService;
+import com.mlspamdetection.webapp_backend.service.EmailOutboxDispatcher;
+import com.mlspamdetection.webapp_backend.service.PredictionLogWriter;
+import com.mlspamdetection.webapp_backend.service.RateLimitBucketStore;
+import com.mlspamdetection.webapp_backend.service.UserQuotaService;
+import com.mlspamdetection.webapp_backend.util.GoogleTokenVerifier;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -20,10 +29,32 @@ import java.util.Map;
 public class AdminController {
 
     private final AdminService adminService;
+    private final PredictionLogWriter predictionLogWriter;
+    private final AdmissionControlFilter admissionControlFilter;
+    private final RateLimitBucketStore rateLimitBucketStore;
+    private final UserQuotaService userQuotaService;
+    private final AuthenticatedUserCache authenticatedUserCache;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final EmailOutboxDispatcher emailOutboxDispatcher;
+    private final GoogleTokenVerifier googleTokenVerifier;
+    private final AuthTokenService authTokenService;
 
     @Autowired
-    public AdminController(AdminService adminService) {
+    public AdminController(AdminService adminService, PredictionLogWriter predictionLogWriter,
+                           AdmissionControlFilter admissionControlFilter, RateLimitBucketStore rateLimitBucketStore,
+                           UserQuotaService userQuotaService, AuthenticatedUserCache authenticatedUserCache,
+                           BoundedPasswordEncoder passwordEncoder, EmailOutboxDispatcher emailOutboxDispatcher,
+                           GoogleTokenVerifier googleTokenVerifier, AuthTokenService authTokenService) {
         this.adminService = adminService;
+        this.predictionLogWriter = predictionLogWriter;
+        this.admissionControlFilter = admissionControlFilter;
+        this.rateLimitBucketStore = rateLimitBucketStore;
+        this.userQuotaService = userQuotaService;
+        this.authenticatedUserCache = authenticatedUserCache;
+        this.passwordEncoder = passwordEncoder;
+        this.emailOutboxDispatcher = emailOutboxDispatcher;
+        this.googleTokenVerifier = googleTokenVerifier;
+        this.authTokenService = authTokenService;
     }
 
     @GetMapping("/users")
@@ -58,4 +89,49 @@ public class AdminController {
     public ResponseEntity<?> getSystemStats() {
         return ResponseEntity.ok(adminService.getSystemStats());
     }
+
+    @GetMapping("/prediction-log-writer")
+    public ResponseEntity<?> getPredictionLogWriterStats() {
+        return ResponseEntity.ok(predictionLogWriter.stats());
+    }
+
+    @GetMapping("/admission")
+    public ResponseEntity<?> getAdmissionStats() {
+        return ResponseEntity.ok(admissionControlFilter.stats());
+    }
+
+    @GetMapping("/rate-limit")
+    public ResponseEntity<?> getRateLimitStats() {
+        return ResponseEntity.ok(rateLimitBucketStore.stats());
+    }
+
+    @GetMapping("/quotas")
+    public ResponseEntity<?> getQuotaStats() {
+        return ResponseEntity.ok(userQuotaService.stats());
+    }
+
+    @GetMapping("/principal-cache")
+    public ResponseEntity<?> getPrincipalCacheStats() {
+        return ResponseEntity.ok(authenticatedUserCache.stats());
+    }
+
+    @GetMapping("/password-hashing")
+    public ResponseEntity<?> getPasswordHashingStats() {
+        return ResponseEntity.ok(passwordEncoder.stats());
+    }
+
+    @GetMapping("/email-outbox")
+    public ResponseEntity<?> getEmailOutboxStats() {
+        return ResponseEntity.ok(emailOutboxDispatcher.stats());
+    }
+
+    @GetMapping("/google-keys")
+    public ResponseEntity<?> getGoogleKeyStats() {
+        return ResponseEntity.ok(googleTokenVerifier.stats());
+    }
+
+    @GetMapping("/tokens")
+    public ResponseEntity<?> getTokenStats() {
+        return ResponseEntity.ok(authTokenService.stats());
+    }
 }
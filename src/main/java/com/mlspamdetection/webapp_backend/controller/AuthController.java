@@ -3,12 +3,15 @@ package com.mlspamdetection.webapp_backend.controller;
 import com.mlspamdetection.webapp_backend.dto.*;
 import com.mlspamdetection.webapp_backend.model.User;
 import com.mlspamdetection.webapp_backend.repo.UserRepository;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUser;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUserCache;
 import com.mlspamdetection.webapp_backend.security.JwtUtil;
+import com.mlspamdetection.webapp_backend.service.AuthService;
+import com.mlspamdetection.webapp_backend.service.AuthTokenService;
 import com.mlspamdetection.webapp_backend.service.EmailVerificationService;
 import com.mlspamdetection.webapp_backend.service.UserService;
 import com.mlspamdetection.webapp_backend.util.GoogleTokenVerifier;
 import com.mlspamdetection.webapp_backend.util.GoogleUserData;
-import jakarta.mail.MessagingException;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -34,6 +37,9 @@ public class AuthController {
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
     private final EmailVerificationService emailVerificationService;
+    private final AuthenticatedUserCache authenticatedUserCache;
+    private final AuthService authService;
+    private final AuthTokenService authTokenService;
 
     @Autowired
     private GoogleTokenVerifier googleTokenVerifier;
@@ -42,12 +48,17 @@ public class AuthController {
     private UserService userService;
 
     public AuthController(AuthenticationManager authenticationManager, UserRepository userRepository,
-                          PasswordEncoder passwordEncoder, JwtUtil jwtUtil, EmailVerificationService emailVerificationService) {
+                          PasswordEncoder passwordEncoder, JwtUtil jwtUtil, EmailVerificationService emailVerificationService,
+                          AuthenticatedUserCache authenticatedUserCache, AuthService authService,
+                          AuthTokenService authTokenService) {
         this.authenticationManager = authenticationManager;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtUtil = jwtUtil;
         this.emailVerificationService = emailVerificationService;
+        this.authenticatedUserCache = authenticatedUserCache;
+        this.authService = authService;
+        this.authTokenService = authTokenService;
     }
 
     @PostMapping("/register")
@@ -62,20 +73,10 @@ public class AuthController {
         user.setEmail(registerRequest.getEmail());
         user.setPassword(passwordEncoder.encode(registerRequest.getPassword()));
         user.setVerified(false);
-        String verificationCode = UUID.randomUUID().toString();
-        user.setVerificationToken(verificationCode);
-
-        userRepository.save(user);
-
-        try {
-            emailVerificationService.sendVerificationEmail(user);
-            return ResponseEntity.ok("Registration successful! Please check your email to verify your account.");
-        } catch (MessagingException e) {
-            return ResponseEntity
-                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Failed to send verification email: " + e.getMessage());
-        }
 
+        // Saves the user and queues the verification email in one transaction
+        emailVerificationService.sendVerificationEmail(user);
+        return ResponseEntity.ok("Registration successful! Please check your email to verify your account.");
     }
 
     @PostMapping("/login")
@@ -91,8 +92,12 @@ public class AuthController {
                     .map(auth -> auth.replaceFirst("^ROLE_", ""))
                     .collect(Collectors.toList());
             String jwt = jwtUtil.generateToken(userDetails, roles);
+            String refreshToken = authenticatedUserCache.get(userDetails.getUsername())
+                    .map(principal -> authTokenService.issueRefreshToken(userRepository.getReferenceById(principal.id())))
+                    .orElseThrow(() -> new BadCredentialsException("User no longer exists"));
             return ResponseEntity.ok().body(Map.of(
                     "token", jwt,
+                    "refreshToken", refreshToken,
                     "message", "Login successful"
             ));
 
@@ -103,14 +108,7 @@ public class AuthController {
     }
     @GetMapping("/verify")
     public ResponseEntity<?> verifyEmail(@RequestParam String token) {
-        Optional<User> userOptional = userRepository.findByVerificationToken(token);
-
-        if (userOptional.isPresent()) {
-            User user = userOptional.get();
-            user.setVerified(true);
-            user.setVerificationToken(null); // Clear the token after verification
-            userRepository.save(user);
-
+        if (emailVerificationService.verifyEmail(token)) {
             return ResponseEntity.ok("Email verified successfully. You can now log in.");
         } else {
             return ResponseEntity.badRequest().body("Invalid verification token");
@@ -120,19 +118,14 @@ public class AuthController {
 
     @PostMapping("/resend-verification")
     public ResponseEntity<?> resendVerification(@RequestBody ResendVerificationRequest request) {
-        try {
-            boolean sent = emailVerificationService.resendVerificationEmail(request.getEmail());
+        boolean sent = emailVerificationService.resendVerificationEmail(request.getEmail());
 
-            if (sent) {
-                return ResponseEntity.ok(Collections.singletonMap("message",
-                        "Verification email has been resent. Please check your inbox."));
-            } else {
-                return ResponseEntity.badRequest().body(Collections.singletonMap("error",
-                        "User not found or already verified."));
-            }
-        } catch (MessagingException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Collections.singletonMap("error", "Failed to send verification email"));
+        if (sent) {
+            return ResponseEntity.ok(Collections.singletonMap("message",
+                    "Verification email has been resent. Please check your inbox."));
+        } else {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error",
+                    "User not found or already verified."));
         }
     }
 
@@ -162,11 +155,12 @@ public class AuthController {
                     .map(auth -> auth.replaceFirst("^ROLE_", ""))
                     .collect(Collectors.toList());
             String jwt = jwtUtil.generateToken(userDetails, roles);
+            String refreshToken = authTokenService.issueRefreshToken(user);
             System.out.println("JWT generated successfully");
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwt)
-                    .body(Collections.singletonMap("token", jwt));
+                    .body(Map.of("token", jwt, "refreshToken", refreshToken));
 
         } catch (Exception e) {
             System.err.println("Google authentication failed: " + e.getMessage());
@@ -189,12 +183,12 @@ public class AuthController {
         String username = jwtUtil.extractUsername(token);
 
         if (username != null) {
-            Optional<User> userOpt = userRepository.findByEmail(username);
+            Optional<AuthenticatedUser> userOpt = authenticatedUserCache.get(username);
             if (userOpt.isPresent()) {
-                User user = userOpt.get();
+                AuthenticatedUser user = userOpt.get();
                 Map<String, Object> response = new HashMap<>();
-                response.put("email", user.getEmail());
-                response.put("id", user.getId());
+                response.put("email", user.email());
+                response.put("id", user.id());
                 // Add other user details as needed, but exclude sensitive info like password
 
                 return ResponseEntity.ok(response);
@@ -205,59 +199,20 @@ public class AuthController {
     }
     @PostMapping("/refresh-token")
     public ResponseEntity<?> refreshToken(@RequestBody TokenRefreshRequest request) {
-        try {
-            // Validate refresh token
-            String refreshToken = request.getRefreshToken();
-            if (refreshToken == null || refreshToken.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                        .body(Collections.singletonMap("error", "Refresh token is required"));
-            }
-
-            // Extract username from token
-            String username = jwtUtil.extractUsername(refreshToken);
-            if (username == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Collections.singletonMap("error", "Invalid refresh token"));
-            }
-
-            // Find user by email
-            Optional<User> userOpt = userRepository.findByEmail(username);
-            if (userOpt.isEmpty() || !refreshToken.equals(userOpt.get().getRefreshToken())) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Collections.singletonMap("error", "Invalid refresh token"));
-            }
-
-            User user = userOpt.get();
-
-            // Generate new tokens
-            UserDetails userDetails = org.springframework.security.core.userdetails.User.builder()
-                    .username(user.getEmail())
-                    .password(user.getPassword())
-                    .roles("USER")
-                    .build();
-
-            List<String> roles = userDetails.getAuthorities().stream()
-                    .map(GrantedAuthority::getAuthority)
-                    .map(auth -> auth.replaceFirst("^ROLE_", ""))
-                    .collect(Collectors.toList());
-            String newAccessToken = jwtUtil.generateToken(userDetails, roles);
-            String newRefreshToken = UUID.randomUUID().toString(); // Or use jwtUtil to generate a refresh token
-
-            // Update refresh token in database
-            user.setRefreshToken(newRefreshToken);
-            userRepository.save(user);
-
-            // Return new tokens
-            Map<String, String> response = new HashMap<>();
-            response.put("accessToken", newAccessToken);
-            response.put("refreshToken", newRefreshToken);
+        if (request.getRefreshToken() == null || request.getRefreshToken().isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Collections.singletonMap("error", "Refresh token is required"));
+        }
 
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        Optional<TokenRefreshResponse> tokens = authService.refreshToken(request);
+        if (tokens.isEmpty()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(Collections.singletonMap("error", "Failed to refresh token: " + e.getMessage()));
+                    .body(Collections.singletonMap("error", "Invalid refresh token"));
         }
-    }
 
-
-}
\ No newline at end of file
+        Map<String, String> response = new HashMap<>();
+        response.put("accessToken", tokens.get().getAccessToken());
+        response.put("refreshToken", tokens.get().getRefreshToken());
+        return ResponseEntity.ok(response);
+    }
+}
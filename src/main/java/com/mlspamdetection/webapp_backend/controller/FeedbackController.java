@@ -1,7 +1,8 @@
 package com.mlspamdetection.webapp_backend.controller;
 
 import com.mlspamdetection.webapp_backend.dto.FeedbackRequest;
-import com.mlspamdetection.webapp_backend.model.User;
+import com.mlspamdetection.webapp_backend.repo.UserRepository;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUser;
 import com.mlspamdetection.webapp_backend.service.FeedbackService;
 
 import jakarta.validation.Valid;
@@ -23,19 +24,21 @@ import java.util.Collections;
 public class FeedbackController {
 
     private final FeedbackService feedbackService;
+    private final UserRepository userRepository;
 
     @Autowired
-    public FeedbackController(FeedbackService feedbackService) {
+    public FeedbackController(FeedbackService feedbackService, UserRepository userRepository) {
         this.feedbackService = feedbackService;
+        this.userRepository = userRepository;
     }
 
     @PostMapping("/correct-prediction")
     public ResponseEntity<?> submitPredictionCorrection(
             @Valid @RequestBody FeedbackRequest feedbackRequest,
-            @AuthenticationPrincipal User user) {
+            @AuthenticationPrincipal AuthenticatedUser principal) {
 
         try {
-            feedbackService.submitFeedback(feedbackRequest, user);
+            feedbackService.submitFeedback(feedbackRequest, userRepository.getReferenceById(principal.id()));
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(Collections.singletonMap("message", "Feedback received"));
         } catch (IllegalArgumentException e) {
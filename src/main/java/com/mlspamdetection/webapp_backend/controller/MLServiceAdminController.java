@@ -0,0 +1,82 @@
+package com.mlspamdetection.webapp_backend.controller;
+
+import com.mlspamdetection.webapp_backend.config.MLServiceConfig;
+import com.mlspamdetection.webapp_backend.service.MLServiceClient;
+import com.mlspamdetection.webapp_backend.service.MLWireFormat;
+import com.mlspamdetection.webapp_backend.service.PredictionCache;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/ml")
+public class MLServiceAdminController {
+
+    private final PoolingHttpClientConnectionManager mlConnectionManager;
+    private final PoolingHttpClientConnectionManager retrainingConnectionManager;
+    private final MLServiceClient mlServiceClient;
+    private final PredictionCache predictionCache;
+    private final MLWireFormat wireFormat;
+
+    public MLServiceAdminController(
+            @Qualifier("mlConnectionManager") PoolingHttpClientConnectionManager mlConnectionManager,
+            @Qualifier("retrainingConnectionManager") PoolingHttpClientConnectionManager retrainingConnectionManager,
+            MLServiceClient mlServiceClient,
+            PredictionCache predictionCache,
+            MLWireFormat wireFormat) {
+        this.mlConnectionManager = mlConnectionManager;
+        this.retrainingConnectionManager = retrainingConnectionManager;
+        this.mlServiceClient = mlServiceClient;
+        this.predictionCache = predictionCache;
+        this.wireFormat = wireFormat;
+    }
+
+    @GetMapping("/pools")
+    public ResponseEntity<Map<String, Object>> getPoolStats() {
+        Map<String, Object> pools = new LinkedHashMap<>();
+        pools.put("prediction", MLServiceConfig.poolStats(mlConnectionManager));
+        pools.put("retraining", MLServiceConfig.poolStats(retrainingConnectionManager));
+        return ResponseEntity.ok(pools);
+    }
+
+    @GetMapping("/micro-batching")
+    public ResponseEntity<Map<String, Object>> getMicroBatchStats() {
+        return ResponseEntity.ok(mlServiceClient.getMicroBatchStats());
+    }
+
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(predictionCache.stats());
+    }
+
+    @GetMapping("/circuit-breaker")
+    public ResponseEntity<Map<String, Object>> getCircuitBreakerStats() {
+        return ResponseEntity.ok(mlServiceClient.getCircuitBreakerStats());
+    }
+
+    @GetMapping("/concurrency-limit")
+    public ResponseEntity<Map<String, Object>> getConcurrencyLimitStats() {
+        return ResponseEntity.ok(mlServiceClient.getConcurrencyLimitStats());
+    }
+
+    @GetMapping("/replicas")
+    public ResponseEntity<Map<String, Object>> getReplicaStats() {
+        return ResponseEntity.ok(mlServiceClient.getReplicaStats());
+    }
+
+    @GetMapping("/wire-format")
+    public ResponseEntity<Map<String, Object>> getWireFormatStats() {
+        return ResponseEntity.ok(wireFormat.stats());
+    }
+
+    @GetMapping("/coalescing")
+    public ResponseEntity<Map<String, Object>> getCoalescingStats() {
+        return ResponseEntity.ok(mlServiceClient.getCoalescingStats());
+    }
+}
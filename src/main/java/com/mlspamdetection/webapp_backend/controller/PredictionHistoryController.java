@@ -2,6 +2,9 @@ package com.mlspamdetection.webapp_backend.controller;
 
 import com.mlspamdetection.webapp_backend.dto.PredictionHistoryResponse;
 import com.mlspamdetection.webapp_backend.model.User;
+import com.mlspamdetection.webapp_backend.repo.UserRepository;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUser;
+import com.mlspamdetection.webapp_backend.service.BlockingCallExecutor;
 import com.mlspamdetection.webapp_backend.service.PredictionService;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
@@ -12,6 +15,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 @RestController
@@ -19,23 +23,29 @@ import java.util.concurrent.TimeUnit;
 public class PredictionHistoryController {
 
     private final PredictionService historyService;
+    private final BlockingCallExecutor blockingCalls;
+    private final UserRepository userRepository;
 
-    public PredictionHistoryController(PredictionService historyService) {
+    public PredictionHistoryController(PredictionService historyService, BlockingCallExecutor blockingCalls,
+                                       UserRepository userRepository) {
         this.historyService = historyService;
+        this.blockingCalls = blockingCalls;
+        this.userRepository = userRepository;
     }
 
     @GetMapping("/history")
-    public ResponseEntity<PredictionHistoryResponse> getHistory(
-            @AuthenticationPrincipal User user,
+    public CompletableFuture<ResponseEntity<PredictionHistoryResponse>> getHistory(
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
-        if (user == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        if (principal == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
         }
+        User user = userRepository.getReferenceById(principal.id());
 
-        return ResponseEntity.ok()
+        return blockingCalls.supply(() -> ResponseEntity.ok()
                 .cacheControl(CacheControl.maxAge(1, TimeUnit.HOURS))
-                .body(historyService.getPredictionHistory(user, page, size));
+                .body(historyService.getPredictionHistory(user, page, size)));
     }
 }
\ No newline at end of file
@@ -1,15 +1,27 @@
 package com.mlspamdetection.webapp_backend.controller;
 
+import com.mlspamdetection.webapp_backend.dto.BatchPredictionResponse;
+import com.mlspamdetection.webapp_backend.dto.BatchSpamCheckRequest;
 import com.mlspamdetection.webapp_backend.dto.PredictionResponse;
 import com.mlspamdetection.webapp_backend.dto.PredictionResult;
 import com.mlspamdetection.webapp_backend.dto.SpamCheckRequest;
-import com.mlspamdetection.webapp_backend.exception.UserNotFoundException;import com.mlspamdetection.webapp_backend.model.PredictionLog;
+import com.mlspamdetection.webapp_backend.exception.BlockingPoolBusyException;
+import com.mlspamdetection.webapp_backend.exception.DeadlineExceededException;
+import com.mlspamdetection.webapp_backend.exception.MLServiceUnavailableException;
+import com.mlspamdetection.webapp_backend.interceptor.UserQuotaInterceptor;
+import com.mlspamdetection.webapp_backend.model.PredictionLog;
 import com.mlspamdetection.webapp_backend.model.User;
-import com.mlspamdetection.webapp_backend.repo.PredictionLogRepository;
 import com.mlspamdetection.webapp_backend.repo.UserRepository;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUser;
+import com.mlspamdetection.webapp_backend.service.BlockingCallExecutor;
 import com.mlspamdetection.webapp_backend.service.MLServiceClient;
+import com.mlspamdetection.webapp_backend.service.PredictionCache;
+import com.mlspamdetection.webapp_backend.service.PredictionLogWriter;
+import com.mlspamdetection.webapp_backend.service.UserQuotaService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -17,7 +29,11 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api")
@@ -26,64 +42,199 @@ public class SpamController {
     private static final Logger logger = LoggerFactory.getLogger(SpamController.class);
 
     private final MLServiceClient mlServiceClient;
-    private final PredictionLogRepository logRepository;
+    private final PredictionLogWriter logWriter;
     private final UserRepository userRepository;
+    private final BlockingCallExecutor blockingCalls;
+    private final UserQuotaService quotaService;
 
-    public SpamController(MLServiceClient mlServiceClient, PredictionLogRepository logRepository, UserRepository userRepository) {
+    @Value("${ml.batch.max-items:100}")
+    private int maxBatchItems;
+
+    public SpamController(MLServiceClient mlServiceClient, PredictionLogWriter logWriter, UserRepository userRepository,
+                          BlockingCallExecutor blockingCalls, UserQuotaService quotaService) {
         this.mlServiceClient = mlServiceClient;
-        this.logRepository = logRepository;
+        this.logWriter = logWriter;
         this.userRepository = userRepository;
+        this.blockingCalls = blockingCalls;
+        this.quotaService = quotaService;
     }
 
     @PostMapping("/predict")
-    public ResponseEntity<PredictionResponse> checkSpam(@AuthenticationPrincipal User user, @Valid @RequestBody SpamCheckRequest request) {
-        try {
-            String emailText = request.getContent();
+    public CompletableFuture<ResponseEntity<PredictionResponse>> checkSpam(@AuthenticationPrincipal AuthenticatedUser principal, @Valid @RequestBody SpamCheckRequest request,
+                                                                           @RequestHeader(value = PredictionCache.BYPASS_HEADER, required = false) String cacheDirective) {
+        String emailText = request.getContent();
 
-            if (emailText == null || emailText.isEmpty()) {
-                logger.warn("Content is required");
-                return ResponseEntity.badRequest().body(new PredictionResponse(-1, 0, "Content is required"));
-            }
+        if (emailText == null || emailText.isEmpty()) {
+            logger.warn("Content is required");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(new PredictionResponse(-1, 0, "Content is required")));
+        }
 
-            if (emailText.length() > 10000) {
-                logger.warn("Content exceeds 10,000 characters");
-                return ResponseEntity.badRequest().body(new PredictionResponse(-1, 0, "Content exceeds 10,000 characters"));
-            }
+        if (emailText.length() > 10000) {
+            logger.warn("Content exceeds 10,000 characters");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(new PredictionResponse(-1, 0, "Content exceeds 10,000 characters")));
+        }
+
+        // Add email validation here
+
+        if (principal == null) {
+            logger.error("User not found after successful authentication");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND).body(new PredictionResponse(-1, 0, "User not found")));
+        }
+        // Reference for the log's foreign key only; the user row is not loaded
+        User user = userRepository.getReferenceById(principal.id());
+
+        // On the HTTP/2 transport the request thread is released while the ML service works;
+        // the log write then runs on the blocking I/O pool rather than on an HTTP/2 response thread
+        return mlServiceClient.getPredictionAsync(emailText, "bypass".equalsIgnoreCase(cacheDirective))
+                .thenApplyAsync(mlResult -> toResponse(principal, user, emailText, mlResult), blockingCalls.executor())
+                .exceptionally(this::toErrorResponse);
+    }
 
-            // Add email validation here
+    private ResponseEntity<PredictionResponse> toResponse(AuthenticatedUser principal, User user, String emailText, PredictionResult mlResult) {
+        if (mlResult == null || mlResult.getPrediction() == null) {
+            logger.error("Prediction service error: null result");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new PredictionResponse(-1, 0, "Prediction service error"));
+        }
 
-            PredictionResult mlResult = mlServiceClient.getPrediction(emailText);
+        PredictionLog log = new PredictionLog();
+        log.setUser(user);
+        log.setContent(emailText);
+        log.setSpam(mlResult.getPrediction().equalsIgnoreCase("spam"));
+        log.setConfidence(mlResult.getProbability());
+        logWriter.write(log);
 
-            if (mlResult == null || mlResult.getPrediction() == null) {
-                logger.error("Prediction service error: null result");
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new PredictionResponse(-1, 0, "Prediction service error"));
-            }
+        int prediction = mlResult.getPrediction().equalsIgnoreCase("spam") ? 1 : 0;
+        double probability = mlResult.getProbability();
+
+        logger.info("Prediction for user {}: prediction={}, probability={}, degraded={}", principal.email(), prediction, probability, mlResult.isDegraded());
 
-            if (user == null) {
-                logger.error("User not found after successful authentication");
-                throw new UserNotFoundException("User not found");
+        PredictionResponse response = new PredictionResponse(prediction, probability, null);
+        response.setDegraded(mlResult.isDegraded());
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<PredictionResponse> toErrorResponse(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof MLServiceUnavailableException e) {
+            logger.warn("Prediction service unavailable, retry after {}s", e.getRetryAfterSeconds());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new PredictionResponse(-1, 0, "Prediction service temporarily unavailable"));
+        }
+        if (cause instanceof BlockingPoolBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new PredictionResponse(-1, 0, "Server busy, please retry later"));
+        }
+        if (cause instanceof DeadlineExceededException) {
+            logger.warn("Prediction abandoned: {}", cause.getMessage());
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(new PredictionResponse(-1, 0, "Request deadline exceeded"));
+        }
+        logger.error("Failed to process prediction: {}", cause.getMessage(), cause);
+        return ResponseEntity.internalServerError().body(new PredictionResponse(-1, 0, "Failed to process prediction"));
+    }
+
+    @PostMapping("/predict/batch")
+    public ResponseEntity<BatchPredictionResponse> checkSpamBatch(@AuthenticationPrincipal AuthenticatedUser principal, @Valid @RequestBody BatchSpamCheckRequest request,
+                                                                  @RequestHeader(value = PredictionCache.BYPASS_HEADER, required = false) String cacheDirective) {
+        List<SpamCheckRequest> items = request.getItems();
+
+        if (items.size() > maxBatchItems) {
+            logger.warn("Batch of {} items exceeds the limit of {}", items.size(), maxBatchItems);
+            return ResponseEntity.badRequest().body(new BatchPredictionResponse(null, "Batch exceeds " + maxBatchItems + " items"));
+        }
+
+        if (principal == null) {
+            logger.error("User not found after successful authentication");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new BatchPredictionResponse(null, "User not found"));
+        }
+        User user = userRepository.getReferenceById(principal.id());
+
+        // Validate each item on its own; only valid items are sent to the ML service
+        List<PredictionResponse> results = new ArrayList<>(items.size());
+        List<Integer> validIndexes = new ArrayList<>();
+        List<String> validTexts = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            String emailText = items.get(i) == null ? null : items.get(i).getContent();
+            if (emailText == null || emailText.isEmpty()) {
+                results.add(new PredictionResponse(-1, 0, "Content is required"));
+            } else if (emailText.length() > 10000) {
+                results.add(new PredictionResponse(-1, 0, "Content exceeds 10,000 characters"));
+            } else {
+                results.add(null);
+                validIndexes.add(i);
+                validTexts.add(emailText);
             }
+        }
 
-            PredictionLog log = new PredictionLog();
-            log.setUser(user);
-            log.setContent(emailText);
-            log.setSpam(mlResult.getPrediction().equalsIgnoreCase("spam"));
-            log.setConfidence(mlResult.getProbability());
-            logRepository.save(log);
+        // Each item costs an ML inference, so the quota is charged per item rather than per request
+        UserQuotaService.Decision quota = quotaService.tryAcquire(principal, validTexts.size());
+        HttpHeaders quotaHeaders = new HttpHeaders();
+        if (quota.limit() >= 0) {
+            quotaHeaders.set(UserQuotaInterceptor.LIMIT_HEADER, String.valueOf(quota.limit()));
+            quotaHeaders.set(UserQuotaInterceptor.REMAINING_HEADER, String.valueOf(quota.remaining()));
+        }
+        if (!quota.allowed()) {
+            logger.warn("Batch of {} items exceeds the prediction quota of user {}", validTexts.size(), principal.id());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .headers(quotaHeaders)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(quota.retryAfterSeconds()))
+                    .body(new BatchPredictionResponse(null, "Prediction quota exceeded - please try again later"));
+        }
+
+        try {
+            List<PredictionResult> mlResults = mlServiceClient.getPredictions(validTexts, "bypass".equalsIgnoreCase(cacheDirective));
+
+            List<PredictionLog> logs = new ArrayList<>(mlResults.size());
+            for (int j = 0; j < mlResults.size(); j++) {
+                PredictionResult mlResult = mlResults.get(j);
+                int index = validIndexes.get(j);
+
+                if (mlResult.getError() != null || mlResult.getPrediction() == null) {
+                    results.set(index, new PredictionResponse(-1, 0, "Prediction service error"));
+                    continue;
+                }
+
+                boolean spam = mlResult.getPrediction().equalsIgnoreCase("spam");
+                PredictionLog log = new PredictionLog();
+                log.setUser(user);
+                log.setContent(validTexts.get(j));
+                log.setSpam(spam);
+                log.setConfidence(mlResult.getProbability());
+                logs.add(log);
+
+                PredictionResponse response = new PredictionResponse(spam ? 1 : 0, mlResult.getProbability(), null);
+                response.setDegraded(mlResult.isDegraded());
+                results.set(index, response);
+            }
 
-            int prediction = mlResult.getPrediction().equalsIgnoreCase("spam") ? 1 : 0;
-            double probability = mlResult.getProbability();
+            // One JDBC batch for the whole request instead of one INSERT per item
+            logWriter.writeAll(logs);
 
-            logger.info("Prediction for user {}: prediction={}, probability={}", user.getEmail(), prediction, probability);
+            logger.info("Batch prediction for user {}: {} items, {} classified", principal.email(), items.size(), logs.size());
 
-            return ResponseEntity.ok(new PredictionResponse(prediction, probability, null));
+            return ResponseEntity.ok().headers(quotaHeaders).body(new BatchPredictionResponse(results, null));
 
-        } catch (UserNotFoundException e) {
-            logger.error("User not found: {}", e.getMessage());
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new PredictionResponse(-1, 0, "User not found"));
+        } catch (MLServiceUnavailableException e) {
+            logger.warn("Prediction service unavailable for batch, retry after {}s", e.getRetryAfterSeconds());
+            for (int index : validIndexes) {
+                results.set(index, new PredictionResponse(-1, 0, "Prediction service temporarily unavailable"));
+            }
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new BatchPredictionResponse(results, "Prediction service temporarily unavailable"));
+        } catch (DeadlineExceededException e) {
+            logger.warn("Batch prediction abandoned: {}", e.getMessage());
+            for (int index : validIndexes) {
+                results.set(index, new PredictionResponse(-1, 0, "Request deadline exceeded"));
+            }
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(new BatchPredictionResponse(results, "Request deadline exceeded"));
         } catch (Exception e) {
-            logger.error("Failed to process prediction: {}", e.getMessage(), e);
-            return ResponseEntity.internalServerError().body(new PredictionResponse(-1, 0, "Failed to process prediction"));
+            logger.error("Failed to process batch prediction: {}", e.getMessage(), e);
+            for (int index : validIndexes) {
+                results.set(index, new PredictionResponse(-1, 0, "Failed to process prediction"));
+            }
+            return ResponseEntity.internalServerError().body(new BatchPredictionResponse(results, "Failed to process prediction"));
         }
     }
 }
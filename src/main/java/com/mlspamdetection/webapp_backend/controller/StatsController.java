@@ -2,7 +2,12 @@ package com.mlspamdetection.webapp_backend.controller;
 
 import com.mlspamdetection.webapp_backend.dto.StatsResponse;
 import com.mlspamdetection.webapp_backend.model.User;
+import com.mlspamdetection.webapp_backend.repo.UserRepository;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUser;
+import com.mlspamdetection.webapp_backend.service.BlockingCallExecutor;
 import com.mlspamdetection.webapp_backend.service.StatsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
@@ -12,39 +17,49 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/stats")
 public class StatsController {
 
+    private static final Logger logger = LoggerFactory.getLogger(StatsController.class);
+
     private final StatsService statsService;
+    private final BlockingCallExecutor blockingCalls;
+    private final UserRepository userRepository;
 
     @Autowired
-    public StatsController(StatsService statsService) {
+    public StatsController(StatsService statsService, BlockingCallExecutor blockingCalls, UserRepository userRepository) {
         this.statsService = statsService;
+        this.blockingCalls = blockingCalls;
+        this.userRepository = userRepository;
     }
 
     @GetMapping
-    public ResponseEntity<StatsResponse> getUserStats(@AuthenticationPrincipal User user) {
-        if (user == null) {
-            System.out.println("Unauthenticated stats access attempt");
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new StatsResponse());
+    public CompletableFuture<ResponseEntity<StatsResponse>> getUserStats(@AuthenticationPrincipal AuthenticatedUser principal) {
+        if (principal == null) {
+            logger.warn("Unauthenticated stats access attempt");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new StatsResponse()));
         }
 
-        System.out.println("Getting stats for user: " + user.getEmail() + " (ID: " + user.getId() + ")");
+        logger.debug("Getting stats for user ID: {}", principal.id());
+        User user = userRepository.getReferenceById(principal.id());
 
-        StatsResponse stats = statsService.getUserStats(user);
+        return blockingCalls.supply(() -> {
+            StatsResponse stats = statsService.getUserStats(user);
 
-        if (stats == null) {
-            System.out.println("Null stats generated for user ID: " + user.getId());
-            return ResponseEntity.internalServerError().build();
-        }
+            if (stats == null) {
+                logger.error("Null stats generated for user ID: {}", user.getId());
+                return ResponseEntity.internalServerError().<StatsResponse>build();
+            }
 
-        return ResponseEntity.ok()
-                .cacheControl(CacheControl.maxAge(30, TimeUnit.MINUTES))
-                .body(stats);
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.maxAge(30, TimeUnit.MINUTES))
+                    .body(stats);
+        });
     }
 
 }
@@ -0,0 +1,32 @@
+package com.mlspamdetection.webapp_backend.dto;
+
+import java.util.List;
+
+public class BatchPredictionResponse {
+
+    // One entry per request item, in request order
+    private List<PredictionResponse> results;
+    private String errorMessage;
+
+    public BatchPredictionResponse(List<PredictionResponse> results, String errorMessage) {
+        this.results = results;
+        this.errorMessage = errorMessage;
+    }
+
+    // Getters and setters
+    public List<PredictionResponse> getResults() {
+        return results;
+    }
+
+    public void setResults(List<PredictionResponse> results) {
+        this.results = results;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+}
@@ -0,0 +1,21 @@
+package com.mlspamdetection.webapp_backend.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class BatchSpamCheckRequest {
+
+    // Items are validated one by one so a bad item only fails its own slot in the response
+    @NotEmpty(message = "Items cannot be empty")
+    private List<SpamCheckRequest> items;
+
+    // Getters and setters
+    public List<SpamCheckRequest> getItems() {
+        return items;
+    }
+
+    public void setItems(List<SpamCheckRequest> items) {
+        this.items = items;
+    }
+}
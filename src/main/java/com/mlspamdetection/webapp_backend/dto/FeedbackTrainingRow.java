@@ -0,0 +1,11 @@
+package com.mlspamdetection.webapp_backend.dto;
+
+/**
+ * Unprocessed feedback joined with the content of the prediction it corrects, as read for retraining.
+ *
+ * @param feedbackId ID of the feedback entry
+ * @param content the email text that was classified
+ * @param label the label the user corrected the prediction to
+ */
+public record FeedbackTrainingRow(Long feedbackId, String content, String label) {
+}
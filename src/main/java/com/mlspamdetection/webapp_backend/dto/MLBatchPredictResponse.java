@@ -0,0 +1,50 @@
+package com.mlspamdetection.webapp_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * Response of the ML service's {@code /predict} endpoint for a batch of texts.
+ *
+ * <p>The predictions are listed under either {@code data} or {@code predictions}, in request order.</p>
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MLBatchPredictResponse {
+    private Boolean success;
+    private String error;
+    private List<MLPrediction> data;
+    private List<MLPrediction> predictions;
+
+    public Boolean getSuccess() {
+        return success;
+    }
+
+    public void setSuccess(Boolean success) {
+        this.success = success;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public List<MLPrediction> getData() {
+        return data;
+    }
+
+    public void setData(List<MLPrediction> data) {
+        this.data = data;
+    }
+
+    public List<MLPrediction> getPredictions() {
+        return predictions;
+    }
+
+    public void setPredictions(List<MLPrediction> predictions) {
+        this.predictions = predictions;
+    }
+}
@@ -0,0 +1,31 @@
+package com.mlspamdetection.webapp_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Response of the ML service's {@code /predict} endpoint for a single text.
+ *
+ * <p>The prediction is either nested under {@code data} or given at the top level, which is why
+ * this class extends {@link MLPrediction}.</p>
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MLPredictResponse extends MLPrediction {
+    private Boolean success;
+    private MLPrediction data;
+
+    public Boolean getSuccess() {
+        return success;
+    }
+
+    public void setSuccess(Boolean success) {
+        this.success = success;
+    }
+
+    public MLPrediction getData() {
+        return data;
+    }
+
+    public void setData(MLPrediction data) {
+        this.data = data;
+    }
+}
@@ -0,0 +1,40 @@
+package com.mlspamdetection.webapp_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * One prediction as returned by the ML service, decoded from JSON or CBOR.
+ *
+ * <p>{@code prediction} is either a label ("ham"/"spam") or a class number (0/1), and
+ * {@code probability} may arrive as a number or a numeric string; both are coerced by Jackson.</p>
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MLPrediction {
+    private String prediction;
+    private Double probability;
+    private String error; // Set when the ML service could not classify this item
+
+    public String getPrediction() {
+        return prediction;
+    }
+
+    public void setPrediction(String prediction) {
+        this.prediction = prediction;
+    }
+
+    public Double getProbability() {
+        return probability;
+    }
+
+    public void setProbability(Double probability) {
+        this.probability = probability;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
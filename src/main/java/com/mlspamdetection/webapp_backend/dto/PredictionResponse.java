@@ -5,6 +5,7 @@ public class PredictionResponse {
     private int prediction;
     private double probability;
     private String errorMessage; // New field for error messages
+    private boolean degraded; // True when the verdict comes from the cache while the ML service is unavailable
 
 
     public PredictionResponse(int prediction, double probability, String errorMessage) {
@@ -39,4 +40,12 @@ public class PredictionResponse {
     public void setErrorMessage(String errorMessage) {
         this.errorMessage = errorMessage;
     }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public void setDegraded(boolean degraded) {
+        this.degraded = degraded;
+    }
 }
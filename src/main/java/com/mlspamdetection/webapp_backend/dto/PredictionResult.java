@@ -3,6 +3,8 @@ package com.mlspamdetection.webapp_backend.dto;
 public class PredictionResult {
     private String prediction;
     private Double probability;
+    private String error; // Set when the ML service rejected this item of a batch
+    private boolean degraded; // Set when served from an older model's cached verdict because the ML service is unavailable
 
     public PredictionResult(String prediction, double probability) {
         this.prediction = prediction;
@@ -24,4 +26,20 @@ public class PredictionResult {
     public void setProbability(Double probability) {
         this.probability = probability;
     }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public void setDegraded(boolean degraded) {
+        this.degraded = degraded;
+    }
 }
@@ -0,0 +1,31 @@
+package com.mlspamdetection.webapp_backend.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Thrown when blocking work cannot be queued because the blocking I/O pool is saturated.
+ *
+ * <p>Answered with 503 and a {@code Retry-After} header.</p>
+ */
+public class BlockingPoolBusyException extends ResponseStatusException {
+
+    private final long retryAfterSeconds;
+
+    public BlockingPoolBusyException(long retryAfterSeconds) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "Server busy, please retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return headers;
+    }
+}
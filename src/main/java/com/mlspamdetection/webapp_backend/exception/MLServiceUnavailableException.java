@@ -0,0 +1,19 @@
+package com.mlspamdetection.webapp_backend.exception;
+
+/**
+ * Thrown when a call to the ML service is rejected without being attempted, because its circuit
+ * breaker is open.
+ */
+public class MLServiceUnavailableException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public MLServiceUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
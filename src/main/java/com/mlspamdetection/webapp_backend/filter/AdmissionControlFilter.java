@@ -0,0 +1,235 @@
+package com.mlspamdetection.webapp_backend.filter;
+
+import com.mlspamdetection.webapp_backend.util.CoDelLimiter;
+import com.mlspamdetection.webapp_backend.util.Deadline;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admits requests by priority class so that prediction floods cannot starve the rest of the API.
+ *
+ * <p>Every request to {@code /ping} or {@code /api/**} belongs to one {@link Priority} class, and
+ * each class has its own {@link CoDelLimiter} with {@code app.admission.<class>.max-concurrent}
+ * slots and {@code app.admission.<class>.max-queued} waiting places. A request that finds no free
+ * slot waits for one, at most {@code app.admission.interval-ms}, or only
+ * {@code app.admission.target-queue-ms} once its class has a standing queue, and never beyond its
+ * {@link Deadline}. While any higher class is overloaded, lower classes get no wait at all, so
+ * bulk and interactive predictions are shed first. Shed requests are answered with 503 and a
+ * {@code Retry-After} header.</p>
+ *
+ * <p>The filter runs after {@code DeadlineFilter} and before Spring Security, so rejected requests
+ * cost neither a JWT check nor a user lookup. Slots of asynchronous requests are given back when
+ * the response completes, not when the servlet thread is released.</p>
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 1)
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    /**
+     * Request classes, highest priority first.
+     */
+    public enum Priority {
+        HEALTH, AUTH, ADMIN, INTERACTIVE, BULK
+    }
+
+    /**
+     * Whether admission control is applied.
+     */
+    @Value("${app.admission.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Maximum wait in milliseconds while a class has a standing queue.
+     */
+    @Value("${app.admission.target-queue-ms:10}")
+    private long targetQueueMs;
+
+    /**
+     * Maximum wait in milliseconds otherwise, and how long a queue must persist to count as standing.
+     */
+    @Value("${app.admission.interval-ms:100}")
+    private long intervalMs;
+
+    /**
+     * Value of the {@code Retry-After} header sent with 503 responses, in seconds.
+     */
+    @Value("${app.admission.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    @Value("${app.admission.health.max-concurrent:4}")
+    private int healthMaxConcurrent;
+
+    @Value("${app.admission.health.max-queued:4}")
+    private int healthMaxQueued;
+
+    @Value("${app.admission.auth.max-concurrent:16}")
+    private int authMaxConcurrent;
+
+    @Value("${app.admission.auth.max-queued:16}")
+    private int authMaxQueued;
+
+    @Value("${app.admission.admin.max-concurrent:8}")
+    private int adminMaxConcurrent;
+
+    @Value("${app.admission.admin.max-queued:8}")
+    private int adminMaxQueued;
+
+    @Value("${app.admission.interactive.max-concurrent:80}")
+    private int interactiveMaxConcurrent;
+
+    @Value("${app.admission.interactive.max-queued:30}")
+    private int interactiveMaxQueued;
+
+    @Value("${app.admission.bulk.max-concurrent:8}")
+    private int bulkMaxConcurrent;
+
+    @Value("${app.admission.bulk.max-queued:8}")
+    private int bulkMaxQueued;
+
+    private final Map<Priority, CoDelLimiter> limiters = new EnumMap<>(Priority.class);
+
+    /**
+     * Creates one limiter per priority class.
+     */
+    @PostConstruct
+    void createLimiters() {
+        limiters.put(Priority.HEALTH, limiter(healthMaxConcurrent, healthMaxQueued));
+        limiters.put(Priority.AUTH, limiter(authMaxConcurrent, authMaxQueued));
+        limiters.put(Priority.ADMIN, limiter(adminMaxConcurrent, adminMaxQueued));
+        limiters.put(Priority.INTERACTIVE, limiter(interactiveMaxConcurrent, interactiveMaxQueued));
+        limiters.put(Priority.BULK, limiter(bulkMaxConcurrent, bulkMaxQueued));
+    }
+
+    /**
+     * Returns the state of every class's limiter.
+     *
+     * @return limiter metrics keyed by priority class
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        limiters.forEach((priority, limiter) -> stats.put(priority.name().toLowerCase(), limiter.stats()));
+        return stats;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String path = path(request);
+        return !path.equals("/ping") && !path.startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Priority priority = classify(path(request));
+        CoDelLimiter limiter = limiters.get(priority);
+        if (!limiter.tryAcquire(maxWaitMillis(priority))) {
+            log.debug("Shedding {} request to {}", priority, request.getRequestURI());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server overloaded, please retry later");
+            return;
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                limiter.release();
+            }
+        };
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    private long maxWaitMillis(Priority priority) {
+        for (Priority higher : Priority.values()) {
+            if (higher == priority) {
+                break;
+            }
+            if (limiters.get(higher).isOverloaded()) {
+                return 0;
+            }
+        }
+        Deadline deadline = Deadline.current();
+        return deadline == null ? intervalMs : Math.max(0, deadline.remainingMillis());
+    }
+
+    private static Priority classify(String path) {
+        if (path.equals("/ping")) {
+            return Priority.HEALTH;
+        }
+        if (path.startsWith("/api/auth/")) {
+            return Priority.AUTH;
+        }
+        if (path.startsWith("/api/admin/")) {
+            return Priority.ADMIN;
+        }
+        if (path.equals("/api/predict/batch")) {
+            return Priority.BULK;
+        }
+        return Priority.INTERACTIVE;
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private CoDelLimiter limiter(int maxConcurrent, int maxQueued) {
+        return new CoDelLimiter(maxConcurrent, maxQueued, targetQueueMs, intervalMs);
+    }
+
+    /**
+     * Gives the slot of an asynchronous request back once its response is finished.
+     */
+    private record ReleasingListener(Runnable release) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.mlspamdetection.webapp_backend.filter;
+
+import com.mlspamdetection.webapp_backend.util.Deadline;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Gives every API request a deadline and binds it to the request thread.
+ *
+ * <p>The budget comes from the {@value Deadline#TIMEOUT_HEADER} header in milliseconds, capped at
+ * {@code app.deadline.max-ms}. Without the header, {@code /api/predict} gets
+ * {@code app.deadline.predict-ms} and every other {@code /api/**} route gets
+ * {@code app.deadline.default-ms}. Paths matching {@code app.deadline.exempt-paths}, such as the
+ * long-running retraining endpoints, get none.</p>
+ *
+ * <p>The filter runs before Spring Security, so the JWT user lookup is already bounded. Later
+ * stages read the deadline with {@link Deadline#current()}: the ML client sends the remaining
+ * budget on as its own timeout, and JDBC statements get it as their query timeout. A request that
+ * arrives with no budget left is answered with 504 straight away.</p>
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 2)
+@Slf4j
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    /**
+     * Whether requests get deadlines at all.
+     */
+    @Value("${app.deadline.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Budget in milliseconds for API requests without the header; 0 for none.
+     */
+    @Value("${app.deadline.default-ms:30000}")
+    private long defaultMs;
+
+    /**
+     * Budget in milliseconds for {@code /api/predict} without the header.
+     */
+    @Value("${app.deadline.predict-ms:5000}")
+    private long predictMs;
+
+    /**
+     * Upper bound in milliseconds for budgets requested through the header.
+     */
+    @Value("${app.deadline.max-ms:60000}")
+    private long maxMs;
+
+    /**
+     * Ant-style path patterns that never get a deadline.
+     */
+    @Value("${app.deadline.exempt-paths:/api/admin/retraining/**}")
+    private String[] exemptPaths;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith("/api/")) {
+            return true;
+        }
+        for (String pattern : exemptPaths) {
+            if (PATH_MATCHER.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Long requestedMs = requestedBudgetMillis(request);
+        if (requestedMs != null && requestedMs <= 0) {
+            response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), "Request deadline exceeded");
+            return;
+        }
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        long budgetMs = requestedMs != null ? Math.min(requestedMs, maxMs)
+                : "/api/predict".equals(path) ? predictMs : defaultMs;
+        if (budgetMs <= 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Deadline previous = Deadline.set(Deadline.afterMillis(budgetMs));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Deadline.set(previous);
+        }
+    }
+
+    private Long requestedBudgetMillis(HttpServletRequest request) {
+        String header = request.getHeader(Deadline.TIMEOUT_HEADER);
+        if (header == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring malformed {} header: {}", Deadline.TIMEOUT_HEADER, header);
+            return null;
+        }
+    }
+}
@@ -1,50 +1,110 @@
 package com.mlspamdetection.webapp_backend.interceptor;
 
-import com.mlspamdetection.webapp_backend.config.RateLimitingConfig;
-import io.github.bucket4j.Bucket;
+import com.mlspamdetection.webapp_backend.service.RateLimitBucketStore;
+import io.github.bucket4j.ConsumptionProbe;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 @Component
 public class RateLimitingInterceptor implements HandlerInterceptor {
 
-    private final Map<String, Bucket> buckets;
-    private final RateLimitingConfig rateLimitingConfig;
+    private static final Pattern IP_LITERAL = Pattern.compile("[0-9a-fA-F:.]+");
+
+    private final RateLimitBucketStore bucketStore;
+
+    /**
+     * Addresses or CIDR ranges of reverse proxies whose X-Forwarded-For entries are trusted.
+     */
+    @Value("${app.rate-limit.trusted-proxies:127.0.0.1,::1}")
+    private String[] trustedProxies;
+
+    private final List<IpAddressMatcher> trustedProxyMatchers = new ArrayList<>();
 
     @Autowired
-    public RateLimitingInterceptor(Map<String, Bucket> buckets, RateLimitingConfig rateLimitingConfig) {
-        this.buckets = buckets;
-        this.rateLimitingConfig = rateLimitingConfig;
+    public RateLimitingInterceptor(RateLimitBucketStore bucketStore) {
+        this.bucketStore = bucketStore;
+    }
+
+    @PostConstruct
+    void init() {
+        for (String proxy : trustedProxies) {
+            if (!proxy.isBlank()) {
+                trustedProxyMatchers.add(new IpAddressMatcher(proxy.trim()));
+            }
+        }
     }
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
         String ipAddress = getClientIP(request);
 
-        // Get the bucket for this IP, create a new one if it doesn't exist
-        Bucket bucket = buckets.computeIfAbsent(ipAddress, k -> rateLimitingConfig.createNewBucket());
-
-        // Try to consume a token
-        if (bucket.tryConsume(1)) {
+        // Try to consume a token from this IP's bucket
+        ConsumptionProbe probe = bucketStore.tryConsume(ipAddress);
+        if (probe.isConsumed()) {
             return true;
         } else {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill()));
             response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
             response.getWriter().write("Too many requests - please try again later");
             return false;
         }
     }
 
+    /**
+     * Resolves the client address, honouring X-Forwarded-For only when it was added by trusted proxies.
+     *
+     * <p>The header is read from right to left, skipping entries of trusted proxies, and the first
+     * other address is the client. A client connecting directly cannot spoof its address this way,
+     * since its own header is ignored.</p>
+     */
     private String getClientIP(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
         String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
+        if (xForwardedFor == null || xForwardedFor.isEmpty() || !isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        String[] hops = xForwardedFor.split(",");
+        String client = remoteAddr;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!IP_LITERAL.matcher(hop).matches()) {
+                break;
+            }
+            client = hop;
+            if (!isTrustedProxy(hop)) {
+                break;
+            }
+        }
+        return client;
+    }
+
+    private boolean isTrustedProxy(String address) {
+        if (!IP_LITERAL.matcher(address).matches()) {
+            return false;
+        }
+        try {
+            for (IpAddressMatcher matcher : trustedProxyMatchers) {
+                if (matcher.matches(address)) {
+                    return true;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Malformed address literal
         }
-        return request.getRemoteAddr();
+        return false;
     }
 }
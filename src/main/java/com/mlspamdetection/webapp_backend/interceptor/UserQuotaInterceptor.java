@@ -0,0 +1,54 @@
+package com.mlspamdetection.webapp_backend.interceptor;
+
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUser;
+import com.mlspamdetection.webapp_backend.service.UserQuotaService;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+@Component
+public class UserQuotaInterceptor implements HandlerInterceptor {
+
+    public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    private final UserQuotaService quotaService;
+
+    @Autowired
+    public UserQuotaInterceptor(UserQuotaService quotaService) {
+        this.quotaService = quotaService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // Asynchronous predictions are dispatched a second time to write the result; charge them once
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser user) || user.id() == null) {
+            return true;
+        }
+
+        UserQuotaService.Decision decision = quotaService.tryAcquire(user);
+        if (decision.limit() >= 0) {
+            response.setHeader(LIMIT_HEADER, String.valueOf(decision.limit()));
+            response.setHeader(REMAINING_HEADER, String.valueOf(decision.remaining()));
+        }
+        if (decision.allowed()) {
+            return true;
+        } else {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
+            response.getWriter().write("Prediction quota exceeded - please try again later");
+            return false;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.mlspamdetection.webapp_backend.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Refresh or email verification token issued to a user.
+ *
+ * <p>Only the SHA-256 digest of the token is stored, under a unique index, so a token is found
+ * with one indexed lookup and a leaked table does not reveal usable tokens. Refresh tokens are
+ * single-use: refreshing marks the token used and issues a successor in the same family, so that a
+ * used token presented again reveals that it was stolen, and the whole family can be revoked.</p>
+ */
+@Entity
+@Table(name = "auth_tokens", indexes = {
+        @Index(name = "idx_auth_tokens_hash", columnList = "token_hash", unique = true),
+        @Index(name = "idx_auth_tokens_user_type", columnList = "user_id, type"),
+        @Index(name = "idx_auth_tokens_family", columnList = "family_id"),
+        @Index(name = "idx_auth_tokens_expires_at", columnList = "expires_at")
+})
+public class AuthToken {
+
+    /**
+     * What a token can be used for.
+     */
+    public enum Type {
+        REFRESH,
+        VERIFICATION
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token_hash", nullable = false, unique = true, length = 64)
+    private String tokenHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "family_id", length = 36)
+    private String familyId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "used_at")
+    private Instant usedAt;
+
+    @Column(nullable = false)
+    private boolean revoked;
+
+    protected AuthToken() {
+    }
+
+    public AuthToken(String tokenHash, Type type, User user, String familyId, Instant createdAt, Instant expiresAt) {
+        this.tokenHash = tokenHash;
+        this.type = type;
+        this.user = user;
+        this.familyId = familyId;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public String getFamilyId() {
+        return familyId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public Instant getUsedAt() {
+        return usedAt;
+    }
+
+    public void setUsedAt(Instant usedAt) {
+        this.usedAt = usedAt;
+    }
+
+    public boolean isRevoked() {
+        return revoked;
+    }
+
+    public void setRevoked(boolean revoked) {
+        this.revoked = revoked;
+    }
+}
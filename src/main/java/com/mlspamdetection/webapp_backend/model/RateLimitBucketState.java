@@ -0,0 +1,55 @@
+package com.mlspamdetection.webapp_backend.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Shared rate limit bucket, used when rate limiting is enforced across replicas.
+ *
+ * <p>Replicas lease tokens from this row and spend them locally. The row is locked while a lease is
+ * taken.</p>
+ */
+@Entity
+@Table(name = "rate_limit_buckets")
+public class RateLimitBucketState {
+
+    @Id
+    @Column(name = "bucket_key", length = 128)
+    private String bucketKey;
+
+    @Column(nullable = false)
+    private double tokens;
+
+    @Column(name = "refilled_at", nullable = false)
+    private Instant refilledAt;
+
+    protected RateLimitBucketState() {
+    }
+
+    public RateLimitBucketState(String bucketKey, double tokens, Instant refilledAt) {
+        this.bucketKey = bucketKey;
+        this.tokens = tokens;
+        this.refilledAt = refilledAt;
+    }
+
+    public String getBucketKey() {
+        return bucketKey;
+    }
+
+    public double getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(double tokens) {
+        this.tokens = tokens;
+    }
+
+    public Instant getRefilledAt() {
+        return refilledAt;
+    }
+
+    public void setRefilledAt(Instant refilledAt) {
+        this.refilledAt = refilledAt;
+    }
+}
@@ -22,9 +22,6 @@ public class User {
     @Column(nullable = false)
     private String password;
 
-    @Column(name = "verification_token")
-    private String verificationToken;
-
     @Column(name = "is_verified")
     private boolean isVerified = false;
 
@@ -34,9 +31,6 @@ public class User {
     @Column(name = "google_id")
     private String googleId;
 
-    @Column(name = "refresh_token")
-    private String refreshToken;
-
     @Column(name = "created_at", updatable = false)
     @CreationTimestamp
     private LocalDateTime createdAt;
@@ -89,14 +83,6 @@ public class User {
         this.password = password;
     }
 
-    public String getVerificationToken() {
-        return verificationToken;
-    }
-
-    public void setVerificationToken(String verificationToken) {
-        this.verificationToken = verificationToken;
-    }
-
     public boolean isVerified() {
         return isVerified;
     }
@@ -121,14 +107,6 @@ public class User {
         this.googleId = googleId;
     }
 
-    public String getRefreshToken() {
-        return refreshToken;
-    }
-
-    public void setRefreshToken(String refreshToken) {
-        this.refreshToken = refreshToken;
-    }
-
     public List<PredictionLog> getPredictionLogs() {
         return predictionLogs;
     }
@@ -0,0 +1,73 @@
+package com.mlspamdetection.webapp_backend.repo;
+
+import com.mlspamdetection.webapp_backend.model.AuthToken;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Repository for hashed refresh and verification tokens.
+ */
+@Repository
+public interface AuthTokenRepository extends JpaRepository<AuthToken, Long> {
+
+    /**
+     * Loads a token with its user and locks the token row until the end of the transaction, so
+     * that concurrent uses of the same token are serialized.
+     *
+     * @param tokenHash the SHA-256 digest of the token
+     * @return the token, or empty if no token has this digest
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM AuthToken t JOIN FETCH t.user WHERE t.tokenHash = :tokenHash")
+    Optional<AuthToken> findByTokenHashForUpdate(@Param("tokenHash") String tokenHash);
+
+    /**
+     * Revokes every token of a refresh token family.
+     *
+     * @param familyId the family
+     * @return the number of tokens revoked
+     */
+    @Modifying
+    @Query("UPDATE AuthToken t SET t.revoked = true WHERE t.familyId = :familyId AND t.revoked = false")
+    int revokeFamily(@Param("familyId") String familyId);
+
+    /**
+     * Deletes a user's tokens of one type.
+     *
+     * @param userId the user
+     * @param type the token type
+     * @return the number of tokens deleted
+     */
+    @Modifying
+    @Query("DELETE FROM AuthToken t WHERE t.user.id = :userId AND t.type = :type")
+    int deleteByUserAndType(@Param("userId") Long userId, @Param("type") AuthToken.Type type);
+
+    /**
+     * Deletes up to {@code limit} tokens that expired before the given time.
+     *
+     * @param now the current time
+     * @param limit the maximum number of tokens to delete
+     * @return the number of tokens deleted
+     */
+    @Modifying
+    @Query(value = "DELETE FROM auth_tokens WHERE id IN "
+            + "(SELECT id FROM auth_tokens WHERE expires_at < :now LIMIT :limit)", nativeQuery = true)
+    int deleteExpired(@Param("now") Instant now, @Param("limit") int limit);
+
+    /**
+     * Counts tokens of one type that have not expired.
+     *
+     * @param type the token type
+     * @param now the current time
+     * @return the number of tokens
+     */
+    long countByTypeAndExpiresAtAfter(AuthToken.Type type, Instant now);
+}
@@ -0,0 +1,59 @@
+package com.mlspamdetection.webapp_backend.repo;
+
+import com.mlspamdetection.webapp_backend.model.EmailOutboxMessage;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Repository for queued outgoing emails.
+ */
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    /**
+     * Loads pending messages that are due and locks their rows until the end of the transaction.
+     *
+     * <p>Rows already locked by another replica are skipped rather than waited for, so replicas
+     * claim disjoint batches.</p>
+     *
+     * @param now the current time
+     * @param page the maximum number of messages to claim
+     * @return due messages, oldest first
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT m FROM EmailOutboxMessage m WHERE m.status = com.mlspamdetection.webapp_backend.model.EmailOutboxMessage.Status.PENDING "
+            + "AND m.nextAttemptAt <= :now ORDER BY m.nextAttemptAt")
+    List<EmailOutboxMessage> findDueForUpdate(@Param("now") Instant now, Pageable page);
+
+    /**
+     * Counts messages in a delivery state.
+     *
+     * @param status the state
+     * @return the number of messages
+     */
+    long countByStatus(EmailOutboxMessage.Status status);
+
+    /**
+     * Deletes up to {@code limit} sent or failed messages queued before {@code before}.
+     *
+     * @param before messages created before this time are deleted
+     * @param limit the maximum number of messages to delete
+     * @return the number of messages deleted
+     */
+    @Modifying
+    @Query(value = "DELETE FROM email_outbox WHERE id IN (SELECT id FROM email_outbox "
+            + "WHERE status IN ('SENT', 'FAILED') AND created_at < :before LIMIT :limit)", nativeQuery = true)
+    int deleteFinishedBefore(@Param("before") Instant before, @Param("limit") int limit);
+}
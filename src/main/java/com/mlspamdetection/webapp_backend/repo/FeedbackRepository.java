@@ -3,10 +3,14 @@ package com.mlspamdetection.webapp_backend.repo;
 import com.mlspamdetection.webapp_backend.model.Feedback;
 import com.mlspamdetection.webapp_backend.model.User;
 
+import com.mlspamdetection.webapp_backend.dto.FeedbackTrainingRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -81,4 +85,27 @@ public interface FeedbackRepository extends JpaRepository<Feedback, Long> {
      * @return a list of feedback entries with the specified processing status
      */
     List<Feedback> findByProcessed(boolean processed);
+
+    /**
+     * Retrieves every unprocessed feedback entry together with the content of its prediction.
+     *
+     * <p>Used by model retraining. Unlike {@link #findByProcessed(boolean)}, this reads everything
+     * in one query, without loading the feedback's prediction and user one by one. Feedback whose
+     * prediction no longer exists is left out.</p>
+     *
+     * @return the unprocessed feedback as training rows, oldest first
+     */
+    @Query("SELECT new com.mlspamdetection.webapp_backend.dto.FeedbackTrainingRow(f.id, p.content, f.correctedLabel) " +
+            "FROM Feedback f JOIN f.prediction p WHERE f.processed = false ORDER BY f.id")
+    List<FeedbackTrainingRow> findUnprocessedTrainingRows();
+
+    /**
+     * Marks the given feedback entries as processed in a single UPDATE.
+     *
+     * @param ids IDs of the feedback entries used for retraining
+     * @return the number of entries updated
+     */
+    @Modifying
+    @Query("UPDATE Feedback f SET f.processed = true WHERE f.id IN :ids")
+    int markProcessed(@Param("ids") Collection<Long> ids);
 }
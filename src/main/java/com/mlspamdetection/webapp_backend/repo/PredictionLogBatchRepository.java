@@ -0,0 +1,24 @@
+package com.mlspamdetection.webapp_backend.repo;
+
+import com.mlspamdetection.webapp_backend.model.PredictionLog;
+
+import java.util.List;
+
+/**
+ * Custom repository fragment for bulk persistence of {@link PredictionLog} entities.
+ *
+ * <p>{@link PredictionLog} uses {@code GenerationType.IDENTITY}, which prevents Hibernate from
+ * batching inserts: every {@code save} is its own INSERT round trip. This fragment writes many
+ * logs with a single JDBC batch instead, and is mixed into {@link PredictionLogRepository}.</p>
+ */
+public interface PredictionLogBatchRepository {
+
+    /**
+     * Inserts all given prediction logs using one JDBC batch.
+     *
+     * <p>Generated IDs are not read back, so the passed entities keep a {@code null} id.</p>
+     *
+     * @param logs the prediction logs to insert; each must reference a persisted user
+     */
+    void insertAll(List<PredictionLog> logs);
+}
@@ -0,0 +1,42 @@
+package com.mlspamdetection.webapp_backend.repo;
+
+import com.mlspamdetection.webapp_backend.model.PredictionLog;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link PredictionLogBatchRepository}.
+ *
+ * <p>Spring Data picks this class up by its {@code Impl} suffix and uses it for the
+ * fragment methods of {@link PredictionLogRepository}.</p>
+ */
+class PredictionLogBatchRepositoryImpl implements PredictionLogBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO prediction_log (content, is_spam, confidence, timestamp, user_id) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * JDBC template used to execute the batched insert.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    PredictionLogBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertAll(List<PredictionLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, logs, logs.size(), (ps, log) -> {
+            ps.setString(1, log.getContent());
+            ps.setBoolean(2, log.isSpam());
+            ps.setDouble(3, log.getConfidence());
+            ps.setTimestamp(4, Timestamp.valueOf(log.getTimestamp()));
+            ps.setLong(5, log.getUser().getId());
+        });
+    }
+}
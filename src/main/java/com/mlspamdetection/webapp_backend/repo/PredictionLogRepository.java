@@ -21,10 +21,11 @@ import java.util.Optional;
  * to leverage built-in data access functionality.</p>
  * 
  * <p>The repository includes methods for retrieving user-specific prediction history,
- * calculating prediction statistics, and supporting analytics features.</p>
+ * calculating prediction statistics, and supporting analytics features. Bulk inserts are
+ * provided by the {@link PredictionLogBatchRepository} fragment.</p>
  */
 @Repository
-public interface PredictionLogRepository extends JpaRepository<PredictionLog, Long> {
+public interface PredictionLogRepository extends JpaRepository<PredictionLog, Long>, PredictionLogBatchRepository {
     /**
      * Retrieves a paginated list of prediction logs for a specific user, ordered by timestamp (newest first).
      * 
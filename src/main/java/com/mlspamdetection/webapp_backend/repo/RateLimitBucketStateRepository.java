@@ -0,0 +1,45 @@
+package com.mlspamdetection.webapp_backend.repo;
+
+import com.mlspamdetection.webapp_backend.model.RateLimitBucketState;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Repository for the shared rate limit buckets used in distributed rate limiting.
+ */
+@Repository
+public interface RateLimitBucketStateRepository extends JpaRepository<RateLimitBucketState, String> {
+
+    /**
+     * Loads a bucket and locks its row until the end of the transaction.
+     *
+     * @param bucketKey the client identifier
+     * @return the bucket, or empty if the client has none yet
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM RateLimitBucketState b WHERE b.bucketKey = :bucketKey")
+    Optional<RateLimitBucketState> findForUpdate(@Param("bucketKey") String bucketKey);
+
+    /**
+     * Deletes up to {@code limit} buckets that have not been leased from since {@code before}.
+     *
+     * <p>The idle condition is repeated outside the subquery so that a bucket leased from while
+     * the statement waits for its row lock is kept.</p>
+     *
+     * @param before buckets last refilled before this time are deleted
+     * @param limit the maximum number of buckets to delete
+     * @return the number of buckets deleted
+     */
+    @Modifying
+    @Query(value = "DELETE FROM rate_limit_buckets WHERE refilled_at < :before AND bucket_key IN "
+            + "(SELECT bucket_key FROM rate_limit_buckets WHERE refilled_at < :before LIMIT :limit)", nativeQuery = true)
+    int deleteIdle(@Param("before") Instant before, @Param("limit") int limit);
+}
@@ -31,28 +31,6 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return an Optional containing the user if found, or empty if no user exists with the given email
      */
     Optional<User> findByEmail(String email);
-    /**
-     * Finds a user by their JWT refresh token.
-     * 
-     * <p>This method is used during the token refresh process to identify the user
-     * requesting a new access token.</p>
-     * 
-     * @param refreshToken the refresh token to search for
-     * @return an Optional containing the user if found, or empty if no user exists with the given token
-     */
-    Optional<User> findByRefreshToken(String refreshToken);
-
-    /**
-     * Finds a user by their email verification token.
-     * 
-     * <p>This method is used during the account verification process to identify the user
-     * who is verifying their email address.</p>
-     * 
-     * @param token the verification token to search for
-     * @return an Optional containing the user if found, or empty if no user exists with the given token
-     */
-    Optional<User> findByVerificationToken(String token);
-
     /**
      * Checks if a user with the given email address exists.
      * 
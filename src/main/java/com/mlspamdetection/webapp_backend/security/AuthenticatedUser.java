@@ -0,0 +1,40 @@
+package com.mlspamdetection.webapp_backend.security;
+
+import com.mlspamdetection.webapp_backend.model.User;
+
+import java.security.Principal;
+
+/**
+ * Immutable principal of an authenticated API request.
+ *
+ * <p>Holds only what request handling needs from the {@link User} entity, so it can be cached
+ * and shared across threads without a persistence context. Handlers that need the entity for a
+ * JPA relation or query use {@code UserRepository.getReferenceById(id())}, which does not load it.</p>
+ *
+ * @param id the user's database id
+ * @param email the user's email, also the JWT subject
+ * @param role the user's role
+ * @param verified whether the user's email address is verified
+ */
+public record AuthenticatedUser(Long id, String email, User.UserRole role, boolean verified) implements Principal {
+
+    /**
+     * Creates the principal for a user entity.
+     *
+     * @param user the user entity
+     * @return the principal
+     */
+    public static AuthenticatedUser from(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getRole(), user.isVerified());
+    }
+
+    /**
+     * Returns the email, so that {@code Authentication.getName()} keeps returning the user's email.
+     *
+     * @return the user's email
+     */
+    @Override
+    public String getName() {
+        return email;
+    }
+}
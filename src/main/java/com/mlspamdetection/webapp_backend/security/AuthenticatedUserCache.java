@@ -0,0 +1,114 @@
+package com.mlspamdetection.webapp_backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mlspamdetection.webapp_backend.repo.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded cache of {@link AuthenticatedUser} principals keyed by email.
+ *
+ * <p>{@code JwtAuthenticationFilter} resolves the JWT subject through this cache, so an active
+ * client is looked up in the database once per {@code app.principal-cache.ttl-seconds} instead of
+ * on every request. Code that changes a user's role, verification state or tokens calls
+ * {@link #evict(String)}, and the short TTL bounds how long any other change, such as one made by
+ * another replica, can go unnoticed. Unknown emails are not cached.</p>
+ */
+@Component
+@Slf4j
+public class AuthenticatedUserCache {
+
+    private final UserRepository userRepository;
+
+    /**
+     * Whether principals are cached; when false every request loads the user.
+     */
+    @Value("${app.principal-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Time in seconds a principal is served from the cache after it was loaded.
+     */
+    @Value("${app.principal-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    /**
+     * Maximum number of cached principals.
+     */
+    @Value("${app.principal-cache.max-size:10000}")
+    private long maxSize;
+
+    private Cache<String, AuthenticatedUser> principals;
+
+    public AuthenticatedUserCache(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Builds the cache.
+     */
+    @PostConstruct
+    void init() {
+        principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        log.info("Principal cache enabled={} (max {}, ttl {}s)", enabled, maxSize, ttlSeconds);
+    }
+
+    /**
+     * Returns the principal for an email, loading the user on a miss.
+     *
+     * @param email the user's email, typically the JWT subject
+     * @return the principal, or empty if no such user exists
+     */
+    public Optional<AuthenticatedUser> get(String email) {
+        if (enabled) {
+            AuthenticatedUser cached = principals.getIfPresent(email);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+        Optional<AuthenticatedUser> principal = userRepository.findByEmail(email).map(AuthenticatedUser::from);
+        if (enabled) {
+            principal.ifPresent(user -> principals.put(email, user));
+        }
+        return principal;
+    }
+
+    /**
+     * Drops a user's cached principal after the user has changed.
+     *
+     * @param email the user's email
+     */
+    public void evict(String email) {
+        if (email != null) {
+            principals.invalidate(email);
+        }
+    }
+
+    /**
+     * Returns the cache size and hit statistics.
+     *
+     * @return cache metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", principals.estimatedSize());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hitRate", principals.stats().hitRate());
+        stats.put("evictions", principals.stats().evictionCount());
+        return stats;
+    }
+}
@@ -1,6 +1,9 @@
 package com.mlspamdetection.webapp_backend.security;
-import com.mlspamdetection.webapp_backend.repo.UserRepository;
-import com.mlspamdetection.webapp_backend.model.User;
+import com.mlspamdetection.webapp_backend.util.Deadline;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -17,14 +20,16 @@ import java.util.Collection;
 
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    private static final Logger log = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
+
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
-    private final UserRepository userRepository;
+    private final AuthenticatedUserCache authenticatedUserCache;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService, UserRepository userRepository) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService, AuthenticatedUserCache authenticatedUserCache) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
-        this.userRepository = userRepository;
+        this.authenticatedUserCache = authenticatedUserCache;
     }
 
     @Override
@@ -33,42 +38,38 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authorizationHeader = request.getHeader("Authorization");
 
-        System.out.println("Request URI: " + request.getRequestURI());
-        System.out.println("Auth header: " + authorizationHeader);
-
-        String username = null;
-        String jwt = null;
-
+        // Verify the token once; username and roles are both read from the same claims
+        Claims claims = null;
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(jwt);
-                System.out.println("Extracted username: " + username);
+                claims = jwtUtil.parseVerifiedClaims(authorizationHeader.substring(7));
             } catch (Exception e) {
-                System.err.println("JWT validation failed: " + e.getMessage());
+                log.debug("JWT validation failed for {}: {}", request.getRequestURI(), e.getMessage());
             }
         }
 
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            // Spent the whole budget waiting before this request was even authenticated
+            response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), "Request deadline exceeded");
+            return;
+        }
+
+        String username = claims != null ? claims.getSubject() : null;
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             try {
-                final String tokenForValidation = jwt;
-                if (jwtUtil.validateToken(tokenForValidation)) {
-                    Collection<? extends GrantedAuthority> authorities = jwtUtil.getAuthoritiesFromToken(tokenForValidation);
-                    User userEntity = userRepository.findByEmail(username).orElse(null);
-                    if (userEntity != null) {
-                        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userEntity, null, authorities);
-                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
-                        System.out.println("Authentication successful for user: " + username);
-                    } else {
-                        System.out.println("User not found in database for username: " + username);
-                    }
+                Collection<? extends GrantedAuthority> authorities = jwtUtil.getAuthorities(claims);
+                AuthenticatedUser principal = authenticatedUserCache.get(username).orElse(null);
+                if (principal != null) {
+                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        principal, null, authorities);
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
                 } else {
-                    System.out.println("Token validation failed for user: " + username);
+                    log.debug("User not found in database for username: {}", username);
                 }
             } catch (Exception e) {
-                System.err.println("JWT authentication failed: " + e.getMessage());
+                log.warn("JWT authentication failed: {}", e.getMessage());
             }
         }
 
@@ -6,6 +6,7 @@ import com.mlspamdetection.webapp_backend.model.User;
 import com.mlspamdetection.webapp_backend.repo.FeedbackRepository;
 import com.mlspamdetection.webapp_backend.repo.PredictionLogRepository;
 import com.mlspamdetection.webapp_backend.repo.UserRepository;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUserCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
@@ -64,6 +65,11 @@ public class AdminService {
      */
     private final PasswordEncoder passwordEncoder;
 
+    /**
+     * Cache of authenticated principals, evicted when a user's role changes.
+     */
+    private final AuthenticatedUserCache authenticatedUserCache;
+
     /**
      * Secret key required for admin registration, injected from application properties.
      */
@@ -77,17 +83,20 @@ public class AdminService {
      * @param predictionLogRepository repository for prediction log data access
      * @param feedbackRepository repository for feedback data access
      * @param passwordEncoder encoder for securely hashing passwords
+     * @param authenticatedUserCache cache of authenticated principals
      */
     @Autowired
     public AdminService(
             UserRepository userRepository,
             PredictionLogRepository predictionLogRepository,
             FeedbackRepository feedbackRepository,
-            PasswordEncoder passwordEncoder) {
+            PasswordEncoder passwordEncoder,
+            AuthenticatedUserCache authenticatedUserCache) {
         this.userRepository = userRepository;
         this.predictionLogRepository = predictionLogRepository;
         this.feedbackRepository = feedbackRepository;
         this.passwordEncoder = passwordEncoder;
+        this.authenticatedUserCache = authenticatedUserCache;
     }
 
     /**
@@ -188,6 +197,7 @@ public class AdminService {
             User.UserRole newRole = User.UserRole.valueOf(role.toUpperCase());
             user.setRole(newRole);
             userRepository.save(user);
+            authenticatedUserCache.evict(user.getEmail());
 
             return ResponseEntity.ok(Map.of("message", "User role updated successfully"));
         } catch (IllegalArgumentException e) {
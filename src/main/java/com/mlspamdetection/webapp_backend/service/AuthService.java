@@ -3,66 +3,74 @@ package com.mlspamdetection.webapp_backend.service;
 import com.mlspamdetection.webapp_backend.dto.TokenRefreshRequest;
 import com.mlspamdetection.webapp_backend.dto.TokenRefreshResponse;
 import com.mlspamdetection.webapp_backend.model.User;
-import com.mlspamdetection.webapp_backend.repo.UserRepository;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUserCache;
+import com.mlspamdetection.webapp_backend.security.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Service responsible for authentication-related operations.
- * 
- * <p>This service handles token refresh operations, validating refresh tokens,
- * and generating new access tokens. It works in conjunction with the JwtService
- * to manage JWT tokens for user authentication.</p>
- * 
- * <p>The service ensures that refresh tokens are valid, matches what's stored in the
- * database for the user, and generates new token pairs when needed.</p>
+ *
+ * <p>This service handles token refresh operations, redeeming refresh tokens
+ * and generating new access tokens. It works in conjunction with the AuthTokenService,
+ * which stores refresh tokens, and JwtUtil, which signs access tokens.</p>
+ *
+ * <p>The service ensures that refresh tokens are valid and unused, and generates new
+ * token pairs when needed.</p>
  */
 @Service
 public class AuthService {
 
     /**
-     * Repository for accessing user data.
+     * Service storing and rotating refresh tokens.
      */
-    private final UserRepository userRepository;
-    
+    private final AuthTokenService authTokenService;
+
     /**
-     * Service for JWT token operations.
+     * Utility for signing access tokens.
      */
-    private final JwtService jwtService;
+    private final JwtUtil jwtUtil;
+
+    /**
+     * Cache of authenticated principals, evicted when a user's tokens are rotated.
+     */
+    private final AuthenticatedUserCache authenticatedUserCache;
 
     /**
      * Constructs an AuthService with the necessary dependencies.
      *
-     * @param userRepository repository for user data access
-     * @param jwtService service for JWT token operations
+     * @param authTokenService service storing and rotating refresh tokens
+     * @param jwtUtil utility for signing access tokens
+     * @param authenticatedUserCache cache of authenticated principals
      */
     @Autowired
-    public AuthService(UserRepository userRepository, JwtService jwtService) {
-        this.userRepository = userRepository;
-        this.jwtService = jwtService;
+    public AuthService(AuthTokenService authTokenService, JwtUtil jwtUtil, AuthenticatedUserCache authenticatedUserCache) {
+        this.authTokenService = authTokenService;
+        this.jwtUtil = jwtUtil;
+        this.authenticatedUserCache = authenticatedUserCache;
     }
 
     /**
      * Refreshes the authentication tokens for a user.
-     * 
-     * <p>This method validates the provided refresh token, ensures it matches what's
-     * stored for the user, and generates a new pair of access and refresh tokens.</p>
-     * 
+     *
+     * <p>This method redeems the provided refresh token and generates a new pair of
+     * access and refresh tokens.</p>
+     *
      * <p>The method follows these steps:</p>
      * <ol>
-     *   <li>Validates the refresh token's signature and expiration</li>
-     *   <li>Extracts the username (email) from the token</li>
-     *   <li>Finds the user associated with the email</li>
-     *   <li>Verifies that the token matches what's stored for the user</li>
-     *   <li>Generates new access and refresh tokens</li>
-     *   <li>Updates the user's refresh token in the database</li>
+     *   <li>Looks up the refresh token by its digest, together with its user</li>
+     *   <li>Rejects it if it is expired or revoked, and revokes its session if it was used before</li>
+     *   <li>Marks it used and issues its successor</li>
+     *   <li>Generates a new access token with the user's current role</li>
      * </ol>
      *
-     * <p>The method is transactional to ensure database consistency when updating
-     * the user's refresh token.</p>
+     * <p>The method is transactional so that the rotation and the new token are
+     * committed together.</p>
      *
      * @param request the token refresh request containing the refresh token
      * @return an Optional containing the new token pair if successful, or empty if the refresh failed
@@ -70,36 +78,20 @@ public class AuthService {
     @Transactional
     public Optional<TokenRefreshResponse> refreshToken(TokenRefreshRequest request) {
         String refreshToken = request.getRefreshToken();
-
-        // Validate refresh token
-        if (!jwtService.validateToken(refreshToken)) {
+        if (refreshToken == null || refreshToken.isEmpty()) {
             return Optional.empty();
         }
 
-        // Extract username from token
-        String username = jwtService.extractUsername(refreshToken);
-
-        // Find user by email
-        Optional<User> userOpt = userRepository.findByEmail(username);
-        if (userOpt.isEmpty()) {
-            return Optional.empty();
-        }
-
-        User user = userOpt.get();
-
-        // Verify that the token matches what's stored in the database
-        if (!refreshToken.equals(user.getRefreshToken())) {
-            return Optional.empty();
-        }
-
-        // Generate new tokens
-        String newAccessToken = jwtService.generateAccessToken(user);
-        String newRefreshToken = jwtService.generateRefreshToken(user);
-
-        // Update refresh token in database
-        user.setRefreshToken(newRefreshToken);
-        userRepository.save(user);
-
-        return Optional.of(new TokenRefreshResponse(newAccessToken, newRefreshToken));
+        return authTokenService.rotateRefreshToken(refreshToken).map(rotation -> {
+            User user = rotation.user();
+            authenticatedUserCache.evict(user.getEmail());
+            UserDetails userDetails = org.springframework.security.core.userdetails.User.builder()
+                    .username(user.getEmail())
+                    .password(user.getPassword())
+                    .roles(user.getRole().name())
+                    .build();
+            String newAccessToken = jwtUtil.generateToken(userDetails, List.of(user.getRole().name()));
+            return new TokenRefreshResponse(newAccessToken, rotation.refreshToken());
+        });
     }
 }
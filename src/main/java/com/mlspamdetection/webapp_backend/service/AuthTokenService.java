@@ -0,0 +1,223 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.mlspamdetection.webapp_backend.model.AuthToken;
+import com.mlspamdetection.webapp_backend.model.User;
+import com.mlspamdetection.webapp_backend.repo.AuthTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Issues and redeems refresh and email verification tokens.
+ *
+ * <p>Tokens are 256-bit random strings handed to the client once; only their SHA-256 digest is
+ * stored in {@link AuthToken}. Redeeming a token is a single lookup on the unique digest index,
+ * with the row locked so that concurrent redemptions of the same token are serialized.</p>
+ *
+ * <p>Every login starts a refresh token family, so a user can hold one session per device.
+ * Refreshing marks the presented token used and issues its successor in the same family. A used
+ * token that is presented again means that the token was copied, so the whole family is revoked
+ * and both the thief and the user have to log in again.</p>
+ *
+ * <p>Used and revoked tokens stay in the table until they expire, which keeps reuse detectable;
+ * expired tokens are deleted in batches every {@code app.tokens.sweep-interval-ms}.</p>
+ */
+@Service
+@Slf4j
+public class AuthTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final AuthTokenRepository tokenRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Lifetime of a refresh token in milliseconds.
+     */
+    @Value("${jwt.refresh-token.expiration:604800000}")
+    private long refreshTokenExpirationMs;
+
+    /**
+     * Lifetime of an email verification token in hours.
+     */
+    @Value("${app.tokens.verification-ttl-hours:48}")
+    private long verificationTtlHours;
+
+    /**
+     * Maximum number of expired tokens deleted per transaction.
+     */
+    @Value("${app.tokens.sweep-batch-size:1000}")
+    private int sweepBatchSize;
+
+    private final LongAdder refreshed = new LongAdder();
+    private final LongAdder reuseDetected = new LongAdder();
+    private final LongAdder swept = new LongAdder();
+
+    /**
+     * A redeemed refresh token.
+     *
+     * @param user the token's user
+     * @param refreshToken the successor refresh token to hand to the client
+     */
+    public record Rotation(User user, String refreshToken) {
+    }
+
+    public AuthTokenService(AuthTokenRepository tokenRepository, PlatformTransactionManager transactionManager) {
+        this.tokenRepository = tokenRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Issues a refresh token that starts a new session.
+     *
+     * @param user the user who logged in
+     * @return the refresh token to hand to the client
+     */
+    @Transactional
+    public String issueRefreshToken(User user) {
+        return issue(user, AuthToken.Type.REFRESH, UUID.randomUUID().toString(), Duration.ofMillis(refreshTokenExpirationMs));
+    }
+
+    /**
+     * Redeems a refresh token and issues its successor.
+     *
+     * <p>Presenting a token that was already redeemed revokes its whole family.</p>
+     *
+     * @param refreshToken the refresh token presented by the client
+     * @return the user and the new refresh token, or empty if the token is unknown, expired,
+     *         revoked or reused
+     */
+    @Transactional
+    public Optional<Rotation> rotateRefreshToken(String refreshToken) {
+        Optional<AuthToken> found = tokenRepository.findByTokenHashForUpdate(hash(refreshToken))
+                .filter(token -> token.getType() == AuthToken.Type.REFRESH);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        AuthToken token = found.get();
+        Instant now = Instant.now();
+        if (token.isRevoked() || !token.getExpiresAt().isAfter(now)) {
+            return Optional.empty();
+        }
+        if (token.getUsedAt() != null) {
+            reuseDetected.increment();
+            int revoked = tokenRepository.revokeFamily(token.getFamilyId());
+            log.warn("Refresh token reuse for user {}; revoked {} tokens of the session", token.getUser().getId(), revoked);
+            return Optional.empty();
+        }
+
+        token.setUsedAt(now);
+        String successor = issue(token.getUser(), AuthToken.Type.REFRESH, token.getFamilyId(),
+                Duration.ofMillis(refreshTokenExpirationMs));
+        refreshed.increment();
+        return Optional.of(new Rotation(token.getUser(), successor));
+    }
+
+    /**
+     * Issues an email verification token, replacing the user's previous ones.
+     *
+     * @param user the user to verify; must already be saved
+     * @return the token to put in the verification link
+     */
+    @Transactional
+    public String issueVerificationToken(User user) {
+        tokenRepository.deleteByUserAndType(user.getId(), AuthToken.Type.VERIFICATION);
+        return issue(user, AuthToken.Type.VERIFICATION, null, Duration.ofHours(verificationTtlHours));
+    }
+
+    /**
+     * Redeems an email verification token.
+     *
+     * @param verificationToken the token from the verification link
+     * @return the token's user, or empty if the token is unknown or expired
+     */
+    @Transactional
+    public Optional<User> consumeVerificationToken(String verificationToken) {
+        Optional<AuthToken> found = tokenRepository.findByTokenHashForUpdate(hash(verificationToken))
+                .filter(token -> token.getType() == AuthToken.Type.VERIFICATION);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        AuthToken token = found.get();
+        tokenRepository.delete(token);
+        if (!token.getExpiresAt().isAfter(Instant.now())) {
+            return Optional.empty();
+        }
+        return Optional.of(token.getUser());
+    }
+
+    /**
+     * Deletes expired tokens, one batch per transaction.
+     */
+    @Scheduled(fixedDelayString = "${app.tokens.sweep-interval-ms:3600000}", initialDelayString = "${app.tokens.sweep-interval-ms:3600000}")
+    public void sweepExpired() {
+        Instant now = Instant.now();
+        int total = 0;
+        Integer deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> tokenRepository.deleteExpired(now, sweepBatchSize));
+            total += deleted != null ? deleted : 0;
+        } while (deleted != null && deleted == sweepBatchSize);
+        swept.add(total);
+        if (total > 0) {
+            log.info("Deleted {} expired auth tokens", total);
+        }
+    }
+
+    /**
+     * Returns the number of live tokens and the rotation counters.
+     *
+     * @return token store metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        Instant now = Instant.now();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("refreshTokens", tokenRepository.countByTypeAndExpiresAtAfter(AuthToken.Type.REFRESH, now));
+        stats.put("verificationTokens", tokenRepository.countByTypeAndExpiresAtAfter(AuthToken.Type.VERIFICATION, now));
+        stats.put("refreshed", refreshed.sum());
+        stats.put("reuseDetected", reuseDetected.sum());
+        stats.put("swept", swept.sum());
+        return stats;
+    }
+
+    private String issue(User user, AuthToken.Type type, String familyId, Duration ttl) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Instant now = Instant.now();
+        tokenRepository.save(new AuthToken(hash(token), type, user, familyId, now, now.plus(ttl)));
+        return token;
+    }
+
+    /**
+     * Returns the hex SHA-256 digest of a token. Tokens are random and long, so an unsalted fast
+     * hash is enough to make stored digests useless to an attacker.
+     */
+    static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
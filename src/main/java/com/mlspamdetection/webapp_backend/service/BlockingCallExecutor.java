@@ -0,0 +1,166 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.mlspamdetection.webapp_backend.exception.BlockingPoolBusyException;
+import com.mlspamdetection.webapp_backend.exception.DeadlineExceededException;
+import com.mlspamdetection.webapp_backend.util.Deadline;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking work (JPA queries, prediction log writes) for asynchronous endpoints.
+ *
+ * <p>With {@code app.async.enabled=true}, work is handed to a fixed pool of
+ * {@code app.async.blocking-threads} threads, which should match the JDBC connection pool: more
+ * threads would only wait for a connection. The servlet thread is released as soon as the work is
+ * queued, so a small Tomcat pool can keep many connections open. When the queue of
+ * {@code app.async.queue-capacity} tasks is full, new work is rejected with a
+ * {@link BlockingPoolBusyException}, answered with 503. Running it on the calling thread instead
+ * would block threads that must not block, such as the HTTP/2 client's response threads that
+ * complete prediction futures.</p>
+ *
+ * <p>By default the work runs directly on the calling thread and the returned futures are
+ * already completed, which keeps the regular blocking behaviour.</p>
+ *
+ * <p>The caller's {@link Deadline} travels with the work. Work still queued when it passes is
+ * dropped with a {@link DeadlineExceededException} instead of being run.</p>
+ */
+@Component
+@Slf4j
+public class BlockingCallExecutor {
+
+    /**
+     * Whether blocking work is moved off the servlet threads.
+     */
+    @Value("${app.async.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * Number of threads running blocking work.
+     */
+    @Value("${app.async.blocking-threads:10}")
+    private int threads;
+
+    /**
+     * Maximum number of tasks waiting for a thread.
+     */
+    @Value("${app.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    /**
+     * Retry-After in seconds sent when the queue is full.
+     */
+    @Value("${app.async.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    private ThreadPoolExecutor pool;
+
+    /**
+     * Starts the pool when asynchronous mode is enabled.
+     */
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "blocking-io-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        log.info("Asynchronous endpoints enabled ({} blocking I/O threads, queue {})", threads, queueCapacity);
+    }
+
+    /**
+     * Stops the pool, letting queued work finish.
+     */
+    @PreDestroy
+    void stop() {
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Blocking I/O pool did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs blocking work and returns its result as a future.
+     *
+     * @param work the work to run
+     * @param <T> the result type
+     * @return a future completed with the result or failure of the work, or failed with
+     *         {@link BlockingPoolBusyException} if the queue is full
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> work) {
+        if (pool == null) {
+            try {
+                return CompletableFuture.completedFuture(work.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        Deadline deadline = Deadline.current();
+        Supplier<T> task = deadline == null ? work : deadline.bind(() -> {
+            deadline.check("queued work");
+            return work.get();
+        });
+        try {
+            return CompletableFuture.supplyAsync(task, pool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(busy());
+        }
+    }
+
+    /**
+     * Returns the executor for blocking continuations of other futures, carrying the caller's
+     * deadline to the tasks run on it.
+     *
+     * <p>When the queue is full, the executor throws {@link BlockingPoolBusyException}, so the
+     * continuation's future fails with it instead of the task running on the completing thread.</p>
+     *
+     * @return the pool, or a direct executor when asynchronous mode is disabled
+     */
+    public Executor executor() {
+        Deadline deadline = Deadline.current();
+        Executor executor = pool != null ? this::executeOnPool : Runnable::run;
+        if (deadline == null) {
+            return executor;
+        }
+        return task -> executor.execute(() -> deadline.bind(() -> {
+            task.run();
+            return null;
+        }).get());
+    }
+
+    private void executeOnPool(Runnable task) {
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            throw busy();
+        }
+    }
+
+    private BlockingPoolBusyException busy() {
+        log.warn("Blocking I/O queue is full ({} tasks), rejecting work", queueCapacity);
+        return new BlockingPoolBusyException(retryAfterSeconds);
+    }
+}
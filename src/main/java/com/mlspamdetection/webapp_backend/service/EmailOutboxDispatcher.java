@@ -0,0 +1,271 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.mlspamdetection.webapp_backend.model.EmailOutboxMessage;
+import com.mlspamdetection.webapp_backend.repo.EmailOutboxRepository;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers queued emails from the outbox in batches.
+ *
+ * <p>Every {@code app.email.outbox.poll-interval-ms} the dispatcher claims up to
+ * {@code app.email.outbox.batch-size} due messages in a short transaction, pushing their next
+ * attempt {@code claim-timeout-seconds} into the future so that no other replica picks them up
+ * meanwhile. The batch is then sent through {@link JavaMailSender#send(MimeMessage...)}, which
+ * opens one SMTP connection (and TLS handshake) for the whole batch instead of one per email.
+ * Batches are repeated while full, so a backlog drains without waiting for the next poll.</p>
+ *
+ * <p>Failed messages are retried with exponential backoff, from {@code initial-backoff-ms} up to
+ * {@code max-backoff-ms}, and marked failed after {@code max-attempts} attempts. If the
+ * application stops while sending, the claimed messages become due again once their claim
+ * expires, so delivery is at least once.</p>
+ *
+ * <p>Message bodies carry verification links, so sent and failed messages are deleted once they are
+ * older than {@code app.email.outbox.retention-hours}.</p>
+ */
+@Component
+@Slf4j
+public class EmailOutboxDispatcher {
+
+    private final EmailOutboxRepository outboxRepository;
+    private final EmailService emailService;
+    private final JavaMailSender mailSender;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Whether this instance delivers queued emails.
+     */
+    @Value("${app.email.outbox.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Maximum number of emails sent over one SMTP connection.
+     */
+    @Value("${app.email.outbox.batch-size:50}")
+    private int batchSize;
+
+    /**
+     * Number of attempts after which an email is marked failed.
+     */
+    @Value("${app.email.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    /**
+     * Delay in milliseconds before the first retry; doubled for every further attempt.
+     */
+    @Value("${app.email.outbox.initial-backoff-ms:5000}")
+    private long initialBackoffMs;
+
+    /**
+     * Upper bound in milliseconds for the delay between attempts.
+     */
+    @Value("${app.email.outbox.max-backoff-ms:3600000}")
+    private long maxBackoffMs;
+
+    /**
+     * Time in seconds a claimed batch is reserved for this instance.
+     */
+    @Value("${app.email.outbox.claim-timeout-seconds:300}")
+    private long claimTimeoutSeconds;
+
+    /**
+     * Time in hours after which sent and failed emails are deleted.
+     */
+    @Value("${app.email.outbox.retention-hours:168}")
+    private long retentionHours;
+
+    /**
+     * Maximum number of old emails deleted per transaction.
+     */
+    @Value("${app.email.outbox.sweep-batch-size:1000}")
+    private int sweepBatchSize;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder swept = new LongAdder();
+
+    public EmailOutboxDispatcher(EmailOutboxRepository outboxRepository, EmailService emailService,
+                                 JavaMailSender mailSender, PlatformTransactionManager transactionManager) {
+        this.outboxRepository = outboxRepository;
+        this.emailService = emailService;
+        this.mailSender = mailSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Sends all due emails, one batch at a time.
+     */
+    @Scheduled(fixedDelayString = "${app.email.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            while (dispatchBatch() == batchSize) {
+                // Keep draining a backlog
+            }
+        } catch (RuntimeException e) {
+            log.warn("Email outbox dispatch failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claims, sends and records one batch.
+     *
+     * @return the number of emails claimed
+     */
+    int dispatchBatch() {
+        List<EmailOutboxMessage> batch = transactionTemplate.execute(status -> claim(Instant.now()));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Exception> failures = deliver(batch);
+        transactionTemplate.executeWithoutResult(status -> record(batch, failures, Instant.now()));
+        return batch.size();
+    }
+
+    private List<EmailOutboxMessage> claim(Instant now) {
+        List<EmailOutboxMessage> batch = outboxRepository.findDueForUpdate(now, PageRequest.of(0, batchSize));
+        Instant claimedUntil = now.plusSeconds(claimTimeoutSeconds);
+        for (EmailOutboxMessage message : batch) {
+            message.setAttempts(message.getAttempts() + 1);
+            message.setNextAttemptAt(claimedUntil);
+        }
+        return outboxRepository.saveAll(batch);
+    }
+
+    /**
+     * Sends a batch over a single SMTP connection.
+     *
+     * @return the failure of each email that was not sent, by outbox id
+     */
+    private Map<Long, Exception> deliver(List<EmailOutboxMessage> batch) {
+        Map<Long, Exception> failures = new HashMap<>();
+        Map<MimeMessage, EmailOutboxMessage> messages = new IdentityHashMap<>();
+        for (EmailOutboxMessage email : batch) {
+            try {
+                messages.put(emailService.toMimeMessage(email), email);
+            } catch (MessagingException e) {
+                failures.put(email.getId(), e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return failures;
+        }
+
+        try {
+            mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                messages.values().forEach(email -> failures.put(email.getId(), e));
+            }
+            e.getFailedMessages().forEach((message, cause) -> {
+                EmailOutboxMessage email = messages.get(message);
+                if (email != null) {
+                    failures.put(email.getId(), cause);
+                }
+            });
+        } catch (MailException e) {
+            messages.values().forEach(email -> failures.put(email.getId(), e));
+        }
+        return failures;
+    }
+
+    private void record(List<EmailOutboxMessage> batch, Map<Long, Exception> failures, Instant now) {
+        List<EmailOutboxMessage> updated = new ArrayList<>(batch.size());
+        for (EmailOutboxMessage email : batch) {
+            Exception failure = failures.get(email.getId());
+            if (failure == null) {
+                email.setStatus(EmailOutboxMessage.Status.SENT);
+                email.setSentAt(now);
+                email.setLastError(null);
+                sent.increment();
+            } else {
+                email.setLastError(truncate(String.valueOf(failure.getMessage())));
+                if (email.getAttempts() >= maxAttempts) {
+                    email.setStatus(EmailOutboxMessage.Status.FAILED);
+                    failed.increment();
+                    log.warn("Giving up on email {} to {} after {} attempts: {}",
+                            email.getId(), email.getRecipient(), email.getAttempts(), failure.getMessage());
+                } else {
+                    email.setNextAttemptAt(now.plus(backoff(email.getAttempts())));
+                    retried.increment();
+                }
+            }
+            updated.add(email);
+        }
+        outboxRepository.saveAll(updated);
+        if (!failures.isEmpty()) {
+            log.info("Sent {} of {} queued emails; {} will be retried or were given up",
+                    batch.size() - failures.size(), batch.size(), failures.size());
+        }
+    }
+
+    /**
+     * Deletes sent and failed emails older than the retention period, one batch per transaction.
+     */
+    @Scheduled(fixedDelayString = "${app.email.outbox.sweep-interval-ms:3600000}", initialDelayString = "${app.email.outbox.sweep-interval-ms:3600000}")
+    public void sweepFinished() {
+        Instant before = Instant.now().minus(Duration.ofHours(retentionHours));
+        int total = 0;
+        Integer deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> outboxRepository.deleteFinishedBefore(before, sweepBatchSize));
+            total += deleted != null ? deleted : 0;
+        } while (deleted != null && deleted == sweepBatchSize);
+        swept.add(total);
+        if (total > 0) {
+            log.info("Deleted {} sent or failed emails from the outbox", total);
+        }
+    }
+
+    /**
+     * Returns the delay before the attempt following the given one.
+     */
+    Duration backoff(int attempts) {
+        int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+        return Duration.ofMillis(Math.min(maxBackoffMs, initialBackoffMs << doublings));
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+
+    /**
+     * Returns the outbox size by state and the delivery counters.
+     *
+     * @return outbox metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pending", outboxRepository.countByStatus(EmailOutboxMessage.Status.PENDING));
+        stats.put("failed", outboxRepository.countByStatus(EmailOutboxMessage.Status.FAILED));
+        stats.put("sentSinceStart", sent.sum());
+        stats.put("retriedSinceStart", retried.sum());
+        stats.put("failedSinceStart", failed.sum());
+        stats.put("sweptSinceStart", swept.sum());
+        return stats;
+    }
+}
@@ -1,5 +1,7 @@
 package com.mlspamdetection.webapp_backend.service;
 
+import com.mlspamdetection.webapp_backend.model.EmailOutboxMessage;
+import com.mlspamdetection.webapp_backend.repo.EmailOutboxRepository;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,13 +9,17 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
 
 /**
  * Service responsible for sending emails to users.
  * 
  * <p>This service provides functionality for sending various types of emails
- * to users, such as verification emails for account activation. It uses Spring's
- * JavaMailSender to compose and send HTML-formatted emails.</p>
+ * to users, such as verification emails for account activation. Emails are not sent
+ * during the request: they are written to the email outbox, in the caller's transaction,
+ * and delivered as HTML-formatted emails by {@link EmailOutboxDispatcher}.</p>
  * 
  * <p>The service is configured with the application's base URL to construct
  * proper verification links that users can click to verify their email addresses.</p>
@@ -22,11 +28,22 @@ import org.springframework.stereotype.Service;
 public class EmailService {
 
     /**
-     * Spring's mail sender component for sending emails.
+     * Sender address of all emails.
+     */
+    static final String FROM_ADDRESS = "verification.mlspamdetect@gmail.com";
+
+    /**
+     * Spring's mail sender component, used to create the messages for delivery.
      */
     @Autowired
     private JavaMailSender mailSender;
 
+    /**
+     * Repository of queued emails.
+     */
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
     /**
      * Base URL of the application, used for constructing verification links.
      * Injected from application properties.
@@ -35,11 +52,12 @@ public class EmailService {
     private String baseUrl;
 
     /**
-     * Sends a verification email to a user with a verification token.
+     * Queues a verification email to a user with a verification token.
      * 
-     * <p>This method composes and sends an HTML-formatted email containing a verification
-     * link that the user can click to verify their email address. The verification link
-     * includes a token that is used to identify and verify the user's account.</p>
+     * <p>This method composes an HTML-formatted email containing a verification
+     * link that the user can click to verify their email address, and adds it to the outbox.
+     * It joins the caller's transaction, so the email is only sent if the token it carries
+     * is committed.</p>
      * 
      * <p>The email includes:</p>
      * <ul>
@@ -49,18 +67,29 @@ public class EmailService {
      *
      * @param to the recipient's email address
      * @param token the verification token to include in the verification link
-     * @throws MessagingException if there is an error creating or sending the email
      */
-    public void sendVerificationEmail(String to, String token) throws MessagingException {
-        MimeMessage message = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, true);
-        helper.setTo(to);
-        helper.setFrom("verification.mlspamdetect@gmail.com");
-        helper.setSubject("Email Verification - ML Spam Detection");
+    @Transactional
+    public void queueVerificationEmail(String to, String token) {
         String verificationLink = baseUrl + "/api/auth/verify?token=" + token;
         String emailContent = "<p> Thank you for signing up for ML Spam Detection. Please click the link below to verify your email address:</p>" +
                 "<p><a href=\"" + verificationLink + "\">Verify Email</a></p>";
-        helper.setText(emailContent, true);
-        mailSender.send(message);
+        outboxRepository.save(new EmailOutboxMessage(to, "Email Verification - ML Spam Detection", emailContent, Instant.now()));
+    }
+
+    /**
+     * Creates the MIME message for a queued email.
+     *
+     * @param email the queued email
+     * @return the message, ready to be sent
+     * @throws MessagingException if the message cannot be composed, for example because of an invalid address
+     */
+    public MimeMessage toMimeMessage(EmailOutboxMessage email) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+        helper.setTo(email.getRecipient());
+        helper.setFrom(FROM_ADDRESS);
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getBody(), true);
+        return message;
     }
 }
@@ -2,13 +2,13 @@ package com.mlspamdetection.webapp_backend.service;
 
 import com.mlspamdetection.webapp_backend.model.User;
 import com.mlspamdetection.webapp_backend.repo.UserRepository;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUserCache;
 import com.mlspamdetection.webapp_backend.security.JwtUtil;
-import jakarta.mail.MessagingException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
-import java.util.UUID;
 
 /**
  * Service responsible for handling email verification processes.
@@ -41,51 +41,65 @@ public class EmailVerificationService {
     @Autowired
     private JwtUtil jwtUtil;
 
+    /**
+     * Cache of authenticated principals, evicted when a user is verified.
+     */
+    @Autowired
+    private AuthenticatedUserCache authenticatedUserCache;
+
+    /**
+     * Service storing hashed verification tokens.
+     */
+    @Autowired
+    private AuthTokenService authTokenService;
+
     /**
      * Sends a verification email to a newly registered user.
      * 
-     * <p>This method generates a unique verification token using UUID, associates it with
-     * the user account, and sends an email containing a verification link with this token.</p>
+     * <p>This method generates a unique random verification token, associates it with
+     * the user account, and queues an email containing a verification link with this token.</p>
      * 
-     * <p>The verification token is stored in the user's record in the database and will be
-     * used to verify the user's email address when they click the verification link.</p>
+     * <p>Only a digest of the verification token is stored, replacing any earlier token of the
+     * user, and will be used to verify the user's email address when they click the verification
+     * link. The user, the token and the queued email are saved in one transaction, so a new user is never stored without
+     * their email, and an unreachable mail server does not fail the registration.</p>
      *
      * @param user the user who needs email verification
-     * @throws MessagingException if there is an error sending the email
      */
-    public void sendVerificationEmail(User user) throws MessagingException {
-        String token = UUID.randomUUID().toString();
-        user.setVerificationToken(token);
+    @Transactional
+    public void sendVerificationEmail(User user) {
         userRepository.save(user);
+        String token = authTokenService.issueVerificationToken(user);
 
-        emailService.sendVerificationEmail(user.getEmail(), token);
+        emailService.queueVerificationEmail(user.getEmail(), token);
     }
 
     /**
      * Verifies a user's email address using the provided verification token.
      * 
      * <p>This method is called when a user clicks on the verification link in their email.
-     * It looks up the user by the verification token, and if found, marks the user as verified
-     * and clears the verification token.</p>
+     * It looks up the verification token, and if found and unexpired, marks its user as verified
+     * and deletes the token.</p>
      * 
      * <p>The verification process follows these steps:</p>
      * <ol>
-     *   <li>Find the user with the matching verification token</li>
-     *   <li>If found, mark the user as verified</li>
-     *   <li>Clear the verification token (it's single-use)</li>
+     *   <li>Find the verification token by its digest, together with its user</li>
+     *   <li>Delete the token (it's single-use)</li>
+     *   <li>If it has not expired, mark the user as verified</li>
      *   <li>Save the updated user information</li>
      * </ol>
      *
      * @param token the verification token from the email link
-     * @return true if verification was successful, false if the token was invalid or not found
+     * @return true if verification was successful, false if the token was invalid, expired or not found
      */
+    @Transactional
     public boolean verifyEmail(String token) {
-        Optional<User> userOpt = userRepository.findByVerificationToken(token);
+        Optional<User> userOpt = authTokenService.consumeVerificationToken(token);
         if (userOpt.isPresent()) {
             User user = userOpt.get();
             user.setVerified(true);
-            user.setVerificationToken(null);
             userRepository.save(user);
+            authenticatedUserCache.evict(user.getEmail());
             return true;
         }
 
@@ -107,10 +121,10 @@ public class EmailVerificationService {
      * </ol>
      *
      * @param email the email address of the user requesting a new verification email
-     * @return true if a new verification email was sent, false if the user doesn't exist or is already verified
-     * @throws MessagingException if there is an error sending the email
+     * @return true if a new verification email was queued, false if the user doesn't exist or is already verified
      */
-    public boolean resendVerificationEmail(String email) throws MessagingException {
+    @Transactional
+    public boolean resendVerificationEmail(String email) {
         Optional<User> userOpt = userRepository.findByEmail(email);
         if (userOpt.isPresent()) {
             User user = userOpt.get();
@@ -0,0 +1,171 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.mlspamdetection.webapp_backend.util.Deadline;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking transport to the ML service on the JDK {@link HttpClient} with HTTP/2.
+ *
+ * <p>Over plain {@code http://} URLs the client upgrades each connection to HTTP/2 (h2c) when the
+ * ML service supports it, and then multiplexes concurrent calls as streams on one connection per
+ * replica. Otherwise it falls back to HTTP/1.1. Responses are handled on a small fixed pool, so no
+ * thread waits while inference runs.</p>
+ *
+ * <p>Failures are reported with the same exception types as the RestTemplate transport
+ * ({@link ResourceAccessException} for I/O errors and timeouts, {@link HttpServerErrorException}
+ * and {@link HttpClientErrorException} for error statuses). The circuit breaker, retries and
+ * replica ejection therefore treat both transports alike. Request bodies are encoded as negotiated
+ * by {@link MLWireFormat}.</p>
+ */
+class MLHttp2Transport {
+
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final MLWireFormat wireFormat;
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+    private final Duration requestTimeout;
+
+    /**
+     * Creates the transport and its HTTP client.
+     *
+     * @param wireFormat negotiates JSON or CBOR per replica
+     * @param jsonMapper mapper used for JSON bodies
+     * @param connectTimeoutMs TCP connect timeout in milliseconds
+     * @param readTimeoutMs time in milliseconds to wait for a response
+     * @param executorThreads number of threads handling responses
+     */
+    MLHttp2Transport(MLWireFormat wireFormat, ObjectMapper jsonMapper, long connectTimeoutMs, long readTimeoutMs, int executorThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(executorThreads, runnable -> {
+            Thread thread = new Thread(runnable, "ml-http2-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(executor)
+                .build();
+        this.wireFormat = wireFormat;
+        this.jsonMapper = jsonMapper;
+        this.cborMapper = CBORMapper.builder().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).build();
+        this.requestTimeout = Duration.ofMillis(readTimeoutMs);
+    }
+
+    /**
+     * Posts a body to an ML service replica without blocking.
+     *
+     * @param baseUrl base URL of the replica
+     * @param path endpoint path, e.g. {@code /predict}
+     * @param body the request body
+     * @param responseType the type to decode the response into
+     * @param deadline deadline of the request being served, or null; its remaining budget caps the
+     *                 response timeout and is sent to the ML service
+     * @param <T> the response type
+     * @return a future completed with the decoded response
+     */
+    <T> CompletableFuture<T> post(String baseUrl, String path, Object body, Class<T> responseType, Deadline deadline) {
+        boolean cbor = wireFormat.prefersCbor(baseUrl);
+        CompletableFuture<T> response = send(baseUrl + path, body, responseType, cbor, deadline);
+        if (!cbor) {
+            return response;
+        }
+        return response.exceptionallyCompose(error -> {
+            if (MLServiceReplicas.unwrap(error) instanceof HttpClientErrorException.UnsupportedMediaType) {
+                wireFormat.fallBackToJson(baseUrl);
+                return send(baseUrl + path, body, responseType, false, deadline);
+            }
+            return CompletableFuture.failedFuture(error);
+        });
+    }
+
+    /**
+     * Stops the response handling pool.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> send(String url, Object body, Class<T> responseType, boolean cbor, Deadline deadline) {
+        String mediaType = cbor ? "application/cbor" : "application/json";
+        byte[] payload;
+        try {
+            payload = (cbor ? cborMapper : jsonMapper).writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Could not encode ML service request", e));
+        }
+        wireFormat.countRequest(cbor);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header(HttpHeaders.CONTENT_TYPE, mediaType)
+                .header(HttpHeaders.ACCEPT, cbor ? "application/cbor, application/json" : mediaType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload));
+        if (deadline != null) {
+            long budgetMs = deadline.capMillis(requestTimeout.toMillis());
+            request.timeout(Duration.ofMillis(budgetMs)).header(Deadline.TIMEOUT_HEADER, String.valueOf(budgetMs));
+        }
+
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        throw toResourceAccessException(url, error);
+                    }
+                    return decode(url, response, responseType);
+                });
+    }
+
+    private static ResourceAccessException toResourceAccessException(String url, Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        IOException ioException = cause instanceof IOException io ? io : new IOException(cause);
+        return new ResourceAccessException("I/O error on POST request for \"" + url + "\": " + ioException.getMessage(), ioException);
+    }
+
+    private <T> T decode(String url, HttpResponse<byte[]> response, Class<T> responseType) {
+        int status = response.statusCode();
+        if (status >= 400) {
+            HttpStatusCode statusCode = HttpStatusCode.valueOf(status);
+            String statusText = "Error response from " + url;
+            if (status >= 500) {
+                throw HttpServerErrorException.create(statusCode, statusText, new HttpHeaders(), response.body(), null);
+            }
+            throw HttpClientErrorException.create(statusCode, statusText, new HttpHeaders(), response.body(), null);
+        }
+        byte[] body = response.body();
+        if (body == null || body.length == 0) {
+            return null;
+        }
+        boolean cborResponse = response.headers().firstValue(HttpHeaders.CONTENT_TYPE)
+                .map(contentType -> contentType.contains("cbor"))
+                .orElse(false);
+        try {
+            return (cborResponse ? cborMapper : jsonMapper).readValue(body, responseType);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not decode ML service response: " + e.getMessage(), e);
+        }
+    }
+}
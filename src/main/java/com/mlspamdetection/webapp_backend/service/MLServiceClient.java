@@ -1,16 +1,44 @@
 package com.mlspamdetection.webapp_backend.service;
 
+import com.mlspamdetection.webapp_backend.dto.MLBatchPredictResponse;
+import com.mlspamdetection.webapp_backend.dto.MLPredictResponse;
+import com.mlspamdetection.webapp_backend.dto.MLPrediction;
 import com.mlspamdetection.webapp_backend.dto.PredictionResult;
+import com.mlspamdetection.webapp_backend.exception.DeadlineExceededException;
+import com.mlspamdetection.webapp_backend.exception.MLServiceUnavailableException;
+import com.mlspamdetection.webapp_backend.util.AdaptiveConcurrencyLimiter;
+import com.mlspamdetection.webapp_backend.util.CircuitBreaker;
+import com.mlspamdetection.webapp_backend.util.Deadline;
+import com.mlspamdetection.webapp_backend.util.RetryBudget;
+import com.mlspamdetection.webapp_backend.util.SingleFlight;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Client service for communicating with the ML prediction service.
@@ -20,8 +48,38 @@ import java.util.Map;
  * and response parsing required to obtain spam predictions for email text.</p>
  * 
  * <p>The service uses Spring's RestTemplate to make HTTP requests to the ML service
- * endpoint configured via application properties. It includes error handling and
- * logging to help diagnose issues with the ML service communication.</p>
+ * endpoint configured via application properties. The RestTemplate is backed by the pooled,
+ * keep-alive transport from {@code MLServiceConfig}, so calls reuse connections and are
+ * bounded by the configured connect, read and pool-acquire timeouts. Requests are encoded as
+ * JSON or CBOR as negotiated by {@link MLWireFormat}, and responses are decoded directly into
+ * typed DTOs. It includes error handling and logging to help diagnose issues with the ML
+ * service communication.</p>
+ *
+ * <p>When {@code ml.service.micro-batch.enabled} is set, concurrent single-text calls to
+ * {@link #getPrediction(String)} are collected for a few milliseconds and sent to the ML service
+ * as one batched request, without changing the method's contract.</p>
+ *
+ * <p>Successful predictions are stored in the {@link PredictionCache}, keyed by content and
+ * active model version, so repeated texts are answered without an ML call unless the caller
+ * asks to bypass the cache. Concurrent cache misses for the same content and model version
+ * share a single outstanding ML call.</p>
+ *
+ * <p>Every HTTP call to the ML service goes through a {@link CircuitBreaker}. Transient failures
+ * are retried with jittered exponential backoff within a {@link RetryBudget}. While the breaker is
+ * open, calls fail fast with {@link MLServiceUnavailableException}, or, in degraded mode, are
+ * answered from the prediction cache with results flagged as degraded.</p>
+ *
+ * <p>The number of outstanding ML calls is bounded by an {@link AdaptiveConcurrencyLimiter} that
+ * follows the service's round-trip latency. Calls over the limit wait briefly for a slot and are
+ * otherwise shed, like calls rejected by an open breaker, so bursts do not stretch tail latency.</p>
+ *
+ * <p>{@code ml.service.urls} may list several ML service replicas. Calls are balanced across them
+ * by {@link MLServiceReplicas}, which ejects failing replicas and can hedge slow calls.</p>
+ *
+ * <p>With {@code ml.service.transport=http2}, {@link #getPredictionAsync(String, boolean)} calls the
+ * ML service through {@link MLHttp2Transport} without blocking the caller, multiplexing concurrent
+ * calls over HTTP/2. With the default {@code rest} transport it completes synchronously on the
+ * caller's thread.</p>
  */
 @Service
 @Slf4j
@@ -32,16 +90,362 @@ public class MLServiceClient {
     @Value("${ml.service.url}")
     private String mlServiceUrl;
 
+    /**
+     * Base URLs of all ML service replicas; defaults to the single {@code ml.service.url}.
+     */
+    @Value("${ml.service.urls:${ml.service.url}}")
+    private String[] mlServiceUrls;
+
+    /**
+     * Consecutive failures after which a replica is taken out of rotation.
+     */
+    @Value("${ml.service.replicas.failures-to-eject:3}")
+    private int replicaFailuresToEject;
+
+    /**
+     * Time in milliseconds an ejected replica stays out of rotation; doubles on repeated ejections.
+     */
+    @Value("${ml.service.replicas.ejection-ms:30000}")
+    private long replicaEjectionMs;
+
+    /**
+     * Whether calls slower than the observed p95 are duplicated to a second replica.
+     */
+    @Value("${ml.service.hedging.enabled:false}")
+    private boolean hedgingEnabled;
+
+    /**
+     * Lower bound in milliseconds of the delay before a call is hedged.
+     */
+    @Value("${ml.service.hedging.min-delay-ms:20}")
+    private long hedgingMinDelayMs;
+
+    /**
+     * Maximum number of threads running hedged calls.
+     */
+    @Value("${ml.service.hedging.max-threads:100}")
+    private int hedgingMaxThreads;
+
+    /**
+     * Load balancer over the ML service replicas.
+     */
+    private MLServiceReplicas replicas;
+
+    /**
+     * Transport used by {@link #getPredictionAsync(String, boolean)}: {@code rest} or {@code http2}.
+     */
+    @Value("${ml.service.transport:rest}")
+    private String transport;
+
+    /**
+     * Number of threads handling responses of the HTTP/2 transport.
+     */
+    @Value("${ml.service.http2.executor-threads:4}")
+    private int http2ExecutorThreads;
+
+    /**
+     * TCP connect timeout of the HTTP/2 transport.
+     */
+    @Value("${ml.service.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    /**
+     * Non-blocking HTTP/2 transport, or null when the {@code rest} transport is used.
+     */
+    private MLHttp2Transport http2Transport;
+
     /**
      * RestTemplate instance for making HTTP requests to the ML service.
      */
     private final RestTemplate restTemplate;
 
     /**
-     * Constructs a new MLServiceClient with a default RestTemplate.
+     * Whether concurrent single predictions are combined into batched ML calls.
+     */
+    @Value("${ml.service.micro-batch.enabled:false}")
+    private boolean microBatchEnabled;
+
+    /**
+     * Maximum number of texts combined into one batched ML call.
+     */
+    @Value("${ml.service.micro-batch.max-batch-size:16}")
+    private int microBatchMaxSize;
+
+    /**
+     * Maximum time in milliseconds a prediction waits for other predictions to batch with.
+     */
+    @Value("${ml.service.micro-batch.max-wait-ms:5}")
+    private long microBatchMaxWaitMs;
+
+    /**
+     * Maximum number of predictions waiting to be batched before callers fall back to direct calls.
+     */
+    @Value("${ml.service.micro-batch.queue-capacity:1000}")
+    private int microBatchQueueCapacity;
+
+    /**
+     * Maximum number of batched ML calls in flight at once.
+     */
+    @Value("${ml.service.micro-batch.max-concurrent-batches:4}")
+    private int microBatchMaxConcurrent;
+
+    /**
+     * Read timeout of the prediction transport, used to bound how long a caller waits for its batch.
+     */
+    @Value("${ml.service.read-timeout-ms:5000}")
+    private long readTimeoutMs;
+
+    /**
+     * Minimum budget in milliseconds of a prediction call shared by coalesced identical requests;
+     * 0 for none.
+     */
+    @Value("${app.deadline.predict-ms:5000}")
+    private long sharedCallBudgetMs;
+
+    /**
+     * Maximum number of threads running shared prediction calls for callers whose own deadline
+     * ends before the shared call's.
+     */
+    @Value("${ml.service.coalescing.max-threads:50}")
+    private int coalescingMaxThreads;
+
+    /**
+     * Runs shared prediction calls so that the caller that started one can give up at its own deadline.
+     */
+    private ThreadPoolExecutor coalescingExecutor;
+
+    /**
+     * Number of recent ML calls the circuit breaker computes its failure rate over.
+     */
+    @Value("${ml.service.circuit-breaker.window-size:50}")
+    private int breakerWindowSize;
+
+    /**
+     * Number of recorded ML calls required before the circuit breaker may open.
+     */
+    @Value("${ml.service.circuit-breaker.minimum-calls:20}")
+    private int breakerMinimumCalls;
+
+    /**
+     * Percentage of failed or slow ML calls at which the circuit breaker opens.
+     */
+    @Value("${ml.service.circuit-breaker.failure-rate-threshold:50}")
+    private double breakerFailureRateThreshold;
+
+    /**
+     * Duration in milliseconds above which a successful ML call counts as a failure.
      */
-    public MLServiceClient() {
-        this.restTemplate = new RestTemplate();
+    @Value("${ml.service.circuit-breaker.slow-call-ms:3000}")
+    private long breakerSlowCallMs;
+
+    /**
+     * Time in milliseconds the circuit breaker stays open before probing the ML service again.
+     */
+    @Value("${ml.service.circuit-breaker.open-ms:10000}")
+    private long breakerOpenMs;
+
+    /**
+     * Number of probe calls allowed, and required to succeed, before the circuit breaker closes.
+     */
+    @Value("${ml.service.circuit-breaker.half-open-probes:3}")
+    private int breakerHalfOpenProbes;
+
+    /**
+     * Maximum number of retries of one ML call.
+     */
+    @Value("${ml.service.retry.max-retries:2}")
+    private int maxRetries;
+
+    /**
+     * Base delay in milliseconds of the exponential retry backoff.
+     */
+    @Value("${ml.service.retry.base-backoff-ms:50}")
+    private long retryBaseBackoffMs;
+
+    /**
+     * Upper bound in milliseconds of a single retry backoff.
+     */
+    @Value("${ml.service.retry.max-backoff-ms:500}")
+    private long retryMaxBackoffMs;
+
+    /**
+     * Retries earned per ML call, bounding retries to this fraction of traffic.
+     */
+    @Value("${ml.service.retry.budget-ratio:0.1}")
+    private double retryBudgetRatio;
+
+    /**
+     * Maximum number of retries that can be saved up in the retry budget.
+     */
+    @Value("${ml.service.retry.budget-max-tokens:10}")
+    private double retryBudgetMaxTokens;
+
+    /**
+     * Whether cached verdicts are served, flagged as degraded, while the circuit breaker is open.
+     */
+    @Value("${ml.service.degraded-mode.enabled:true}")
+    private boolean degradedModeEnabled;
+
+    /**
+     * Whether outstanding ML calls are bounded by the adaptive concurrency limiter.
+     */
+    @Value("${ml.service.concurrency.enabled:true}")
+    private boolean concurrencyLimitEnabled;
+
+    /**
+     * Concurrency limit used until latency samples are available.
+     */
+    @Value("${ml.service.concurrency.initial-limit:20}")
+    private int concurrencyInitialLimit;
+
+    /**
+     * Lowest concurrency limit the limiter may set.
+     */
+    @Value("${ml.service.concurrency.min-limit:2}")
+    private int concurrencyMinLimit;
+
+    /**
+     * Highest concurrency limit the limiter may set; should not exceed the connection pool size.
+     */
+    @Value("${ml.service.concurrency.max-limit:50}")
+    private int concurrencyMaxLimit;
+
+    /**
+     * Time in milliseconds a call over the limit may wait for a slot before being shed.
+     */
+    @Value("${ml.service.concurrency.max-queue-wait-ms:50}")
+    private long concurrencyMaxQueueWaitMs;
+
+    /**
+     * Maximum number of calls waiting for a slot at once.
+     */
+    @Value("${ml.service.concurrency.max-queued:50}")
+    private int concurrencyMaxQueued;
+
+    /**
+     * Adaptive limit on outstanding ML calls, or null when disabled.
+     */
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * Circuit breaker around every HTTP call to the prediction endpoint.
+     */
+    private CircuitBreaker circuitBreaker;
+
+    /**
+     * Budget limiting retries of failed ML calls.
+     */
+    private RetryBudget retryBudget;
+
+    /**
+     * Micro-batcher for single predictions, or null when micro-batching is disabled.
+     */
+    private PredictionMicroBatcher microBatcher;
+
+    /**
+     * Cache of predictions keyed by content and active model version.
+     */
+    private final PredictionCache predictionCache;
+
+    /**
+     * Chooses the request encoding for each ML service replica.
+     */
+    private final MLWireFormat wireFormat;
+
+    /**
+     * JSON mapper used by the HTTP/2 transport.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * In-flight ML calls keyed by prediction cache key, so identical concurrent requests share one call.
+     */
+    private final SingleFlight<String, PredictionResult> inFlightPredictions = new SingleFlight<>();
+
+    /**
+     * Constructs a new MLServiceClient using the pooled prediction transport.
+     *
+     * @param restTemplate RestTemplate backed by the ML service connection pool
+     * @param predictionCache cache of previous predictions
+     * @param wireFormat negotiates JSON or CBOR encoding per replica
+     * @param objectMapper the application's JSON mapper
+     */
+    public MLServiceClient(@Qualifier("mlRestTemplate") RestTemplate restTemplate, PredictionCache predictionCache,
+                           MLWireFormat wireFormat, ObjectMapper objectMapper) {
+        this.restTemplate = restTemplate;
+        this.predictionCache = predictionCache;
+        this.wireFormat = wireFormat;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Creates the replica balancer, shared call pool, circuit breaker and retry budget, the HTTP/2
+     * transport if it is selected, and starts the micro-batcher if micro-batching is enabled.
+     */
+    @PostConstruct
+    void init() {
+        List<String> urls = new ArrayList<>();
+        for (String url : mlServiceUrls) {
+            String trimmed = url.trim();
+            if (!trimmed.isEmpty()) {
+                urls.add(trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed);
+            }
+        }
+        replicas = new MLServiceReplicas(urls, replicaFailuresToEject, replicaEjectionMs,
+                hedgingEnabled, hedgingMinDelayMs, hedgingMaxThreads);
+        log.info("ML service replicas: {} (hedging {})", urls, hedgingEnabled && urls.size() > 1 ? "enabled" : "disabled");
+
+        if ("http2".equalsIgnoreCase(transport)) {
+            http2Transport = new MLHttp2Transport(wireFormat, objectMapper, connectTimeoutMs, readTimeoutMs, http2ExecutorThreads);
+            log.info("ML service async transport: HTTP/2 ({} response threads)", http2ExecutorThreads);
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        coalescingExecutor = new ThreadPoolExecutor(0, coalescingMaxThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ml-shared-call-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        circuitBreaker = new CircuitBreaker("ml-service", breakerWindowSize, breakerMinimumCalls,
+                breakerFailureRateThreshold, breakerSlowCallMs, breakerOpenMs, breakerHalfOpenProbes);
+        retryBudget = new RetryBudget(retryBudgetRatio, retryBudgetMaxTokens);
+        if (concurrencyLimitEnabled) {
+            concurrencyLimiter = new AdaptiveConcurrencyLimiter(concurrencyInitialLimit, concurrencyMinLimit,
+                    concurrencyMaxLimit, concurrencyMaxQueueWaitMs, concurrencyMaxQueued);
+        }
+
+        if (microBatchEnabled) {
+            microBatcher = new PredictionMicroBatcher(this::requestPredictions, microBatchMaxSize,
+                    microBatchMaxWaitMs, microBatchQueueCapacity, microBatchMaxConcurrent);
+            log.info("ML micro-batching enabled (max batch size {}, max wait {} ms)", microBatchMaxSize, microBatchMaxWaitMs);
+        }
+    }
+
+    /**
+     * Stops the micro-batcher, failing any predictions still waiting for a batch, the hedging pool,
+     * the shared call pool and the HTTP/2 transport.
+     */
+    @PreDestroy
+    void shutdown() {
+        if (microBatcher != null) {
+            microBatcher.stop();
+        }
+        replicas.shutdown();
+        coalescingExecutor.shutdownNow();
+        if (http2Transport != null) {
+            http2Transport.shutdown();
+        }
+    }
+
+    /**
+     * Returns per-replica load, latency and error statistics and hedging counters.
+     *
+     * @return replica metrics suitable for an admin response
+     */
+    public Map<String, Object> getReplicaStats() {
+        return replicas.stats();
     }
 
     /**
@@ -59,84 +463,688 @@ public class MLServiceClient {
      * handling both numeric (0/1) and string ("ham"/"spam") prediction values, as well as
      * nested response structures.</p>
      *
+     * <p>With micro-batching enabled the text is queued and sent together with other concurrent
+     * predictions; if the queue is full the call falls back to a direct request.</p>
+     *
      * @param emailText the email text to analyze for spam detection
      * @return a PredictionResult containing the classification ("spam" or "ham") and confidence score
      * @throws RuntimeException if communication with the ML service fails or returns an error
      */
     public PredictionResult getPrediction(String emailText) {
+        return getPrediction(emailText, false);
+    }
+
+    /**
+     * Retrieves a spam prediction, optionally skipping the prediction cache.
+     *
+     * <p>A cached prediction for the same content under the active model is returned directly.
+     * With {@code bypassCache} set the ML service is always called, and its answer replaces
+     * the cached one.</p>
+     *
+     * <p>If an identical text is already being sent to the ML service under the same model
+     * version, this call waits for that request and returns its result instead of sending
+     * another one. The shared request runs under the later of the starting caller's deadline and
+     * the server-side {@code app.deadline.predict-ms} budget, so a caller with a short deadline
+     * cannot fail the callers that joined it. Every caller, including the one that started the
+     * request, waits only until its own deadline; when that ends before the shared request's, the
+     * request runs on a separate thread (or on the caller's own thread once
+     * {@code ml.service.coalescing.max-threads} are busy) and carries on for the others.</p>
+     *
+     * <p>While the circuit breaker is open, a cached verdict is returned flagged as degraded,
+     * even when {@code bypassCache} is set, if degraded mode is enabled and one exists.</p>
+     *
+     * @param emailText the email text to analyze for spam detection
+     * @param bypassCache whether to ignore any cached prediction for this text
+     * @return a PredictionResult containing the classification ("spam" or "ham") and confidence score
+     * @throws MLServiceUnavailableException if the circuit breaker is open and no degraded verdict is available
+     * @throws RuntimeException if communication with the ML service fails or returns an error
+     */
+    public PredictionResult getPrediction(String emailText, boolean bypassCache) {
+        String cacheKey = predictionCache.key(emailText);
+        if (!bypassCache) {
+            PredictionResult cached = predictionCache.getByKey(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            deadline.check("ML service call");
+        }
+        Deadline sharedDeadline = sharedCallDeadline(deadline);
+        Supplier<PredictionResult> call = () -> {
+            PredictionResult result = fetchPrediction(emailText);
+            predictionCache.putByKey(cacheKey, result);
+            return result;
+        };
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+            if (sharedDeadline == deadline) {
+                // The caller's deadline bounds the shared call too, so it can run on this thread
+                return inFlightPredictions.execute(cacheKey, call, deadline);
+            }
+            return inFlightPredictions.execute(cacheKey, sharedDeadline.bind(call), deadline, coalescingExecutor);
+        } catch (MLServiceUnavailableException e) {
+            PredictionResult degraded = degradedModeEnabled ? predictionCache.getDegraded(emailText) : null;
+            if (degraded == null) {
+                throw e;
+            }
+            return degraded;
+        }
+    }
 
+    /**
+     * Retrieves a spam prediction without holding the caller's thread while the ML service works.
+     *
+     * <p>Behaves like {@link #getPrediction(String, boolean)}: cache lookup, coalescing of identical
+     * in-flight texts, circuit breaker, retries and degraded verdicts all apply. On the HTTP/2
+     * transport the ML call is non-blocking and bypasses micro-batching. On the {@code rest}
+     * transport the prediction is computed on the calling thread and returned as a completed future.</p>
+     *
+     * @param emailText the email text to analyze for spam detection
+     * @param bypassCache whether to ignore any cached prediction for this text
+     * @return a future completed with the prediction, or with {@link MLServiceUnavailableException}
+     *         or another RuntimeException on failure
+     */
+    public CompletableFuture<PredictionResult> getPredictionAsync(String emailText, boolean bypassCache) {
+        if (http2Transport == null) {
+            try {
+                return CompletableFuture.completedFuture(getPrediction(emailText, bypassCache));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        String cacheKey = predictionCache.key(emailText);
+        if (!bypassCache) {
+            PredictionResult cached = predictionCache.getByKey(cacheKey);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            return CompletableFuture.failedFuture(new DeadlineExceededException("Request deadline exceeded before ML service call"));
+        }
+        CompletableFuture<PredictionResult> prediction = inFlightPredictions.executeAsync(cacheKey,
+                () -> requestPredictionAsync(emailText, sharedCallDeadline(deadline))
+                        .thenApply(result -> {
+                            predictionCache.putByKey(cacheKey, result);
+                            return result;
+                        }));
+        if (deadline != null) {
+            // Times out this caller's copy only; the shared call keeps running for the others
+            prediction = prediction.orTimeout(deadline.capMillis(Long.MAX_VALUE), TimeUnit.MILLISECONDS);
+        }
+        return prediction
+                .exceptionallyCompose(error -> {
+                    RuntimeException cause = MLServiceReplicas.unwrap(error);
+                    if (cause.getCause() instanceof TimeoutException) {
+                        return CompletableFuture.failedFuture(
+                                new DeadlineExceededException("Request deadline exceeded waiting for ML call"));
+                    }
+                    PredictionResult degraded = cause instanceof MLServiceUnavailableException && degradedModeEnabled
+                            ? predictionCache.getDegraded(emailText) : null;
+                    return degraded != null ? CompletableFuture.completedFuture(degraded) : CompletableFuture.failedFuture(cause);
+                });
+    }
+
+    /**
+     * Returns circuit breaker state, retry budget and degraded mode settings.
+     *
+     * @return resilience metrics suitable for an admin response
+     */
+    public Map<String, Object> getCircuitBreakerStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("circuitBreaker", circuitBreaker.stats());
+        stats.put("retryBudget", retryBudget.stats());
+        stats.put("degradedModeEnabled", degradedModeEnabled);
+        return stats;
+    }
+
+    /**
+     * Returns the adaptive concurrency limit, in-flight calls and rejections.
+     *
+     * @return limiter metrics, or only {@code enabled=false} when the limiter is off
+     */
+    public Map<String, Object> getConcurrencyLimitStats() {
+        if (concurrencyLimiter == null) {
+            return Map.of("enabled", false);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", true);
+        stats.put("limiter", concurrencyLimiter.stats());
+        return stats;
+    }
+
+    /**
+     * Returns how many ML calls were made and how many identical concurrent requests joined them.
+     *
+     * @return single-flight coalescing metrics
+     */
+    public Map<String, Object> getCoalescingStats() {
+        return inFlightPredictions.stats();
+    }
+
+    /**
+     * Returns the deadline of a prediction call shared by coalesced identical requests: the later
+     * of the starting caller's deadline and the {@code app.deadline.predict-ms} budget.
+     *
+     * @param callerDeadline deadline of the caller starting the call, or null
+     * @return the shared call's deadline, the caller's own if it is the later one, or null for none
+     */
+    private Deadline sharedCallDeadline(Deadline callerDeadline) {
+        if (callerDeadline == null || sharedCallBudgetMs <= 0 || callerDeadline.remainingMillis() >= sharedCallBudgetMs) {
+            return callerDeadline;
+        }
+        return Deadline.afterMillis(sharedCallBudgetMs);
+    }
+
+    private PredictionResult fetchPrediction(String emailText) {
+        PredictionResult result = null;
+        if (microBatcher != null) {
+            try {
+                result = awaitBatchedPrediction(emailText);
+            } catch (RejectedExecutionException e) {
+                log.debug("Micro-batch queue full, sending prediction directly");
+            }
+        }
+        if (result == null) {
+            result = requestPrediction(emailText);
+        }
+        return result;
+    }
+
+    /**
+     * Returns micro-batching queue and batch size metrics.
+     *
+     * @return the micro-batcher metrics, or only {@code enabled=false} when micro-batching is off
+     */
+    public Map<String, Object> getMicroBatchStats() {
+        return microBatcher != null ? microBatcher.stats() : Map.of("enabled", false);
+    }
+
+    private PredictionResult awaitBatchedPrediction(String emailText) {
+        // A batched call may be retried, so allow for every attempt and its backoff
+        long timeoutMs = (readTimeoutMs + retryMaxBackoffMs) * (maxRetries + 1) + microBatchMaxWaitMs;
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            deadline.check("ML service call");
+            timeoutMs = deadline.capMillis(timeoutMs);
+        }
+        try {
+            return microBatcher.submit(emailText).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MLServiceUnavailableException unavailable) {
+                throw unavailable;
+            }
+            throw new RuntimeException("Failed to get prediction: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            if (deadline != null && deadline.isExpired()) {
+                // The batch still completes for the other callers; only this one gives up
+                throw new DeadlineExceededException("Request deadline exceeded waiting for batched ML call");
+            }
+            throw new RuntimeException("Failed to get prediction: timed out waiting for batched ML call");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Failed to get prediction: interrupted");
+        }
+    }
+
+    /**
+     * Sends a single email text to the ML service's prediction endpoint.
+     *
+     * @param emailText the email text to analyze
+     * @return the parsed PredictionResult
+     */
+    private PredictionResult requestPrediction(String emailText) {
+        try {
             Map<String, String> requestBody = new HashMap<>();
             requestBody.put("email_text", emailText);
 
-            HttpEntity<Map<String, String>> request = new HttpEntity<>(requestBody, headers);
+            log.debug("Sending request to ML service: {}/predict", mlServiceUrl);
+
+            MLPredictResponse response = postToMlService(requestBody, MLPredictResponse.class);
+            return interpretPrediction(response);
+
+        } catch (MLServiceUnavailableException | DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("ML service error: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to get prediction: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends a single email text to the ML service's prediction endpoint over the HTTP/2 transport.
+     *
+     * @param emailText the email text to analyze
+     * @param deadline deadline of the request being served, or null
+     * @return a future completed with the parsed PredictionResult
+     */
+    private CompletableFuture<PredictionResult> requestPredictionAsync(String emailText, Deadline deadline) {
+        Map<String, String> requestBody = new HashMap<>();
+        requestBody.put("email_text", emailText);
+        return postToMlServiceAsync(requestBody, MLPredictResponse.class, deadline).thenApply(this::interpretPrediction);
+    }
+
+    /**
+     * Turns the ML service's answer to a single-text request into a PredictionResult.
+     *
+     * @param response the decoded response, possibly null
+     * @return the parsed PredictionResult
+     * @throws RuntimeException if the ML service reported an error
+     */
+    private PredictionResult interpretPrediction(MLPredictResponse response) {
+        // If response is null
+        if (response == null) {
+            log.warn("ML service returned null response");
+            return new PredictionResult("unknown", 0.0);
+        }
+
+        // Check if the response has a success field and it's true
+        if (Boolean.FALSE.equals(response.getSuccess())) {
+            String errorMsg = response.getError() != null ? response.getError() : "Unknown error";
+            throw new RuntimeException("ML Service error: " + errorMsg);
+        }
+
+        // Extract data from the nested structure
+        MLPrediction data = response.getData() != null ? response.getData() : response;
+
+        PredictionResult result = toPredictionResult(data);
+        log.debug("Received prediction from ML service: {} ({})", result.getPrediction(), result.getProbability());
+        return result;
+    }
+
+    /**
+     * Sends several email texts to the ML service in a single batched request.
+     *
+     * <p>The texts are posted to the same {@code /predict} endpoint as {@code email_texts}, and the
+     * ML service answers with one prediction per text, in the same order, either under {@code data}
+     * or {@code predictions}. An item the ML service could not classify carries an {@code error}
+     * field; it is returned as a result with {@link PredictionResult#getError()} set rather than
+     * failing the whole batch.</p>
+     *
+     * @param emailTexts the email texts to analyze, in request order
+     * @return one PredictionResult per input text, in the same order
+     * @throws RuntimeException if communication with the ML service fails or the batch is rejected as a whole
+     */
+    public List<PredictionResult> getPredictions(List<String> emailTexts) {
+        return getPredictions(emailTexts, false);
+    }
+
+    /**
+     * Retrieves predictions for several texts, answering cached texts locally and sending only
+     * the remaining ones to the ML service in a single batched request.
+     *
+     * @param emailTexts the email texts to analyze, in request order
+     * @param bypassCache whether to ignore cached predictions and send every text
+     * @return one PredictionResult per input text, in the same order
+     * @throws RuntimeException if communication with the ML service fails or the batch is rejected as a whole
+     */
+    public List<PredictionResult> getPredictions(List<String> emailTexts, boolean bypassCache) {
+        List<PredictionResult> results = new ArrayList<>(emailTexts.size());
+        List<Integer> missIndexes = new ArrayList<>();
+        List<String> missTexts = new ArrayList<>();
+        List<String> missKeys = new ArrayList<>();
+        for (int i = 0; i < emailTexts.size(); i++) {
+            // Keys are built before the call so that a model switch during it cannot file the
+            // old model's verdicts under the new generation
+            String cacheKey = predictionCache.key(emailTexts.get(i));
+            PredictionResult cached = bypassCache ? null : predictionCache.getByKey(cacheKey);
+            results.add(cached);
+            if (cached == null) {
+                missIndexes.add(i);
+                missTexts.add(emailTexts.get(i));
+                missKeys.add(cacheKey);
+            }
+        }
+
+        List<PredictionResult> fetched;
+        try {
+            fetched = requestPredictions(missTexts);
+        } catch (MLServiceUnavailableException e) {
+            fetched = degradedPredictions(missTexts, e);
+        }
+        for (int j = 0; j < fetched.size(); j++) {
+            predictionCache.putByKey(missKeys.get(j), fetched.get(j));
+            results.set(missIndexes.get(j), fetched.get(j));
+        }
+        return results;
+    }
+
+    /**
+     * Answers texts from the prediction cache while the circuit breaker is open.
+     *
+     * <p>Texts without a cached verdict get a result with an error set, so the rest of the batch
+     * can still be served.</p>
+     *
+     * @param emailTexts the texts the ML service could not be asked about
+     * @param cause the rejection from the circuit breaker
+     * @return one degraded or failed PredictionResult per text, in the same order
+     * @throws MLServiceUnavailableException if degraded mode is off or no text has a cached verdict
+     */
+    private List<PredictionResult> degradedPredictions(List<String> emailTexts, MLServiceUnavailableException cause) {
+        if (!degradedModeEnabled) {
+            throw cause;
+        }
+        List<PredictionResult> results = new ArrayList<>(emailTexts.size());
+        boolean anyServed = false;
+        for (String emailText : emailTexts) {
+            PredictionResult degraded = predictionCache.getDegraded(emailText);
+            if (degraded == null) {
+                degraded = new PredictionResult("unknown", 0.0);
+                degraded.setError("ML service unavailable");
+            } else {
+                anyServed = true;
+            }
+            results.add(degraded);
+        }
+        if (!anyServed) {
+            throw cause;
+        }
+        return results;
+    }
+
+    /**
+     * Sends texts to the ML service's prediction endpoint as one batched request.
+     *
+     * @param emailTexts the email texts to analyze, in request order
+     * @return one PredictionResult per input text, in the same order
+     */
+    private List<PredictionResult> requestPredictions(List<String> emailTexts) {
+        if (emailTexts.isEmpty()) {
+            return List.of();
+        }
 
-            // Log the request for debugging
-            System.out.println("Sending request to ML service: " + mlServiceUrl + "/predict");
+        try {
+            Map<String, Object> requestBody = new HashMap<>();
+            requestBody.put("email_texts", emailTexts);
 
-            // Change the return type to Map to process the response manually
-            Map<String, Object> response = restTemplate.postForObject(
-                    mlServiceUrl + "/predict",
-                    request,
-                    Map.class
-            );
+            log.debug("Sending batch of {} texts to ML service: {}/predict", emailTexts.size(), mlServiceUrl);
 
-            // Log the response for debugging
-            System.out.println("Received response from ML service: " + response);
+            MLBatchPredictResponse response = postToMlService(requestBody, MLBatchPredictResponse.class);
 
-            // If response is null
             if (response == null) {
-                System.out.println("ML service returned null response");
-                return new PredictionResult("unknown", 0.0);
+                throw new RuntimeException("ML service returned null response");
             }
 
-            // Check if the response has a success field and it's true
-            if (response.containsKey("success") && Boolean.FALSE.equals(response.get("success"))) {
-                String errorMsg = response.containsKey("error") ? (String) response.get("error") : "Unknown error";
+            if (Boolean.FALSE.equals(response.getSuccess())) {
+                String errorMsg = response.getError() != null ? response.getError() : "Unknown error";
                 throw new RuntimeException("ML Service error: " + errorMsg);
             }
 
-            // Extract data from the nested structure
-            Map<String, Object> data = response.containsKey("data") ?
-                    (Map<String, Object>) response.get("data") : response;
-
-            // Extract prediction and convert from integer to string
-            String prediction = "unknown";
-            if (data.containsKey("prediction")) {
-                Object predObj = data.get("prediction");
-                if (predObj instanceof Number) {
-                    // Convert 0/1 to "ham"/"spam"
-                    int predValue = ((Number) predObj).intValue();
-                    prediction = (predValue == 1) ? "spam" : "ham";
-                } else if (predObj instanceof String) {
-                    prediction = (String) predObj;
+            List<MLPrediction> items = response.getData() != null ? response.getData() : response.getPredictions();
+            if (items == null || items.size() != emailTexts.size()) {
+                throw new RuntimeException("ML service returned an unexpected batch response");
+            }
+
+            List<PredictionResult> results = new ArrayList<>(items.size());
+            for (MLPrediction item : items) {
+                if (item.getError() != null) {
+                    PredictionResult failed = new PredictionResult("unknown", 0.0);
+                    failed.setError(item.getError());
+                    results.add(failed);
+                } else {
+                    results.add(toPredictionResult(item));
                 }
             }
+            return results;
+
+        } catch (MLServiceUnavailableException | DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("ML service batch error: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to get batch prediction: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Posts a request body to the ML service's prediction endpoint through the circuit breaker.
+     *
+     * <p>Connection failures, timeouts and 502/503/504 responses are retried up to
+     * {@code ml.service.retry.max-retries} times with full-jitter exponential backoff, as long as
+     * the retry budget allows it. Each attempt needs the breaker's permission, so retries stop as
+     * soon as it opens. Responses with any other status mean the service is up and are not
+     * counted as failures.</p>
+     *
+     * <p>Each attempt also holds a slot of the concurrency limiter. Its round-trip time adjusts
+     * the limit, and timeouts or overload responses shrink it.</p>
+     *
+     * <p>The body is encoded as negotiated by {@link MLWireFormat} and the response is decoded
+     * straight into {@code responseType}.</p>
+     *
+     * <p>When the request being served has a {@link Deadline}, no attempt starts after it has
+     * passed, each attempt's response timeout is cut to the remaining budget, and no retry is made
+     * whose backoff would outlast it. An attempt that fails because the deadline ran out is not
+     * held against the ML service by the breaker or the limiter.</p>
+     *
+     * @param requestBody the request body
+     * @param responseType the type to decode the response into
+     * @param <T> the response type
+     * @return the decoded response
+     * @throws MLServiceUnavailableException if the circuit breaker or the concurrency limiter rejects the call
+     * @throws DeadlineExceededException if the request's deadline passes before the ML service answers
+     */
+    private <T> T postToMlService(Object requestBody, Class<T> responseType) {
+        Deadline deadline = Deadline.current();
+        Function<String, T> call = url -> wireFormat.post(restTemplate, url, "/predict", requestBody, responseType).getBody();
+        if (deadline != null) {
+            // Hedged calls run on another thread, which must see the deadline too
+            call = deadline.bind(call);
+        }
+        retryBudget.deposit();
+        for (int attempt = 0; ; attempt++) {
+            if (deadline != null) {
+                deadline.check("ML service call");
+            }
+            AdaptiveConcurrencyLimiter.Permit permit = acquireCallPermission();
+            long start = System.nanoTime();
+            try {
+                T response = replicas.execute(call);
+                recordCallOutcome(permit, start, null);
+                return response;
+            } catch (RuntimeException e) {
+                if (deadline != null && deadline.isExpired()) {
+                    abandonCall(permit);
+                    throw new DeadlineExceededException("Request deadline exceeded during ML service call");
+                }
+                boolean retryable = recordCallOutcome(permit, start, e);
+                long backoffMs = backoffMillis(attempt);
+                if (!retryable || attempt >= maxRetries || !hasTimeFor(deadline, backoffMs) || !retryBudget.tryWithdraw()) {
+                    throw e;
+                }
+                log.debug("ML service call failed ({}), retry {} of {}", e.getMessage(), attempt + 1, maxRetries);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while backing off before retrying the ML service");
+                }
+            }
+        }
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #postToMlService(Object, Class)} on the HTTP/2 transport,
+     * with the same circuit breaker, concurrency limit, retries and replica balancing.
+     *
+     * @param requestBody the request body
+     * @param responseType the type to decode the response into
+     * @param deadline deadline of the request being served, or null
+     * @param <T> the response type
+     * @return a future completed with the decoded response, or with {@link MLServiceUnavailableException}
+     *         if the circuit breaker or the concurrency limiter rejects the call, or with
+     *         {@link DeadlineExceededException} if the deadline passes first
+     */
+    private <T> CompletableFuture<T> postToMlServiceAsync(Object requestBody, Class<T> responseType, Deadline deadline) {
+        retryBudget.deposit();
+        return attemptAsync(requestBody, responseType, deadline, 0);
+    }
+
+    private <T> CompletableFuture<T> attemptAsync(Object requestBody, Class<T> responseType, Deadline deadline, int attempt) {
+        AdaptiveConcurrencyLimiter.Permit permit;
+        try {
+            if (deadline != null) {
+                deadline.check("ML service call");
+            }
+            permit = acquireCallPermission();
+        } catch (MLServiceUnavailableException | DeadlineExceededException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-            // Extract probability
-            Double probability = 0.0;
-            if (data.containsKey("probability")) {
-                Object probObj = data.get("probability");
-                if (probObj instanceof Number) {
-                    probability = ((Number) probObj).doubleValue();
-                } else if (probObj instanceof String) {
-                    try {
-                        probability = Double.parseDouble((String) probObj);
-                    } catch (NumberFormatException e) {
-                        System.out.println("Could not parse probability: " + probObj);
+        long start = System.nanoTime();
+        return replicas.<T>executeAsync(url -> http2Transport.post(url, "/predict", requestBody, responseType, deadline))
+                .handle((response, error) -> {
+                    if (error == null) {
+                        recordCallOutcome(permit, start, null);
+                        return CompletableFuture.completedFuture(response);
                     }
+                    if (deadline != null && deadline.isExpired()) {
+                        abandonCall(permit);
+                        return CompletableFuture.<T>failedFuture(
+                                new DeadlineExceededException("Request deadline exceeded during ML service call"));
+                    }
+                    RuntimeException cause = MLServiceReplicas.unwrap(error);
+                    boolean retryable = recordCallOutcome(permit, start, cause);
+                    long backoffMs = backoffMillis(attempt);
+                    if (!retryable || attempt >= maxRetries || !hasTimeFor(deadline, backoffMs) || !retryBudget.tryWithdraw()) {
+                        return CompletableFuture.<T>failedFuture(cause);
+                    }
+                    log.debug("ML service call failed ({}), retry {} of {}", cause.getMessage(), attempt + 1, maxRetries);
+                    Executor delayed = CompletableFuture.delayedExecutor(backoffMs, TimeUnit.MILLISECONDS);
+                    return CompletableFuture.runAsync(() -> { }, delayed)
+                            .thenCompose(ignored -> attemptAsync(requestBody, responseType, deadline, attempt + 1));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Takes a concurrency limiter slot and the circuit breaker's permission for one attempt.
+     *
+     * @return the limiter permit, or null when the limiter is disabled
+     * @throws MLServiceUnavailableException if the limiter sheds the call or the breaker is open
+     */
+    private AdaptiveConcurrencyLimiter.Permit acquireCallPermission() {
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        if (concurrencyLimiter != null) {
+            permit = concurrencyLimiter.tryAcquire();
+            if (permit == null) {
+                throw new MLServiceUnavailableException("ML service concurrency limit reached", 1);
+            }
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            if (permit != null) {
+                permit.onIgnored();
+            }
+            long retryAfterSeconds = TimeUnit.MILLISECONDS.toSeconds(circuitBreaker.getRetryAfterMillis() + 999);
+            throw new MLServiceUnavailableException("ML service circuit breaker is open", retryAfterSeconds);
+        }
+        return permit;
+    }
+
+    /**
+     * Reports the outcome of one attempt to the circuit breaker and the concurrency limiter.
+     *
+     * <p>Connection failures, timeouts and 5xx responses are failures. A timeout waiting for a
+     * pooled connection is local saturation, so it is ignored by both and not retried. Any other
+     * error means the service answered, so it counts as a success for the breaker and is ignored
+     * by the limiter.</p>
+     *
+     * @param permit the limiter permit of the attempt, or null
+     * @param startNanos when the attempt started
+     * @param error the failure of the attempt, or null if it succeeded
+     * @return true if the failure is transient and the attempt may be retried
+     */
+    private boolean recordCallOutcome(AdaptiveConcurrencyLimiter.Permit permit, long startNanos, RuntimeException error) {
+        if (MLServiceReplicas.isLeaseTimeout(error)) {
+            abandonCall(permit);
+            return false;
+        }
+        if (error instanceof ResourceAccessException || error instanceof HttpServerErrorException) {
+            circuitBreaker.onFailure();
+            boolean retryable = isRetryable(error);
+            if (permit != null) {
+                // Only timeouts and overload answers say anything about the service's capacity
+                if (retryable) {
+                    permit.onDropped();
+                } else {
+                    permit.onIgnored();
                 }
             }
+            return retryable;
+        }
 
-            return new PredictionResult(prediction, probability);
+        circuitBreaker.onSuccess(System.nanoTime() - startNanos);
+        if (permit != null) {
+            if (error == null) {
+                permit.onSuccess();
+            } else {
+                permit.onIgnored();
+            }
+        }
+        return false;
+    }
 
-        } catch (Exception e) {
-            System.out.println("ML service error: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to get prediction: " + e.getMessage());
+    /**
+     * Releases the breaker's and the limiter's hold on an attempt that says nothing about the ML
+     * service, such as one cut short by the caller's deadline, without counting it for or against
+     * the service.
+     *
+     * @param permit the limiter permit of the attempt, or null
+     */
+    private void abandonCall(AdaptiveConcurrencyLimiter.Permit permit) {
+        circuitBreaker.onIgnored();
+        if (permit != null) {
+            permit.onIgnored();
+        }
+    }
+
+    /**
+     * Returns whether a retry after the given backoff could still finish within the deadline.
+     */
+    private static boolean hasTimeFor(Deadline deadline, long backoffMs) {
+        return deadline == null || deadline.remainingMillis() > backoffMs;
+    }
+
+    private static boolean isRetryable(RuntimeException e) {
+        if (e instanceof HttpServerErrorException serverError) {
+            int status = serverError.getStatusCode().value();
+            return status == 502 || status == 503 || status == 504;
         }
+        return true;
     }
 
+    /**
+     * Full-jitter exponential backoff before retry {@code attempt + 1}.
+     */
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(retryMaxBackoffMs, retryBaseBackoffMs << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Converts a single prediction entry from the ML service into a PredictionResult.
+     *
+     * <p>Handles both numeric (0/1) and string ("ham"/"spam") prediction values. Jackson has
+     * already coerced numeric predictions to strings and string probabilities to numbers.</p>
+     *
+     * @param data the prediction entry returned by the ML service
+     * @return the parsed PredictionResult
+     */
+    private PredictionResult toPredictionResult(MLPrediction data) {
+        String prediction = data.getPrediction() != null ? data.getPrediction() : "unknown";
+        if (!prediction.isEmpty() && Character.isDigit(prediction.charAt(0))) {
+            // Convert 0/1 to "ham"/"spam"
+            try {
+                prediction = Double.parseDouble(prediction) == 1.0 ? "spam" : "ham";
+            } catch (NumberFormatException e) {
+                log.warn("Could not parse prediction: {}", prediction);
+            }
+        }
+
+        double probability = data.getProbability() != null ? data.getProbability() : 0.0;
+        return new PredictionResult(prediction, probability);
+    }
 }
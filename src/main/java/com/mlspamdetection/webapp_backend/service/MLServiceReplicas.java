@@ -0,0 +1,473 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Spreads ML service calls over several replicas.
+ *
+ * <p>Each call goes to the less loaded of two randomly chosen replicas (power of two choices on
+ * outstanding requests). A replica that fails {@code failuresToEject} calls in a row, through
+ * connection errors, timeouts or 5xx responses, is ejected from rotation for {@code ejectionMs}.
+ * That time doubles on each repeated ejection, up to eight times, and resets after its first
+ * success. If every replica is ejected, all of them are used again rather than failing. A call
+ * that timed out waiting for a pooled connection never reached the replica and does not count.</p>
+ *
+ * <p>With hedging enabled, a call that has not answered within the observed p95 latency of all
+ * replicas is duplicated to a second replica. The first successful answer wins. Hedged calls run
+ * on a bounded pool; when it is exhausted, calls simply run without a hedge.</p>
+ *
+ * <p>{@link #executeAsync(Function)} applies the same balancing, ejection and hedging to
+ * non-blocking calls; its hedges are started from a timer and need no pool.</p>
+ */
+@Slf4j
+class MLServiceReplicas {
+
+    /**
+     * Minimum number of latency samples before the p95 is trusted as a hedge delay.
+     */
+    private static final int MIN_SAMPLES_FOR_HEDGING = 20;
+
+    private final List<Replica> replicas;
+    private final int failuresToEject;
+    private final long ejectionNanos;
+    private final long minHedgeDelayNanos;
+    private final ThreadPoolExecutor hedgeExecutor;
+
+    /**
+     * Latencies of all replicas, used to pick the hedge delay.
+     */
+    private final LatencyWindow overallLatency = new LatencyWindow();
+
+    private final LongAdder hedgesSent = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+
+    /**
+     * Creates a replica set.
+     *
+     * @param urls base URLs of the replicas
+     * @param failuresToEject consecutive failures after which a replica is ejected
+     * @param ejectionMs base time a replica stays ejected
+     * @param hedgingEnabled whether slow calls are duplicated to a second replica
+     * @param minHedgeDelayMs lower bound of the hedge delay
+     * @param maxHedgeThreads maximum number of calls running on the hedging pool
+     */
+    MLServiceReplicas(List<String> urls, int failuresToEject, long ejectionMs,
+                      boolean hedgingEnabled, long minHedgeDelayMs, int maxHedgeThreads) {
+        this.replicas = urls.stream().map(Replica::new).toList();
+        this.failuresToEject = failuresToEject;
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMs);
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMs);
+        if (hedgingEnabled && replicas.size() > 1) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.hedgeExecutor = new ThreadPoolExecutor(0, maxHedgeThreads, 60, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "ml-hedge-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        } else {
+            this.hedgeExecutor = null;
+        }
+    }
+
+    /**
+     * Runs a call against a replica chosen by load, hedging it to a second replica if it is slow.
+     *
+     * @param call the call, given the base URL of the chosen replica
+     * @param <T> the result type
+     * @return the result of the first replica that answered successfully
+     */
+    <T> T execute(Function<String, T> call) {
+        Replica primary = choose(null);
+        long hedgeDelayNanos = hedgeDelayNanos();
+        if (hedgeExecutor == null || hedgeDelayNanos < 0) {
+            return callOn(primary, call);
+        }
+
+        CompletableFuture<T> first;
+        try {
+            first = CompletableFuture.supplyAsync(() -> callOn(primary, call), hedgeExecutor);
+        } catch (RejectedExecutionException e) {
+            return callOn(primary, call);
+        }
+
+        try {
+            return first.get(hedgeDelayNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Primary is slower than p95; hedge below
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the ML service");
+        }
+
+        Replica secondary = choose(primary);
+        CompletableFuture<T> second;
+        try {
+            second = secondary == null ? null : CompletableFuture.supplyAsync(() -> callOn(secondary, call), hedgeExecutor);
+        } catch (RejectedExecutionException e) {
+            second = null;
+        }
+        if (second == null) {
+            return join(first);
+        }
+        hedgesSent.increment();
+        return firstSuccess(first, second);
+    }
+
+    /**
+     * Starts a non-blocking call against a replica chosen by load, hedging it to a second replica if
+     * it has not completed within the observed p95.
+     *
+     * @param call the call, given the base URL of the chosen replica
+     * @param <T> the result type
+     * @return a future completed by the first replica that answered successfully, or with the last failure
+     */
+    <T> CompletableFuture<T> executeAsync(Function<String, CompletableFuture<T>> call) {
+        Replica primary = choose(null);
+        CompletableFuture<T> first = callOnAsync(primary, call);
+        long hedgeDelayNanos = hedgeDelayNanos();
+        if (hedgeExecutor == null || hedgeDelayNanos < 0) {
+            return first;
+        }
+
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        // Calls whose outcome is still awaited; the winner fails only when this drops to zero
+        AtomicInteger pending = new AtomicInteger(1);
+        first.whenComplete((result, error) -> {
+            if (error == null) {
+                winner.complete(result);
+            } else if (pending.decrementAndGet() == 0) {
+                winner.completeExceptionally(error);
+            }
+        });
+
+        CompletableFuture.delayedExecutor(hedgeDelayNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            Replica secondary = winner.isDone() ? null : choose(primary);
+            if (secondary == null || pending.getAndUpdate(p -> p == 0 ? 0 : p + 1) == 0) {
+                return;
+            }
+            hedgesSent.increment();
+            callOnAsync(secondary, call).whenComplete((result, error) -> {
+                if (error == null) {
+                    if (winner.complete(result)) {
+                        hedgesWon.increment();
+                    }
+                } else if (pending.decrementAndGet() == 0) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        });
+        return winner;
+    }
+
+    /**
+     * Stops the hedging pool.
+     */
+    void shutdown() {
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns hedging counters and per-replica load, latency and error statistics.
+     *
+     * @return replica metrics suitable for an admin response
+     */
+    Map<String, Object> stats() {
+        List<Map<String, Object>> replicaStats = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Replica replica : replicas) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("url", replica.url);
+            stats.put("ejected", replica.isEjected(now));
+            stats.put("outstanding", replica.outstanding.get());
+            stats.put("calls", replica.calls.sum());
+            stats.put("errors", replica.errors.sum());
+            stats.put("ejections", replica.ejections.sum());
+            stats.put("p50Ms", replica.latency.percentileMillis(0.50));
+            stats.put("p95Ms", replica.latency.percentileMillis(0.95));
+            stats.put("p99Ms", replica.latency.percentileMillis(0.99));
+            replicaStats.add(stats);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hedgingEnabled", hedgeExecutor != null);
+        long hedgeDelayNanos = hedgeDelayNanos();
+        stats.put("hedgeDelayMs", hedgeDelayNanos < 0 ? null : hedgeDelayNanos / 1_000_000.0);
+        stats.put("hedgesSent", hedgesSent.sum());
+        stats.put("hedgesWon", hedgesWon.sum());
+        stats.put("replicas", replicaStats);
+        return stats;
+    }
+
+    /**
+     * Picks the less loaded of two random replicas in rotation.
+     *
+     * @param exclude a replica not to pick, or null
+     * @return the chosen replica, or null if no other replica exists
+     */
+    private Replica choose(Replica exclude) {
+        long now = System.nanoTime();
+        List<Replica> candidates = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica != exclude && !replica.isEjected(now)) {
+                candidates.add(replica);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // Every replica is ejected: keep serving from all of them instead of failing outright
+            for (Replica replica : replicas) {
+                if (replica != exclude) {
+                    candidates.add(replica);
+                }
+            }
+        }
+        if (candidates.size() <= 1) {
+            return candidates.isEmpty() ? null : candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(candidates.size());
+        int j = random.nextInt(candidates.size() - 1);
+        if (j >= i) {
+            j++;
+        }
+        Replica a = candidates.get(i);
+        Replica b = candidates.get(j);
+        return a.outstanding.get() <= b.outstanding.get() ? a : b;
+    }
+
+    private <T> T callOn(Replica replica, Function<String, T> call) {
+        replica.outstanding.incrementAndGet();
+        replica.calls.increment();
+        long start = System.nanoTime();
+        try {
+            T result = call.apply(replica.url);
+            recordOutcome(replica, start, null);
+            return result;
+        } catch (RuntimeException e) {
+            recordOutcome(replica, start, e);
+            throw e;
+        } finally {
+            replica.outstanding.decrementAndGet();
+        }
+    }
+
+    private <T> CompletableFuture<T> callOnAsync(Replica replica, Function<String, CompletableFuture<T>> call) {
+        replica.outstanding.incrementAndGet();
+        replica.calls.increment();
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(replica.url);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, error) -> {
+            replica.outstanding.decrementAndGet();
+            recordOutcome(replica, start, error == null ? null : unwrap(error));
+        });
+    }
+
+    private void recordOutcome(Replica replica, long startNanos, Throwable error) {
+        if (isLeaseTimeout(error)) {
+            // The local pool was exhausted; the replica was never asked
+            return;
+        }
+        if (error instanceof ResourceAccessException || error instanceof HttpServerErrorException) {
+            recordFailure(replica);
+        } else {
+            // Either a success, or the replica answered with something we could not use
+            recordSuccess(replica, System.nanoTime() - startNanos);
+        }
+    }
+
+    private void recordSuccess(Replica replica, long latencyNanos) {
+        replica.latency.record(latencyNanos);
+        overallLatency.record(latencyNanos);
+        replica.consecutiveFailures.set(0);
+        replica.consecutiveEjections.set(0);
+    }
+
+    private void recordFailure(Replica replica) {
+        replica.errors.increment();
+        if (replica.consecutiveFailures.incrementAndGet() >= failuresToEject && replicas.size() > 1) {
+            replica.consecutiveFailures.set(0);
+            int multiplier = 1 << Math.min(replica.consecutiveEjections.getAndIncrement(), 3);
+            replica.ejectedUntilNanos = System.nanoTime() + ejectionNanos * multiplier;
+            replica.ejections.increment();
+            log.warn("Ejecting ML service replica {} for {} ms after {} consecutive failures",
+                    replica.url, TimeUnit.NANOSECONDS.toMillis(ejectionNanos * multiplier), failuresToEject);
+        }
+    }
+
+    /**
+     * Returns the observed p95 latency, or -1 while too few samples exist to hedge on.
+     */
+    private long hedgeDelayNanos() {
+        if (overallLatency.count() < MIN_SAMPLES_FOR_HEDGING) {
+            return -1;
+        }
+        return Math.max(minHedgeDelayNanos, overallLatency.percentileNanos(0.95));
+    }
+
+    private <T> T firstSuccess(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        first.whenComplete((result, error) -> {
+            if (error == null) {
+                winner.complete(result);
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(error);
+            }
+        });
+        second.whenComplete((result, error) -> {
+            if (error == null) {
+                if (winner.complete(result)) {
+                    hedgesWon.increment();
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(error);
+            }
+        });
+        return join(winner);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Returns whether a call failed waiting for a connection from the local pool, before
+     * anything was sent to the ML service.
+     *
+     * @param error the failure of a call, or null
+     * @return true if a connection request timeout is in the cause chain
+     */
+    static boolean isLeaseTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectionRequestTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Strips {@link CompletionException} and {@link ExecutionException} wrappers from a failure.
+     *
+     * @param cause the failure of a future
+     * @return the underlying exception, wrapped in a RuntimeException if it is checked
+     */
+    static RuntimeException unwrap(Throwable cause) {
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new RuntimeException(cause);
+    }
+
+    /**
+     * One ML service replica and its health and load counters.
+     */
+    private static final class Replica {
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicInteger consecutiveEjections = new AtomicInteger();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder ejections = new LongAdder();
+        private final LatencyWindow latency = new LatencyWindow();
+        private volatile long ejectedUntilNanos;
+
+        private Replica(String url) {
+            this.url = url;
+        }
+
+        private boolean isEjected(long now) {
+            return ejectedUntilNanos - now > 0;
+        }
+    }
+
+    /**
+     * Latencies of the most recent calls, for percentile estimates.
+     */
+    private static final class LatencyWindow {
+        private static final int SIZE = 256;
+
+        private final long[] samples = new long[SIZE];
+        private final ReentrantLock lock = new ReentrantLock();
+        private int next;
+        private int count;
+
+        private void record(long latencyNanos) {
+            lock.lock();
+            try {
+                samples[next] = latencyNanos;
+                next = (next + 1) % SIZE;
+                count = Math.min(count + 1, SIZE);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int count() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long percentileNanos(double percentile) {
+            lock.lock();
+            try {
+                if (count == 0) {
+                    return 0;
+                }
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                return sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private double percentileMillis(double percentile) {
+            return percentileNanos(percentile) / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.mlspamdetection.webapp_backend.util.Deadline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chooses how requests to the ML service are encoded, per ML service replica.
+ *
+ * <p>With {@code ml.service.wire.format=cbor}, request bodies are sent as CBOR and CBOR responses
+ * are preferred. A replica that does not understand CBOR answers {@code 415 Unsupported Media
+ * Type}. The request is then repeated as JSON, and that replica is sent JSON until
+ * {@code ml.service.wire.renegotiate-ms} has passed. This lets replicas be upgraded one at a time.
+ * Responses are decoded by whichever converter matches their content type, so a replica may also
+ * keep answering in JSON.</p>
+ *
+ * <p>Large request bodies can additionally be gzip-compressed; see {@code MLServiceConfig}. A
+ * replica that answers {@code 415} to a compressed body is likewise sent uncompressed bodies until
+ * renegotiation, instead of every large request being compressed, rejected and sent again.</p>
+ */
+@Component
+@Slf4j
+public class MLWireFormat {
+
+    private static final MediaType APPLICATION_CBOR = MediaType.valueOf("application/cbor");
+
+    /**
+     * Preferred request encoding, {@code json} or {@code cbor}.
+     */
+    @Value("${ml.service.wire.format:json}")
+    private String preferredFormat;
+
+    /**
+     * Time in milliseconds after which a replica that rejected CBOR is offered CBOR again.
+     */
+    @Value("${ml.service.wire.renegotiate-ms:600000}")
+    private long renegotiateMs;
+
+    /**
+     * Replicas known not to accept CBOR, with the time at which CBOR is tried again.
+     */
+    private final Map<String, Long> jsonOnlyUntilNanos = new ConcurrentHashMap<>();
+
+    /**
+     * Replicas known not to accept gzip-compressed bodies, by origin, with the time at which
+     * compression is tried again.
+     */
+    private final Map<String, Long> uncompressedOnlyUntilNanos = new ConcurrentHashMap<>();
+
+    private final LongAdder cborRequests = new LongAdder();
+    private final LongAdder jsonRequests = new LongAdder();
+    private final LongAdder jsonFallbacks = new LongAdder();
+    private final LongAdder uncompressedFallbacks = new LongAdder();
+
+    /**
+     * Posts a body to an ML service replica in the negotiated encoding.
+     *
+     * @param restTemplate the transport to use
+     * @param baseUrl base URL of the replica
+     * @param path endpoint path, e.g. {@code /predict}
+     * @param body the request body
+     * @param responseType the type to decode the response into
+     * @param <T> the response type
+     * @return the decoded response
+     */
+    public <T> ResponseEntity<T> post(RestTemplate restTemplate, String baseUrl, String path, Object body, Class<T> responseType) {
+        boolean cbor = prefersCbor(baseUrl);
+        try {
+            return send(restTemplate, baseUrl + path, body, responseType, cbor);
+        } catch (HttpClientErrorException.UnsupportedMediaType e) {
+            if (!cbor) {
+                throw e;
+            }
+            fallBackToJson(baseUrl);
+            return send(restTemplate, baseUrl + path, body, responseType, false);
+        }
+    }
+
+    /**
+     * Returns the preferred encoding, replicas currently using JSON and request counters.
+     *
+     * @return wire format metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("preferredFormat", preferredFormat);
+        stats.put("jsonOnlyReplicas", List.copyOf(jsonOnlyUntilNanos.keySet()));
+        stats.put("cborRequests", cborRequests.sum());
+        stats.put("jsonRequests", jsonRequests.sum());
+        stats.put("jsonFallbacks", jsonFallbacks.sum());
+        stats.put("uncompressedOnlyReplicas", List.copyOf(uncompressedOnlyUntilNanos.keySet()));
+        stats.put("uncompressedFallbacks", uncompressedFallbacks.sum());
+        return stats;
+    }
+
+    /**
+     * Returns whether the next request to a replica should be encoded as CBOR.
+     *
+     * @param baseUrl base URL of the replica
+     * @return true for CBOR, false for JSON
+     */
+    boolean prefersCbor(String baseUrl) {
+        if (!"cbor".equalsIgnoreCase(preferredFormat)) {
+            return false;
+        }
+        return !isLatched(jsonOnlyUntilNanos, baseUrl);
+    }
+
+    /**
+     * Returns whether a request body for the given URL may be gzip-compressed.
+     *
+     * @param uri the request URL
+     * @return false while the replica serving it is known to reject compressed bodies
+     */
+    public boolean acceptsGzip(URI uri) {
+        return !isLatched(uncompressedOnlyUntilNanos, origin(uri));
+    }
+
+    /**
+     * Records that a replica rejected a gzip-compressed body, so it is sent uncompressed bodies
+     * until renegotiation.
+     *
+     * @param uri the URL of the rejected request
+     */
+    public void fallBackToUncompressed(URI uri) {
+        String origin = origin(uri);
+        uncompressedOnlyUntilNanos.put(origin, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(renegotiateMs));
+        uncompressedFallbacks.increment();
+        log.info("ML service {} does not accept gzip request bodies, sending them uncompressed for the next {} ms",
+                origin, renegotiateMs);
+    }
+
+    /**
+     * Records that a replica rejected CBOR, so it is sent JSON until renegotiation.
+     *
+     * @param baseUrl base URL of the replica
+     */
+    void fallBackToJson(String baseUrl) {
+        jsonOnlyUntilNanos.put(baseUrl, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(renegotiateMs));
+        jsonFallbacks.increment();
+        log.info("ML service {} does not accept CBOR, using JSON for the next {} ms", baseUrl, renegotiateMs);
+    }
+
+    /**
+     * Counts a request sent in the given encoding.
+     *
+     * @param cbor whether the request was encoded as CBOR
+     */
+    void countRequest(boolean cbor) {
+        (cbor ? cborRequests : jsonRequests).increment();
+    }
+
+    /**
+     * Returns whether a fallback is in force for a replica, clearing it once it has run out.
+     */
+    private static boolean isLatched(Map<String, Long> untilNanos, String replica) {
+        Long until = untilNanos.get(replica);
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until < 0) {
+            return true;
+        }
+        untilNanos.remove(replica, until);
+        return false;
+    }
+
+    private static String origin(URI uri) {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    private <T> ResponseEntity<T> send(RestTemplate restTemplate, String url, Object body, Class<T> responseType, boolean cbor) {
+        HttpHeaders headers = new HttpHeaders();
+        if (cbor) {
+            headers.setContentType(APPLICATION_CBOR);
+            headers.setAccept(List.of(APPLICATION_CBOR, MediaType.APPLICATION_JSON));
+        } else {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        }
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            // Lets the ML service drop work the caller will no longer wait for
+            headers.set(Deadline.TIMEOUT_HEADER, String.valueOf(Math.max(1, deadline.remainingMillis())));
+        }
+        countRequest(cbor);
+        return restTemplate.postForEntity(url, new HttpEntity<>(body, headers), responseType);
+    }
+}
@@ -0,0 +1,256 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mlspamdetection.webapp_backend.dto.PredictionResult;
+import com.mlspamdetection.webapp_backend.model.RetrainingReport;
+import com.mlspamdetection.webapp_backend.repo.RetrainingReportRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded cache of ML predictions keyed by email content and active model version.
+ *
+ * <p>Bulk campaigns and newsletters are checked many times with identical content. This cache
+ * stores each prediction under the SHA-256 digest of the normalized text, prefixed with the
+ * model version that produced it, so a repeated text is answered without calling the ML service.</p>
+ *
+ * <p>Every cache key belongs to a <em>generation</em>, the active model version. When retraining
+ * activates a new model, {@link #activateModel(String)} switches to a fresh generation: new lookups
+ * miss, and entries from older generations are dropped except the one just replaced, which is kept
+ * as a fallback for {@link #getDegraded(String)} while the ML service is unavailable. The cache is
+ * bounded by an estimated size in bytes rather than an entry count.</p>
+ */
+@Component
+@Slf4j
+public class PredictionCache {
+
+    /**
+     * Request header that lets a client skip the cache for one request ({@code X-Prediction-Cache: bypass}).
+     */
+    public static final String BYPASS_HEADER = "X-Prediction-Cache";
+
+    /**
+     * Generation used when no model has been activated through retraining yet.
+     */
+    private static final String INITIAL_GENERATION = "initial";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Repository used to look up the active model version at startup.
+     */
+    private final RetrainingReportRepository retrainingReportRepository;
+
+    /**
+     * Whether predictions are cached at all.
+     */
+    @Value("${ml.cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Upper bound on the estimated memory used by cached entries, in bytes.
+     */
+    @Value("${ml.cache.max-bytes:16777216}")
+    private long maxBytes;
+
+    private Cache<String, PredictionResult> cache;
+
+    /**
+     * Model version whose predictions are currently served from the cache.
+     */
+    private volatile String generation = INITIAL_GENERATION;
+
+    /**
+     * Model version that was active before the current one, or null if there was none.
+     */
+    private volatile String previousGeneration;
+
+    public PredictionCache(RetrainingReportRepository retrainingReportRepository) {
+        this.retrainingReportRepository = retrainingReportRepository;
+    }
+
+    /**
+     * Builds the cache and starts with the generation of the currently active model.
+     */
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, PredictionResult value) -> estimateBytes(key, value))
+                .recordStats()
+                .build();
+
+        generation = retrainingReportRepository.findByIsActiveTrue()
+                .map(RetrainingReport::getModelVersion)
+                .orElse(INITIAL_GENERATION);
+        log.info("Prediction cache enabled={} (max {} bytes), model generation {}", enabled, maxBytes, generation);
+    }
+
+    /**
+     * Returns the cached prediction for a text under the active model, if present.
+     *
+     * @param emailText the email text
+     * @return the cached prediction, or null on a miss or when the cache is disabled
+     */
+    public PredictionResult get(String emailText) {
+        return enabled ? getByKey(key(emailText)) : null;
+    }
+
+    /**
+     * Returns the cached prediction for a key built with {@link #key(String)}.
+     *
+     * @param key the cache key
+     * @return the cached prediction, or null on a miss or when the cache is disabled
+     */
+    PredictionResult getByKey(String key) {
+        return enabled ? cache.getIfPresent(key) : null;
+    }
+
+    /**
+     * Caches a successful prediction for a text under the active model.
+     *
+     * <p>Failed or unknown predictions are never cached.</p>
+     *
+     * @param emailText the email text
+     * @param result the prediction returned by the ML service
+     */
+    public void put(String emailText, PredictionResult result) {
+        if (enabled) {
+            putByKey(key(emailText), result);
+        }
+    }
+
+    /**
+     * Caches a successful prediction under a key built with {@link #key(String)}.
+     *
+     * @param key the cache key
+     * @param result the prediction returned by the ML service
+     */
+    void putByKey(String key, PredictionResult result) {
+        if (!enabled || result == null || result.getError() != null || result.isDegraded()
+                || result.getPrediction() == null || "unknown".equals(result.getPrediction())) {
+            return;
+        }
+        cache.put(key, result);
+    }
+
+    /**
+     * Returns a cached verdict to serve while the ML service is unavailable.
+     *
+     * <p>Looks up the text under the active model first, then under the previously active model.
+     * The returned result is a copy flagged as {@link PredictionResult#isDegraded() degraded}.</p>
+     *
+     * @param emailText the email text
+     * @return a degraded prediction, or null if neither generation has one
+     */
+    public PredictionResult getDegraded(String emailText) {
+        if (!enabled) {
+            return null;
+        }
+        String digest = digest(normalize(emailText));
+        PredictionResult cached = cache.getIfPresent(generation + ":" + digest);
+        String previous = previousGeneration;
+        if (cached == null && previous != null) {
+            cached = cache.getIfPresent(previous + ":" + digest);
+        }
+        if (cached == null) {
+            return null;
+        }
+        PredictionResult degraded = new PredictionResult(cached.getPrediction(), cached.getProbability());
+        degraded.setDegraded(true);
+        return degraded;
+    }
+
+    /**
+     * Switches the cache to the generation of a newly activated model.
+     *
+     * <p>Entries of the replaced generation are kept for degraded-mode lookups until they are
+     * evicted by size; entries of any older generation are dropped right away.</p>
+     *
+     * @param modelVersion the version of the model that was just activated
+     */
+    public void activateModel(String modelVersion) {
+        String newGeneration = modelVersion != null ? modelVersion : INITIAL_GENERATION;
+        if (newGeneration.equals(generation)) {
+            return;
+        }
+        String replaced = generation;
+        previousGeneration = replaced;
+        generation = newGeneration;
+        String prefix = newGeneration + ":";
+        String replacedPrefix = replaced + ":";
+        cache.asMap().keySet().removeIf(key -> !key.startsWith(prefix) && !key.startsWith(replacedPrefix));
+        log.info("Prediction cache switched to model generation {}", newGeneration);
+    }
+
+    /**
+     * Returns hit ratio, eviction and size metrics of the cache.
+     *
+     * @return cache metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("generation", generation);
+        result.put("previousGeneration", previousGeneration);
+        result.put("entries", cache.estimatedSize());
+        result.put("estimatedBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L));
+        result.put("maxBytes", maxBytes);
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRatio", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("evictionBytes", stats.evictionWeight());
+        return result;
+    }
+
+    /**
+     * Builds the cache key for a text under the active generation.
+     *
+     * @param emailText the email text
+     * @return the generation-prefixed content digest
+     */
+    String key(String emailText) {
+        return generation + ":" + digest(normalize(emailText));
+    }
+
+    /**
+     * Normalizes text so that copies differing only in Unicode form or whitespace share a key.
+     * Case is preserved because capitalization is a spam signal for the model.
+     */
+    private static String normalize(String emailText) {
+        String normalized = Normalizer.normalize(emailText, Normalizer.Form.NFC);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    private static String digest(String text) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Rough heap footprint of one entry: key string, result object and cache node overhead.
+     */
+    private static int estimateBytes(String key, PredictionResult value) {
+        int predictionChars = value.getPrediction() != null ? value.getPrediction().length() : 0;
+        return 40 + key.length() * 2 + 48 + predictionChars * 2 + 64;
+    }
+}
@@ -0,0 +1,240 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.mlspamdetection.webapp_backend.model.PredictionLog;
+import com.mlspamdetection.webapp_backend.repo.PredictionLogRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service responsible for persisting prediction logs.
+ *
+ * <p>By default every log is written synchronously. With
+ * {@code prediction-log.write-behind.enabled=true} logs are instead put on a bounded in-memory
+ * queue and a background thread writes them in JDBC batches, taking the INSERT off the latency
+ * path of {@code /api/predict}.</p>
+ *
+ * <p>The write-behind mode is configured through {@code prediction-log.write-behind.*}:</p>
+ * <ul>
+ *   <li>{@code queue-capacity} - maximum number of logs waiting to be written</li>
+ *   <li>{@code batch-size} - maximum number of logs written in one JDBC batch</li>
+ *   <li>{@code flush-interval-ms} - delay between two drains of the queue</li>
+ *   <li>{@code offer-timeout-ms} - how long a request waits for queue space before writing its log itself</li>
+ * </ul>
+ *
+ * <p>When the queue stays full, requests fall back to synchronous writes, which slows callers
+ * down instead of dropping logs. Queued logs are flushed before the application shuts down.</p>
+ */
+@Service
+@Slf4j
+public class PredictionLogWriter {
+
+    /**
+     * Repository used for both synchronous saves and batched inserts.
+     */
+    private final PredictionLogRepository predictionLogRepository;
+
+    /**
+     * Whether logs are written asynchronously through the write-behind queue.
+     */
+    @Value("${prediction-log.write-behind.enabled:false}")
+    private boolean writeBehindEnabled;
+
+    /**
+     * Maximum number of logs waiting to be written.
+     */
+    @Value("${prediction-log.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /**
+     * Maximum number of logs written in one JDBC batch.
+     */
+    @Value("${prediction-log.write-behind.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Delay in milliseconds between two drains of the queue.
+     */
+    @Value("${prediction-log.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    /**
+     * Time in milliseconds a request waits for queue space before writing its log itself.
+     */
+    @Value("${prediction-log.write-behind.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    private BlockingQueue<PredictionLog> queue;
+    private ScheduledExecutorService flusher;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder synchronousFallbacks = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public PredictionLogWriter(PredictionLogRepository predictionLogRepository) {
+        this.predictionLogRepository = predictionLogRepository;
+    }
+
+    /**
+     * Starts the background flusher when write-behind mode is enabled.
+     */
+    @PostConstruct
+    void start() {
+        if (!writeBehindEnabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "prediction-log-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Prediction log write-behind enabled (queue {}, batch {}, every {} ms)", queueCapacity, batchSize, flushIntervalMs);
+    }
+
+    /**
+     * Stops the flusher and writes every log still in the queue.
+     */
+    @PreDestroy
+    void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Prediction log flusher did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("Prediction log writer stopped, {} logs written in total", written.sum());
+    }
+
+    /**
+     * Persists one prediction log, either now or through the write-behind queue.
+     *
+     * @param predictionLog the log to persist
+     */
+    public void write(PredictionLog predictionLog) {
+        if (!isWriteBehindActive()) {
+            predictionLogRepository.save(predictionLog);
+            written.increment();
+            return;
+        }
+        if (!enqueue(predictionLog)) {
+            synchronousFallbacks.increment();
+            predictionLogRepository.save(predictionLog);
+            written.increment();
+        }
+    }
+
+    /**
+     * Persists several prediction logs, either now with one JDBC batch or through the write-behind queue.
+     *
+     * @param predictionLogs the logs to persist
+     */
+    public void writeAll(List<PredictionLog> predictionLogs) {
+        if (!isWriteBehindActive()) {
+            predictionLogRepository.insertAll(predictionLogs);
+            written.add(predictionLogs.size());
+            return;
+        }
+        List<PredictionLog> overflow = new ArrayList<>();
+        for (PredictionLog predictionLog : predictionLogs) {
+            if (!enqueue(predictionLog)) {
+                overflow.add(predictionLog);
+            }
+        }
+        if (!overflow.isEmpty()) {
+            synchronousFallbacks.increment();
+            predictionLogRepository.insertAll(overflow);
+            written.add(overflow.size());
+        }
+    }
+
+    /**
+     * Returns queue depth and throughput metrics of the writer.
+     *
+     * @return writer metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("writeBehindEnabled", queue != null);
+        stats.put("queueDepth", queue != null ? queue.size() : 0);
+        stats.put("queueCapacity", queue != null ? queueCapacity : 0);
+        stats.put("written", written.sum());
+        stats.put("batches", batches.sum());
+        stats.put("synchronousFallbacks", synchronousFallbacks.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+
+    private boolean isWriteBehindActive() {
+        // After shutdown has begun, late requests write synchronously instead of queueing behind a stopped flusher
+        return queue != null && !flusher.isShutdown();
+    }
+
+    private boolean enqueue(PredictionLog predictionLog) {
+        try {
+            return queue.offer(predictionLog, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled flusher
+            log.error("Prediction log flush failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void flush() {
+        List<PredictionLog> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<PredictionLog> batch) {
+        try {
+            predictionLogRepository.insertAll(batch);
+            batches.increment();
+            written.add(batch.size());
+        } catch (Exception e) {
+            // One bad row (e.g. a user deleted meanwhile) fails the whole batch; retry row by row
+            log.warn("Batch insert of {} prediction logs failed, retrying individually: {}", batch.size(), e.getMessage());
+            for (PredictionLog predictionLog : batch) {
+                try {
+                    predictionLogRepository.insertAll(List.of(predictionLog));
+                    written.increment();
+                } catch (Exception rowError) {
+                    failed.increment();
+                    log.error("Dropping prediction log for user {}: {}",
+                            predictionLog.getUser() != null ? predictionLog.getUser().getId() : null, rowError.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.mlspamdetection.webapp_backend.dto.PredictionResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Collects concurrent single-text prediction calls into batched ML service requests.
+ *
+ * <p>Callers {@link #submit(String) submit} a text and receive a future. A dispatcher thread takes
+ * the first waiting text, then keeps collecting until either {@code maxBatchSize} texts are queued
+ * or {@code maxWaitMs} has passed, and hands the batch to a small worker pool that performs one
+ * batched ML call and completes every caller's future with its own result.</p>
+ *
+ * <p>When all workers are busy the dispatcher runs the batch itself, which stops it from forming
+ * new batches and lets the queue absorb the burst. When the queue is full, {@link #submit(String)}
+ * rejects immediately so the caller can fall back to a direct call.</p>
+ */
+@Slf4j
+class PredictionMicroBatcher {
+
+    /**
+     * Upper bounds of the batch size histogram buckets; the last bucket collects everything larger.
+     */
+    private static final int[] HISTOGRAM_BOUNDS = {1, 2, 4, 8, 16, 32, 64};
+
+    private final Function<List<String>, List<PredictionResult>> batchCall;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<PendingPrediction> queue;
+    private final ThreadPoolExecutor workers;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final LongAdder batchesDispatched = new LongAdder();
+    private final LongAdder itemsDispatched = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLongArray batchSizeHistogram = new AtomicLongArray(HISTOGRAM_BOUNDS.length + 1);
+
+    /**
+     * Creates and starts a micro-batcher.
+     *
+     * @param batchCall function performing one batched ML call; must return one result per text, in order
+     * @param maxBatchSize maximum number of texts in one batch
+     * @param maxWaitMs maximum time the first text of a batch waits for more texts
+     * @param queueCapacity maximum number of texts waiting to be batched
+     * @param maxConcurrentBatches maximum number of batched ML calls in flight
+     */
+    PredictionMicroBatcher(Function<List<String>, List<PredictionResult>> batchCall, int maxBatchSize,
+                           long maxWaitMs, int queueCapacity, int maxConcurrentBatches) {
+        this.batchCall = batchCall;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = new ThreadPoolExecutor(maxConcurrentBatches, maxConcurrentBatches, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ml-micro-batch-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, executor) -> {
+                    // Like CallerRunsPolicy, except that a stopped pool rejects instead of silently
+                    // dropping the batch
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Micro-batcher stopped");
+                    }
+                    task.run();
+                });
+        this.dispatcher = new Thread(this::dispatchLoop, "ml-micro-batch-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queues a text for the next batch.
+     *
+     * @param emailText the email text to classify
+     * @return a future completed with this text's prediction
+     * @throws RejectedExecutionException if the queue is full or the batcher is stopped
+     */
+    CompletableFuture<PredictionResult> submit(String emailText) {
+        PendingPrediction pending = new PendingPrediction(emailText);
+        if (!running || !queue.offer(pending)) {
+            rejected.increment();
+            throw new RejectedExecutionException("Micro-batch queue is full");
+        }
+        return pending.future;
+    }
+
+    /**
+     * Stops the dispatcher and fails every prediction that is still waiting, including those taken
+     * into a batch that was not handed to a worker yet.
+     */
+    void stop() {
+        running = false;
+        dispatcher.interrupt();
+        workers.shutdown();
+        List<PendingPrediction> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        failBatch(leftover);
+    }
+
+    /**
+     * Returns a snapshot of queue depth and batch size metrics.
+     *
+     * @return micro-batching metrics suitable for an admin response
+     */
+    Map<String, Object> stats() {
+        long batches = batchesDispatched.sum();
+        long items = itemsDispatched.sum();
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++) {
+            histogram.put("<=" + HISTOGRAM_BOUNDS[i], batchSizeHistogram.get(i));
+        }
+        histogram.put(">" + HISTOGRAM_BOUNDS[HISTOGRAM_BOUNDS.length - 1], batchSizeHistogram.get(HISTOGRAM_BOUNDS.length));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", true);
+        stats.put("queueDepth", queue.size());
+        stats.put("activeBatches", workers.getActiveCount());
+        stats.put("batchesDispatched", batches);
+        stats.put("itemsDispatched", items);
+        stats.put("averageBatchSize", batches == 0 ? 0.0 : (double) items / batches);
+        stats.put("rejected", rejected.sum());
+        stats.put("batchSizeHistogram", histogram);
+        return stats;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            List<PendingPrediction> batch = new ArrayList<>(maxBatchSize);
+            try {
+                PendingPrediction first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingPrediction next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                workers.execute(() -> dispatch(batch));
+            } catch (InterruptedException e) {
+                // Stopped while a batch was being formed; stop() fails what is still queued
+                Thread.currentThread().interrupt();
+                failBatch(batch);
+                return;
+            } catch (RejectedExecutionException e) {
+                failBatch(batch);
+                return;
+            }
+        }
+    }
+
+    private void dispatch(List<PendingPrediction> batch) {
+        recordBatch(batch.size());
+
+        List<String> texts = new ArrayList<>(batch.size());
+        for (PendingPrediction pending : batch) {
+            texts.add(pending.emailText);
+        }
+
+        try {
+            List<PredictionResult> results = batchCall.apply(texts);
+            for (int i = 0; i < batch.size(); i++) {
+                PredictionResult result = results.get(i);
+                if (result.getError() != null) {
+                    batch.get(i).future.completeExceptionally(new RuntimeException("ML Service error: " + result.getError()));
+                } else {
+                    batch.get(i).future.complete(result);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Micro-batch of {} predictions failed: {}", batch.size(), e.getMessage());
+            batch.forEach(p -> p.future.completeExceptionally(e));
+        }
+    }
+
+    private static void failBatch(List<PendingPrediction> batch) {
+        batch.forEach(p -> p.future.completeExceptionally(new IllegalStateException("Micro-batcher stopped")));
+    }
+
+    private void recordBatch(int size) {
+        batchesDispatched.increment();
+        itemsDispatched.add(size);
+        int bucket = HISTOGRAM_BOUNDS.length;
+        for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++) {
+            if (size <= HISTOGRAM_BOUNDS[i]) {
+                bucket = i;
+                break;
+            }
+        }
+        batchSizeHistogram.incrementAndGet(bucket);
+    }
+
+    /**
+     * A text waiting to be batched, together with the future its caller is blocked on.
+     */
+    private static final class PendingPrediction {
+        private final String emailText;
+        private final CompletableFuture<PredictionResult> future = new CompletableFuture<>();
+
+        private PendingPrediction(String emailText) {
+            this.emailText = emailText;
+        }
+    }
+}
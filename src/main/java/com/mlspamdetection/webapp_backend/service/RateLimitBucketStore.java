@@ -0,0 +1,189 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mlspamdetection.webapp_backend.config.RateLimitingConfig;
+import com.mlspamdetection.webapp_backend.util.LeasingRateLimiter;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded store of per-client rate limit buckets.
+ *
+ * <p>Buckets are kept in a Caffeine cache, which bounds memory in two ways: a bucket that has not
+ * been used for {@code app.rate-limit.expire-after-access-seconds} is dropped, and once
+ * {@code app.rate-limit.max-buckets} clients are tracked the least valuable entries are evicted.
+ * The expiry should be at least the bucket's refill period, so that an evicted bucket would have
+ * been full again anyway. Scanning traffic from many addresses therefore cannot grow the heap
+ * without limit, and lookups stay lock-free on the hot path.</p>
+ *
+ * <p>With {@code app.rate-limit.distributed.enabled=true}, limits apply across all replicas: tokens
+ * are leased in batches of {@code app.rate-limit.distributed.lease-size} from bucket rows shared in
+ * the database (see {@link SharedBucketLeaseSource}) and spent locally, so only about one request
+ * in {@code lease-size} per client touches the database. If the database cannot be reached, the
+ * local buckets are used instead until it can. Rows of clients idle for a whole refill period are
+ * deleted every {@code app.rate-limit.distributed.sweep-interval-ms}.</p>
+ */
+@Component
+@Slf4j
+public class RateLimitBucketStore {
+
+    /**
+     * Factory for new buckets.
+     */
+    private final RateLimitingConfig rateLimitingConfig;
+
+    /**
+     * Shared bucket store used in distributed mode.
+     */
+    private final SharedBucketLeaseSource leaseSource;
+
+    /**
+     * Maximum number of clients tracked at once.
+     */
+    @Value("${app.rate-limit.max-buckets:100000}")
+    private long maxBuckets;
+
+    /**
+     * Time in seconds after which an unused bucket is dropped.
+     */
+    @Value("${app.rate-limit.expire-after-access-seconds:120}")
+    private long expireAfterAccessSeconds;
+
+    /**
+     * Whether limits are enforced across replicas through the database.
+     */
+    @Value("${app.rate-limit.distributed.enabled:false}")
+    private boolean distributed;
+
+    /**
+     * Number of tokens leased from the shared bucket at a time.
+     */
+    @Value("${app.rate-limit.distributed.lease-size:2}")
+    private long leaseSize;
+
+    /**
+     * Time in seconds after which unspent leased tokens are dropped.
+     */
+    @Value("${app.rate-limit.distributed.lease-ttl-seconds:10}")
+    private long leaseTtlSeconds;
+
+    /**
+     * Maximum number of idle shared buckets deleted per transaction.
+     */
+    @Value("${app.rate-limit.distributed.sweep-batch-size:1000}")
+    private int sweepBatchSize;
+
+    private Cache<String, Bucket> buckets;
+
+    private LeasingRateLimiter leasingLimiter;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder leaseFailures = new LongAdder();
+    private final LongAdder swept = new LongAdder();
+
+    public RateLimitBucketStore(RateLimitingConfig rateLimitingConfig, SharedBucketLeaseSource leaseSource) {
+        this.rateLimitingConfig = rateLimitingConfig;
+        this.leaseSource = leaseSource;
+    }
+
+    /**
+     * Builds the bucket cache.
+     */
+    @PostConstruct
+    void init() {
+        buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofSeconds(expireAfterAccessSeconds))
+                .recordStats()
+                .build();
+        if (distributed) {
+            leasingLimiter = new LeasingRateLimiter(leaseSource, leaseSize, Duration.ofSeconds(leaseTtlSeconds), maxBuckets);
+            log.info("Distributed rate limiting enabled, leasing {} tokens at a time", leaseSize);
+        }
+        log.info("Rate limit buckets bounded to {} clients, expiring after {}s idle", maxBuckets, expireAfterAccessSeconds);
+    }
+
+    /**
+     * Takes one token from a client's bucket, creating the bucket on first use.
+     *
+     * @param clientKey the client identifier, typically its IP address
+     * @return the consumption result, including the wait until the next token when rejected
+     */
+    public ConsumptionProbe tryConsume(String clientKey) {
+        ConsumptionProbe probe = leasingLimiter != null ? tryConsumeShared(clientKey) : tryConsumeLocal(clientKey);
+        (probe.isConsumed() ? allowed : rejected).increment();
+        return probe;
+    }
+
+    private ConsumptionProbe tryConsumeShared(String clientKey) {
+        try {
+            return leasingLimiter.tryConsume(clientKey);
+        } catch (DataAccessException | TransactionException e) {
+            leaseFailures.increment();
+            log.warn("Could not lease rate limit tokens, using local bucket: {}", e.getMessage());
+            return tryConsumeLocal(clientKey);
+        }
+    }
+
+    private ConsumptionProbe tryConsumeLocal(String clientKey) {
+        return buckets.get(clientKey, key -> rateLimitingConfig.createNewBucket())
+                .tryConsumeAndReturnRemaining(1);
+    }
+
+    /**
+     * Deletes shared bucket rows of clients that have been idle for a whole refill period.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.distributed.sweep-interval-ms:300000}",
+            initialDelayString = "${app.rate-limit.distributed.sweep-interval-ms:300000}")
+    public void sweepIdleSharedBuckets() {
+        if (!distributed) {
+            return;
+        }
+        try {
+            int deleted = leaseSource.deleteIdle(sweepBatchSize);
+            swept.add(deleted);
+            if (deleted > 0) {
+                log.info("Deleted {} idle shared rate limit buckets", deleted);
+            }
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Could not delete idle shared rate limit buckets: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of tracked clients and the request counters.
+     *
+     * @return store metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("buckets", buckets.estimatedSize());
+        stats.put("maxBuckets", maxBuckets);
+        stats.put("expireAfterAccessSeconds", expireAfterAccessSeconds);
+        stats.put("evictions", buckets.stats().evictionCount());
+        stats.put("allowed", allowed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("distributed", distributed);
+        if (leasingLimiter != null) {
+            stats.put("leasedKeys", leasingLimiter.keyCount());
+            stats.put("remoteLeases", leasingLimiter.remoteLeaseCount());
+            stats.put("leaseFailures", leaseFailures.sum());
+            stats.put("sweptSharedBuckets", swept.sum());
+        }
+        return stats;
+    }
+}
@@ -1,26 +1,33 @@
 package com.mlspamdetection.webapp_backend.service;
 
+import com.mlspamdetection.webapp_backend.dto.FeedbackTrainingRow;
 import com.mlspamdetection.webapp_backend.dto.RetrainingRequest;
 import com.mlspamdetection.webapp_backend.dto.RetrainingResponse;
-import com.mlspamdetection.webapp_backend.model.Feedback;
-import com.mlspamdetection.webapp_backend.model.PredictionLog;
 import com.mlspamdetection.webapp_backend.model.RetrainingReport;
 import com.mlspamdetection.webapp_backend.repo.FeedbackRepository;
-import com.mlspamdetection.webapp_backend.repo.PredictionLogRepository;
 import com.mlspamdetection.webapp_backend.repo.RetrainingReportRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service responsible for managing the ML model retraining process.
@@ -50,14 +57,14 @@ public class RetrainingService {
     private static final Logger logger = LoggerFactory.getLogger(RetrainingService.class);
 
     /**
-     * Repository for accessing feedback data.
+     * Number of feedback IDs marked as processed per UPDATE statement.
      */
-    private final FeedbackRepository feedbackRepository;
-    
+    private static final int MARK_PROCESSED_CHUNK = 1000;
+
     /**
-     * Repository for accessing prediction log data.
+     * Repository for accessing feedback data.
      */
-    private final PredictionLogRepository predictionLogRepository;
+    private final FeedbackRepository feedbackRepository;
     
     /**
      * Repository for accessing and updating retraining report data.
@@ -65,10 +72,44 @@ public class RetrainingService {
     private final RetrainingReportRepository retrainingReportRepository;
     
     /**
-     * RestTemplate for making HTTP requests to the ML service.
+     * RestTemplate for making HTTP requests to the ML service, backed by the dedicated retraining pool.
      */
     private final RestTemplate restTemplate;
 
+    /**
+     * Prediction cache, switched to a fresh generation whenever a new model is activated.
+     */
+    private final PredictionCache predictionCache;
+
+    /**
+     * Chooses the request encoding (JSON or CBOR) for the training data upload.
+     */
+    private final MLWireFormat wireFormat;
+
+    /**
+     * Short read-write transaction used to record a successful retraining.
+     */
+    private final TransactionTemplate transaction;
+
+    /**
+     * Short read-only transaction used to collect the training data.
+     */
+    private final TransactionTemplate readOnlyTransaction;
+
+    /**
+     * Whether a retraining is currently running on this instance.
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Thread the retraining runs on, free of any EntityManager bound to the caller.
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "retraining");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * URL of the ML service endpoint, injected from application properties.
      */
@@ -79,20 +120,28 @@ public class RetrainingService {
      * Constructs a RetrainingService with the necessary dependencies.
      *
      * @param feedbackRepository repository for feedback data access
-     * @param predictionLogRepository repository for prediction log data access
      * @param retrainingReportRepository repository for retraining report data access
-     * @param restTemplate REST client for communicating with the ML service
+     * @param restTemplate REST client for communicating with the ML service, using the retraining connection pool
+     * @param predictionCache cache of predictions made by the active model
+     * @param wireFormat negotiates the encoding of requests to the ML service
+     * @param transactionManager transaction manager used for the short transactions around the training call
      */
     @Autowired
     public RetrainingService(
             FeedbackRepository feedbackRepository,
-            PredictionLogRepository predictionLogRepository,
             RetrainingReportRepository retrainingReportRepository,
-            RestTemplate restTemplate) {
+            @Qualifier("retrainingRestTemplate") RestTemplate restTemplate,
+            PredictionCache predictionCache,
+            MLWireFormat wireFormat,
+            PlatformTransactionManager transactionManager) {
         this.feedbackRepository = feedbackRepository;
-        this.predictionLogRepository = predictionLogRepository;
         this.retrainingReportRepository = retrainingReportRepository;
         this.restTemplate = restTemplate;
+        this.predictionCache = predictionCache;
+        this.wireFormat = wireFormat;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
@@ -108,78 +157,83 @@ public class RetrainingService {
      *   <li>Updates the active model version</li>
      * </ol>
      * 
-     * <p>The method is transactional to ensure that all database operations (marking feedback
-     * as processed, updating model status) are performed atomically.</p>
+     * <p>Training can take minutes, so no database connection is held while the ML service works.
+     * The feedback is read in one short read-only transaction. After a successful training, one
+     * short transaction marks the feedback as processed, switches the active model and stores the
+     * report, atomically. Feedback submitted while training runs stays unprocessed for the next run.</p>
+     *
+     * <p>The work runs on a dedicated retraining thread while the caller waits. The admin endpoint's
+     * open-in-view EntityManager, and the connection it holds, are therefore never used.</p>
+     *
+     * <p>Only one retraining runs at a time per instance. A call made while one is in progress
+     * returns a failed, unsaved report at once.</p>
      *
      * @return a RetrainingReport containing information about the retraining process, including
      *         success status, model metrics, and version information
      */
-    @Transactional
     public RetrainingReport processUnprocessedFeedback() {
-        // Collect all unprocessed feedback
-        List<Feedback> unprocessedFeedback = feedbackRepository.findByProcessed(false);
+        if (!running.compareAndSet(false, true)) {
+            logger.warn("Retraining already in progress. Skipping.");
+            RetrainingReport skipped = new RetrainingReport();
+            skipped.setTimestamp(LocalDateTime.now());
+            skipped.setMessage("Retraining already in progress.");
+            skipped.setSuccess(false);
+            return skipped;
+        }
+        try {
+            return executor.submit(this::retrain).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException : new IllegalStateException("Retraining failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for retraining");
+        } finally {
+            running.set(false);
+        }
+    }
 
-        if(unprocessedFeedback.isEmpty()) {
+    /**
+     * Stops the retraining thread.
+     */
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private RetrainingReport retrain() {
+        // Collect all unprocessed feedback with its prediction content in one query
+        List<FeedbackTrainingRow> rows = readOnlyTransaction.execute(status -> feedbackRepository.findUnprocessedTrainingRows());
+
+        if(rows == null || rows.isEmpty()) {
             logger.info("No unprocessed feedback found. Skipping retraining.");
             return createReport(0, "No feedback found for retraining.", false, null, null);
         }
 
-        logger.info("Found {} unprocessed feedback items.", unprocessedFeedback.size());
+        logger.info("Found {} unprocessed feedback items.", rows.size());
 
         // Transform to ml training format
-        List<RetrainingRequest.TrainingItem> trainingItems = new ArrayList<>();
-        for(Feedback feedback: unprocessedFeedback) {
-            Optional<PredictionLog> predictionOpt = predictionLogRepository.findById(feedback.getPrediction().getId());
-            if(predictionOpt.isPresent()) {
-                PredictionLog prediction = predictionOpt.get();
-
-                RetrainingRequest.TrainingItem item = new RetrainingRequest.TrainingItem();
-                item.setContent(prediction.getContent());
-                item.setLabel(feedback.getCorrectedLabel());
-                trainingItems.add(item);
-            } else {
-                logger.warn("Could not find prediction log for feedback with ID: {}", feedback.getId());
-            }
-        }
-
-        if(trainingItems.isEmpty()) {
-            logger.warn("No valid training items found. Skipping retraining.");
-            return createReport(0, "No valid training items found.", false, null, null);
+        List<RetrainingRequest.TrainingItem> trainingItems = new ArrayList<>(rows.size());
+        List<Long> feedbackIds = new ArrayList<>(rows.size());
+        for(FeedbackTrainingRow row : rows) {
+            RetrainingRequest.TrainingItem item = new RetrainingRequest.TrainingItem();
+            item.setContent(row.content());
+            item.setLabel(row.label());
+            trainingItems.add(item);
+            feedbackIds.add(row.feedbackId());
         }
 
-        // Call ml service
+        // Call ml service, outside of any transaction
         RetrainingRequest request = new RetrainingRequest();
         request.setTrainingData(trainingItems);
 
         try {
-            ResponseEntity<RetrainingResponse> response = restTemplate.postForEntity(
-                    mlServiceUrl + "/retrain", request, RetrainingResponse.class);
+            ResponseEntity<RetrainingResponse> response = wireFormat.post(
+                    restTemplate, mlServiceUrl, "/retrain", request, RetrainingResponse.class);
 
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 RetrainingResponse result = response.getBody();
-
-                // Update feedback as processed
-                for(Feedback feedback : unprocessedFeedback) {
-                    feedback.setProcessed(true);
-                }
-                feedbackRepository.saveAll(unprocessedFeedback);
-
-                Optional<RetrainingReport> currentActiveReport = retrainingReportRepository.findByIsActiveTrue();
-                String previousVersion = currentActiveReport.map(RetrainingReport::getModelVersion).orElse(null);
-
-                // Deactivate all existing models
-                retrainingReportRepository.deactivateAllModels();
-
-                // Store report with model version information and set as active
-                RetrainingReport report = createReport(
-                        trainingItems.size(),
-                        "Retraining Successful. " + result.getMessage(),
-                        true,
-                        result,
-                        previousVersion
-                );
-
-                return report;
+                return transaction.execute(status -> recordSuccessfulRetraining(feedbackIds, result));
             } else {
                 logger.error("Retraining failed. Response: {}", response.getStatusCode());
                 return createReport(0, "Retraining failed. Response: " + response.getStatusCode(), false, null, null);
@@ -190,6 +244,58 @@ public class RetrainingService {
         }
     }
 
+    /**
+     * Marks the used feedback as processed and activates the new model. Must run in a transaction.
+     *
+     * @param feedbackIds IDs of the feedback entries the model was trained on
+     * @param result the ML service's answer with the new model's version and metrics
+     * @return the persisted report of the new active model
+     */
+    private RetrainingReport recordSuccessfulRetraining(List<Long> feedbackIds, RetrainingResponse result) {
+        // Update feedback as processed, in chunks to stay within the database's bind parameter limit
+        for (int from = 0; from < feedbackIds.size(); from += MARK_PROCESSED_CHUNK) {
+            feedbackRepository.markProcessed(feedbackIds.subList(from, Math.min(feedbackIds.size(), from + MARK_PROCESSED_CHUNK)));
+        }
+
+        Optional<RetrainingReport> currentActiveReport = retrainingReportRepository.findByIsActiveTrue();
+        String previousVersion = currentActiveReport.map(RetrainingReport::getModelVersion).orElse(null);
+
+        // Deactivate all existing models
+        retrainingReportRepository.deactivateAllModels();
+
+        // Store report with model version information and set as active
+        RetrainingReport report = createReport(
+                feedbackIds.size(),
+                "Retraining Successful. " + result.getMessage(),
+                true,
+                result,
+                previousVersion
+        );
+
+        activateModelInCache(report.getModelVersion());
+
+        return report;
+    }
+
+    /**
+     * Switches the prediction cache to the newly activated model once the activation is committed,
+     * so cached predictions of the previous model are no longer served.
+     *
+     * @param modelVersion the version of the model that was just activated
+     */
+    private void activateModelInCache(String modelVersion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    predictionCache.activateModel(modelVersion);
+                }
+            });
+        } else {
+            predictionCache.activateModel(modelVersion);
+        }
+    }
+
     /**
      * Creates and persists a retraining report with the given parameters.
      * 
@@ -0,0 +1,90 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.mlspamdetection.webapp_backend.config.RateLimitingConfig;
+import com.mlspamdetection.webapp_backend.model.RateLimitBucketState;
+import com.mlspamdetection.webapp_backend.repo.RateLimitBucketStateRepository;
+import com.mlspamdetection.webapp_backend.util.LeasingRateLimiter;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Leases rate limit tokens from bucket rows shared by all replicas in PostgreSQL.
+ *
+ * <p>Each lease runs in its own short transaction: the client's row is locked, refilled at
+ * {@link RateLimitingConfig#CAPACITY} tokens per {@link RateLimitingConfig#REFILL_PERIOD} for the
+ * time since its last update, and reduced by the tokens granted. A client's first lease creates
+ * its row; if another replica creates it at the same moment, the lease is retried against that
+ * row. Refill times come from the replicas' clocks, which are assumed to be synchronized.</p>
+ *
+ * <p>A row that has not been leased from for a whole refill period is full again, exactly like a
+ * row that does not exist, so {@link #deleteIdle(int)} can drop it without changing any limit.</p>
+ */
+@Component
+public class SharedBucketLeaseSource implements LeasingRateLimiter.LeaseSource {
+
+    private static final double NANOS_PER_TOKEN =
+            (double) RateLimitingConfig.REFILL_PERIOD.toNanos() / RateLimitingConfig.CAPACITY;
+
+    private final RateLimitBucketStateRepository repository;
+    private final TransactionTemplate transactionTemplate;
+
+    public SharedBucketLeaseSource(RateLimitBucketStateRepository repository, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public LeasingRateLimiter.Lease lease(String key, long tokens) {
+        try {
+            return transactionTemplate.execute(status -> leaseInTransaction(key, tokens));
+        } catch (DataIntegrityViolationException e) {
+            // Another replica created the row concurrently; it exists and can be locked now
+            return transactionTemplate.execute(status -> leaseInTransaction(key, tokens));
+        }
+    }
+
+    /**
+     * Deletes bucket rows idle for longer than the refill period, one batch per transaction.
+     *
+     * @param batchSize maximum number of rows deleted per transaction
+     * @return the number of rows deleted
+     */
+    public int deleteIdle(int batchSize) {
+        Instant before = Instant.now().minus(RateLimitingConfig.REFILL_PERIOD);
+        int total = 0;
+        Integer deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> repository.deleteIdle(before, batchSize));
+            total += deleted != null ? deleted : 0;
+        } while (deleted != null && deleted == batchSize);
+        return total;
+    }
+
+    private LeasingRateLimiter.Lease leaseInTransaction(String key, long tokens) {
+        Instant now = Instant.now();
+        RateLimitBucketState bucket = repository.findForUpdate(key).orElse(null);
+        double available;
+        if (bucket == null) {
+            bucket = new RateLimitBucketState(key, RateLimitingConfig.CAPACITY, now);
+            available = RateLimitingConfig.CAPACITY;
+        } else {
+            long elapsedNanos = Math.max(0, Duration.between(bucket.getRefilledAt(), now).toNanos());
+            available = Math.min(RateLimitingConfig.CAPACITY, bucket.getTokens() + elapsedNanos / NANOS_PER_TOKEN);
+        }
+
+        long granted = Math.min(tokens, (long) Math.floor(available));
+        bucket.setTokens(available - granted);
+        bucket.setRefilledAt(now);
+        repository.saveAndFlush(bucket);
+
+        long nanosToNextToken = granted > 0 ? 0 : (long) Math.ceil((1 - (available - granted)) * NANOS_PER_TOKEN);
+        return new LeasingRateLimiter.Lease(granted, nanosToNextToken);
+    }
+}
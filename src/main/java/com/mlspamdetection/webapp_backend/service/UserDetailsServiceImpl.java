@@ -5,6 +5,7 @@ import com.mlspamdetection.webapp_backend.repo.UserRepository;
 import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -25,10 +26,11 @@ import java.util.Collections;
  *   <li>Verifying that non-Google users have verified their email addresses</li>
  *   <li>Converting application-specific User entities to Spring Security's UserDetails objects</li>
  *   <li>Mapping user roles to Spring Security authorities</li>
+ *   <li>Storing rehashed passwords when the configured hashing cost has changed</li>
  * </ul>
  */
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     /**
      * Repository for accessing user data.
      */
@@ -78,6 +80,24 @@ public class UserDetailsServiceImpl implements UserDetailsService {
                 .build();
     }
 
-
+    /**
+     * Stores a password that was rehashed after a successful login.
+     *
+     * <p>Called by the authentication provider when the stored hash was made with a lower cost
+     * than the one currently configured, so hashes are upgraded without users resetting passwords.</p>
+     *
+     * @param user the authenticated user details
+     * @param newPassword the password hashed with the current settings
+     * @return the user details carrying the new hash
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.findByEmail(user.getUsername()).ifPresent(entity -> {
+            entity.setPassword(newPassword);
+            userRepository.save(entity);
+        });
+        return org.springframework.security.core.userdetails.User.withUserDetails(user)
+                .password(newPassword)
+                .build();
+    }
 }
-
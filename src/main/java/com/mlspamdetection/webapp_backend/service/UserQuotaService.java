@@ -0,0 +1,301 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mlspamdetection.webapp_backend.model.User;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUser;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Per-user prediction quotas, combining a short burst window with a long sustained window.
+ *
+ * <p>Every user gets two limits from their tier: {@code burst-limit} requests per
+ * {@code app.quota.burst-period-seconds} and {@code sustained-limit} requests per
+ * {@code app.quota.sustained-period-seconds}. Tiers are configured per {@link User.UserRole}
+ * ({@code app.quota.<role>.*}) and can be overridden for single users with
+ * {@code app.quota.user-overrides=<userId>:<burstLimit>:<sustainedLimit>,...}. A limit of 0
+ * means unlimited.</p>
+ *
+ * <p>Each window is enforced with the generic cell rate algorithm: a request is allowed if the
+ * window's theoretical arrival time, advanced by one emission interval, stays within one period of
+ * now. This behaves like a token bucket that refills continuously, but its whole state is a single
+ * {@code long}, so a check is one compare-and-set per window without locks or allocation. Users are
+ * kept in a bounded cache and dropped after a sustained period without requests, when their
+ * windows would be empty anyway.</p>
+ *
+ * <p>A batch request is charged one request per item. A batch larger than a window's limit is
+ * charged the whole window, so it is allowed once that window is empty rather than never.</p>
+ */
+@Component
+@Slf4j
+public class UserQuotaService {
+
+    /**
+     * Whether quotas are enforced.
+     */
+    @Value("${app.quota.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Length of the burst window in seconds.
+     */
+    @Value("${app.quota.burst-period-seconds:10}")
+    private long burstPeriodSeconds;
+
+    /**
+     * Length of the sustained window in seconds.
+     */
+    @Value("${app.quota.sustained-period-seconds:3600}")
+    private long sustainedPeriodSeconds;
+
+    @Value("${app.quota.user.burst-limit:20}")
+    private long userBurstLimit;
+
+    @Value("${app.quota.user.sustained-limit:1000}")
+    private long userSustainedLimit;
+
+    @Value("${app.quota.admin.burst-limit:100}")
+    private long adminBurstLimit;
+
+    @Value("${app.quota.admin.sustained-limit:10000}")
+    private long adminSustainedLimit;
+
+    /**
+     * Per-user limits as {@code userId:burstLimit:sustainedLimit} entries.
+     */
+    @Value("${app.quota.user-overrides:}")
+    private String[] userOverrides;
+
+    /**
+     * Maximum number of users tracked at once.
+     */
+    @Value("${app.quota.max-tracked-users:100000}")
+    private long maxTrackedUsers;
+
+    private final Map<User.UserRole, Tier> roleTiers = new EnumMap<>(User.UserRole.class);
+    private final Map<Long, Tier> userTiers = new HashMap<>();
+    private final Function<Long, Windows> newWindows = userId -> new Windows();
+
+    private Cache<Long, Windows> windows;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Result of a quota check.
+     *
+     * @param allowed whether the request may proceed
+     * @param limit limit of the window that is closest to exhaustion, or -1 when unlimited
+     * @param remaining requests left in that window, or -1 when unlimited
+     * @param retryAfterSeconds seconds until the request would be allowed, 0 when allowed
+     */
+    public record Decision(boolean allowed, long limit, long remaining, long retryAfterSeconds) {
+
+        static final Decision UNLIMITED = new Decision(true, -1, -1, 0);
+    }
+
+    /**
+     * Builds the tiers and the window cache.
+     */
+    @PostConstruct
+    void init() {
+        long burstNanos = TimeUnit.SECONDS.toNanos(burstPeriodSeconds);
+        long sustainedNanos = TimeUnit.SECONDS.toNanos(sustainedPeriodSeconds);
+        roleTiers.put(User.UserRole.USER, new Tier(userBurstLimit, burstNanos, userSustainedLimit, sustainedNanos));
+        roleTiers.put(User.UserRole.ADMIN, new Tier(adminBurstLimit, burstNanos, adminSustainedLimit, sustainedNanos));
+        for (String override : userOverrides) {
+            if (override.isBlank()) {
+                continue;
+            }
+            String[] parts = override.trim().split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid app.quota.user-overrides entry: " + override);
+            }
+            userTiers.put(Long.parseLong(parts[0]),
+                    new Tier(Long.parseLong(parts[1]), burstNanos, Long.parseLong(parts[2]), sustainedNanos));
+        }
+
+        windows = Caffeine.newBuilder()
+                .maximumSize(maxTrackedUsers)
+                .expireAfterAccess(Duration.ofSeconds(Math.max(burstPeriodSeconds, sustainedPeriodSeconds)))
+                .build();
+        log.info("Prediction quotas enabled={}, {} per-user overrides", enabled, userTiers.size());
+    }
+
+    /**
+     * Charges one request to a user's quota.
+     *
+     * @param user the authenticated user
+     * @return whether the request is allowed, and the values for the quota response headers
+     */
+    public Decision tryAcquire(AuthenticatedUser user) {
+        return tryAcquire(user, 1);
+    }
+
+    /**
+     * Charges several requests to a user's quota at once, all or nothing.
+     *
+     * @param user the authenticated user
+     * @param requests number of requests to charge, such as the items of a batch
+     * @return whether the requests are allowed, and the values for the quota response headers
+     */
+    public Decision tryAcquire(AuthenticatedUser user, long requests) {
+        return tryAcquire(user, requests, System.nanoTime());
+    }
+
+    /**
+     * Charges several requests to a user's quota at the given time.
+     *
+     * @param user the authenticated user
+     * @param requests number of requests to charge
+     * @param now current {@link System#nanoTime()} value
+     * @return whether the requests are allowed, and the values for the quota response headers
+     */
+    Decision tryAcquire(AuthenticatedUser user, long requests, long now) {
+        if (!enabled || requests <= 0) {
+            return Decision.UNLIMITED;
+        }
+        Tier tier = userTiers.getOrDefault(user.id(), roleTiers.get(user.role()));
+        if (tier == null || tier.isUnlimited()) {
+            return Decision.UNLIMITED;
+        }
+
+        Windows state = windows.get(user.id(), newWindows);
+        long burstRemaining = tier.burst.tryAcquire(state.burst, now, requests);
+        if (burstRemaining < 0) {
+            rejected.increment();
+            return tier.burst.rejection(state.burst, now, requests);
+        }
+        long sustainedRemaining = tier.sustained.tryAcquire(state.sustained, now, requests);
+        if (sustainedRemaining < 0) {
+            tier.burst.refund(state.burst, requests);
+            rejected.increment();
+            return tier.sustained.rejection(state.sustained, now, requests);
+        }
+
+        allowed.increment();
+        if (tier.sustained.isUnlimited()
+                || (!tier.burst.isUnlimited() && burstRemaining <= sustainedRemaining)) {
+            return new Decision(true, tier.burst.limit, burstRemaining, 0);
+        }
+        return new Decision(true, tier.sustained.limit, sustainedRemaining, 0);
+    }
+
+    /**
+     * Returns the number of tracked users and the request counters.
+     *
+     * @return quota metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("trackedUsers", windows.estimatedSize());
+        stats.put("userOverrides", userTiers.size());
+        stats.put("allowed", allowed.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    /**
+     * Theoretical arrival times of one user's two windows.
+     */
+    private static final class Windows {
+        final AtomicLong burst = new AtomicLong(Long.MIN_VALUE);
+        final AtomicLong sustained = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    /**
+     * Burst and sustained limits of one tier.
+     */
+    private static final class Tier {
+        final Window burst;
+        final Window sustained;
+
+        Tier(long burstLimit, long burstPeriodNanos, long sustainedLimit, long sustainedPeriodNanos) {
+            this.burst = new Window(burstLimit, burstPeriodNanos);
+            this.sustained = new Window(sustainedLimit, sustainedPeriodNanos);
+        }
+
+        boolean isUnlimited() {
+            return burst.isUnlimited() && sustained.isUnlimited();
+        }
+    }
+
+    /**
+     * One rate window: {@code limit} requests per {@code periodNanos}, refilled continuously.
+     */
+    private static final class Window {
+        final long limit;
+        final long periodNanos;
+        final long emissionNanos;
+
+        Window(long limit, long periodNanos) {
+            this.limit = limit;
+            this.periodNanos = periodNanos;
+            this.emissionNanos = limit > 0 ? Math.max(1, periodNanos / limit) : 0;
+        }
+
+        boolean isUnlimited() {
+            return limit <= 0;
+        }
+
+        /**
+         * Returns how far the given number of requests advances the theoretical arrival time,
+         * at most one full period.
+         */
+        long cost(long requests) {
+            return Math.min(requests, limit) * emissionNanos;
+        }
+
+        /**
+         * Advances the theoretical arrival time by the given number of requests if that keeps it
+         * within one period.
+         *
+         * @return the requests left afterwards, or -1 if the requests are rejected
+         */
+        long tryAcquire(AtomicLong tat, long now, long requests) {
+            if (isUnlimited()) {
+                return Long.MAX_VALUE;
+            }
+            long cost = cost(requests);
+            while (true) {
+                long current = tat.get();
+                long next = (current == Long.MIN_VALUE || current - now < 0 ? now : current) + cost;
+                long backlog = next - now;
+                if (backlog > periodNanos) {
+                    return -1;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return (periodNanos - backlog) / emissionNanos;
+                }
+            }
+        }
+
+        /**
+         * Gives back requests taken with {@link #tryAcquire(AtomicLong, long, long)}.
+         */
+        void refund(AtomicLong tat, long requests) {
+            if (!isUnlimited()) {
+                tat.addAndGet(-cost(requests));
+            }
+        }
+
+        Decision rejection(AtomicLong tat, long now, long requests) {
+            long waitNanos = tat.get() + cost(requests) - now - periodNanos;
+            return new Decision(false, limit, 0, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)));
+        }
+    }
+}
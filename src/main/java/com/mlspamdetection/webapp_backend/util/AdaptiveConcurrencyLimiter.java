@@ -0,0 +1,225 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of outstanding calls to a dependency, adapting the limit to its latency.
+ *
+ * <p>The limit follows a gradient algorithm. A slow exponential average of the round-trip time
+ * serves as the dependency's baseline. Each successful call compares its own round-trip time
+ * against that baseline: when latency rises above it, the limit shrinks in proportion; when
+ * latency is at or below it, the limit grows by a small headroom of {@code sqrt(limit)}.
+ * Changes are smoothed and kept between {@code minLimit} and {@code maxLimit}. A dropped call
+ * (timeout, overload response) cuts the limit multiplicatively. The limit only grows while calls
+ * actually use it, so a quiet period does not inflate it.</p>
+ *
+ * <p>A caller over the limit waits up to {@code maxQueueWaitMs} for a slot, with at most
+ * {@code maxQueued} callers waiting at once; otherwise it is shed immediately.</p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Weight of each sample in the long-term round-trip time average.
+     */
+    private static final double LONG_RTT_ALPHA = 1.0 / 500;
+
+    /**
+     * Share of each new limit estimate applied to the current limit.
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * Factor the limit is multiplied by when a call is dropped.
+     */
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxQueueWaitNanos;
+    private final int maxQueued;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotReleased = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double longRttNanos;
+    private long lastRttNanos;
+
+    private long acquired;
+    private long rejected;
+    private long dropped;
+
+    /**
+     * Creates a limiter.
+     *
+     * @param initialLimit the limit to start with
+     * @param minLimit the lowest limit the algorithm may set
+     * @param maxLimit the highest limit the algorithm may set
+     * @param maxQueueWaitMs how long a caller over the limit may wait for a slot
+     * @param maxQueued maximum number of callers waiting for a slot
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long maxQueueWaitMs, int maxQueued) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMs);
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Takes a slot, waiting briefly if the limit is reached.
+     *
+     * @return a permit that must be completed exactly once, or null if the call is shed
+     */
+    public Permit tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                if (queued >= maxQueued) {
+                    rejected++;
+                    return null;
+                }
+                queued++;
+                try {
+                    long remaining = maxQueueWaitNanos;
+                    while (inFlight >= (int) limit) {
+                        if (remaining <= 0) {
+                            rejected++;
+                            return null;
+                        }
+                        remaining = slotReleased.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rejected++;
+                    return null;
+                } finally {
+                    queued--;
+                }
+            }
+            inFlight++;
+            acquired++;
+            return new Permit(inFlight, System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current limit and usage counters.
+     *
+     * @return limiter metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", (int) limit);
+            stats.put("minLimit", minLimit);
+            stats.put("maxLimit", maxLimit);
+            stats.put("inFlight", inFlight);
+            stats.put("queued", queued);
+            stats.put("acquired", acquired);
+            stats.put("rejected", rejected);
+            stats.put("dropped", dropped);
+            stats.put("baselineRttMs", longRttNanos / 1_000_000.0);
+            stats.put("lastRttMs", lastRttNanos / 1_000_000.0);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Permit permit, Outcome outcome) {
+        lock.lock();
+        try {
+            inFlight--;
+            switch (outcome) {
+                case SUCCESS -> adjustForRtt(System.nanoTime() - permit.startNanos, permit.inFlightAtStart);
+                case DROPPED -> {
+                    dropped++;
+                    limit = Math.max(minLimit, limit * DROP_BACKOFF);
+                }
+                case IGNORED -> { }
+            }
+            slotReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjustForRtt(long rttNanos, int inFlightAtStart) {
+        lastRttNanos = rttNanos;
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+            return;
+        }
+        longRttNanos = longRttNanos * (1 - LONG_RTT_ALPHA) + rttNanos * LONG_RTT_ALPHA;
+
+        // After a sustained latency drop, pull the baseline down faster so the limit can recover
+        if (longRttNanos > 2 * rttNanos) {
+            longRttNanos *= 0.95;
+        }
+
+        // Do not grow a limit that is not being used
+        if (inFlightAtStart < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / rttNanos));
+        double estimate = limit * gradient + Math.sqrt(limit);
+        double smoothed = limit * (1 - SMOOTHING) + estimate * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+    }
+
+    private enum Outcome { SUCCESS, DROPPED, IGNORED }
+
+    /**
+     * A slot held by one call.
+     */
+    public final class Permit {
+        private final int inFlightAtStart;
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(int inFlightAtStart, long startNanos) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Releases the slot and feeds the call's round-trip time into the limit.
+         */
+        public void onSuccess() {
+            complete(Outcome.SUCCESS);
+        }
+
+        /**
+         * Releases the slot after a timeout or overload response, reducing the limit.
+         */
+        public void onDropped() {
+            complete(Outcome.DROPPED);
+        }
+
+        /**
+         * Releases the slot without affecting the limit, e.g. when the call was never made.
+         */
+        public void onIgnored() {
+            complete(Outcome.IGNORED);
+        }
+
+        private void complete(Outcome outcome) {
+            if (released) {
+                return;
+            }
+            released = true;
+            release(this, outcome);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Count-based circuit breaker guarding calls to a remote dependency.
+ *
+ * <p>The outcome of the last {@code windowSize} calls is kept in a sliding window. Once at least
+ * {@code minimumCalls} outcomes are recorded and the share of failed or slow calls reaches
+ * {@code failureRateThreshold} percent, the breaker opens and {@link #tryAcquirePermission()}
+ * rejects every call for {@code openDurationMs}. After that it lets up to {@code halfOpenProbes}
+ * calls through: one failed probe opens it again, {@code halfOpenProbes} successful probes close it
+ * and start a fresh window.</p>
+ *
+ * <p>Callers must report the outcome of every permitted call with {@link #onSuccess(long)},
+ * {@link #onFailure()} or {@link #onIgnored()}.</p>
+ *
+ * <p>State is guarded by a {@link ReentrantLock} rather than a monitor: every ML call passes
+ * through here, and on JDK 21 a virtual thread blocked on a contended monitor pins its carrier.</p>
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    /**
+     * State of the breaker.
+     */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openDurationNanos;
+    private final int halfOpenProbes;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Ring buffer of the last call outcomes, true for a failed or slow call.
+     */
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    private long successfulCalls;
+    private long failedCalls;
+    private long slowCalls;
+    private long rejectedCalls;
+    private long timesOpened;
+
+    /**
+     * Creates a closed circuit breaker.
+     *
+     * @param name name used in log messages
+     * @param windowSize number of recent calls the failure rate is computed over
+     * @param minimumCalls number of recorded calls required before the breaker may open
+     * @param failureRateThreshold failure rate in percent at which the breaker opens
+     * @param slowCallMs duration above which a successful call is counted as a failure
+     * @param openDurationMs time the breaker stays open before probing
+     * @param halfOpenProbes number of probe calls allowed, and required to succeed, while half-open
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          long slowCallMs, long openDurationMs, int halfOpenProbes) {
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * Checks whether a call may be made now.
+     *
+     * @return true if the call may proceed, false if the breaker is open or all probes are in flight
+     */
+    public boolean tryAcquirePermission() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAtNanos < openDurationNanos) {
+                    rejectedCalls++;
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight >= halfOpenProbes) {
+                    rejectedCalls++;
+                    return false;
+                }
+                probesInFlight++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a call that completed; calls slower than the slow-call threshold count as failures.
+     *
+     * @param durationNanos how long the call took
+     */
+    public void onSuccess(long durationNanos) {
+        lock.lock();
+        try {
+            if (durationNanos > slowCallNanos) {
+                slowCalls++;
+                record(true);
+            } else {
+                successfulCalls++;
+                record(false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a call that failed.
+     */
+    public void onFailure() {
+        lock.lock();
+        try {
+            failedCalls++;
+            record(true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a permitted call whose outcome says nothing about the dependency, such as one the
+     * caller abandoned. It only frees its probe slot while half-open.
+     */
+    public void onIgnored() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                probesInFlight = Math.max(0, probesInFlight - 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how long a rejected caller should wait before trying again.
+     *
+     * @return milliseconds until the breaker probes again, at least one second
+     */
+    public long getRetryAfterMillis() {
+        lock.lock();
+        try {
+            if (state != State.OPEN) {
+                return 1000;
+            }
+            long remainingNanos = openDurationNanos - (System.nanoTime() - openedAtNanos);
+            return Math.max(1000, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the state and call counters of the breaker.
+     *
+     * @return breaker metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("state", state.name());
+            stats.put("failureRate", windowCount == 0 ? 0.0 : 100.0 * windowFailures / windowCount);
+            stats.put("failureRateThreshold", failureRateThreshold);
+            stats.put("windowCalls", windowCount);
+            stats.put("windowSize", window.length);
+            stats.put("successfulCalls", successfulCalls);
+            stats.put("failedCalls", failedCalls);
+            stats.put("slowCalls", slowCalls);
+            stats.put("rejectedCalls", rejectedCalls);
+            stats.put("timesOpened", timesOpened);
+            if (state == State.OPEN) {
+                stats.put("retryAfterMs", getRetryAfterMillis());
+            }
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(boolean failure) {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            if (failure) {
+                transitionTo(State.OPEN);
+            } else if (++probeSuccesses >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // Late outcome of a call permitted before the breaker opened
+            return;
+        }
+
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+
+        if (windowCount >= minimumCalls && 100.0 * windowFailures / windowCount >= failureRateThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State newState) {
+        state = newState;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+        if (newState == State.OPEN) {
+            openedAtNanos = System.nanoTime();
+            timesOpened++;
+            log.warn("Circuit breaker '{}' opened ({} of last {} calls failed)", name, windowFailures, windowCount);
+        } else if (newState == State.CLOSED) {
+            windowIndex = 0;
+            windowCount = 0;
+            windowFailures = 0;
+            log.info("Circuit breaker '{}' closed", name);
+        } else {
+            log.info("Circuit breaker '{}' half-open, probing", name);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit with a bounded wait queue whose wait time is controlled CoDel-style.
+ *
+ * <p>Up to {@code maxConcurrent} callers hold a slot at once, and up to {@code maxQueued} more
+ * may wait for one. How long they may wait depends on whether the queue is standing. While it
+ * has emptied within the last {@code intervalMs}, a caller may wait up to {@code intervalMs},
+ * which absorbs short bursts. Once it has stayed non-empty for longer than that, the limiter is
+ * overloaded and new callers may only wait {@code targetMs}. A standing queue thus drains quickly
+ * instead of adding latency to every request, and the excess is shed.</p>
+ */
+public class CoDelLimiter {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long targetNanos;
+    private final long intervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotReleased = lock.newCondition();
+
+    private int inFlight;
+    private int queued;
+    private long lastEmptyNanos = System.nanoTime();
+
+    private long admitted;
+    private long shed;
+    private long totalQueueNanos;
+
+    /**
+     * Creates a limiter.
+     *
+     * @param maxConcurrent maximum number of callers holding a slot
+     * @param maxQueued maximum number of callers waiting for a slot
+     * @param targetMs maximum wait while the queue is standing
+     * @param intervalMs maximum wait otherwise, and how long the queue must stay non-empty to count as standing
+     */
+    public CoDelLimiter(int maxConcurrent, int maxQueued, long targetMs, long intervalMs) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMs);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+    }
+
+    /**
+     * Takes a slot, waiting for one if allowed.
+     *
+     * @param maxWaitMs upper bound on the wait imposed by the caller, e.g. its remaining deadline; 0 for no wait
+     * @return true if a slot was taken and must be given back with {@link #release()}, false if the caller is shed
+     */
+    public boolean tryAcquire(long maxWaitMs) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (queued == 0) {
+                lastEmptyNanos = now;
+            }
+            if (inFlight < maxConcurrent && queued == 0) {
+                inFlight++;
+                admitted++;
+                return true;
+            }
+            long allowedNanos = Math.min(isOverloaded(now) ? targetNanos : intervalNanos,
+                    TimeUnit.MILLISECONDS.toNanos(maxWaitMs));
+            if (queued >= maxQueued || allowedNanos <= 0) {
+                shed++;
+                return false;
+            }
+
+            queued++;
+            try {
+                long remaining = allowedNanos;
+                while (inFlight >= maxConcurrent) {
+                    if (remaining <= 0) {
+                        shed++;
+                        return false;
+                    }
+                    remaining = slotReleased.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shed++;
+                return false;
+            } finally {
+                queued--;
+                if (queued == 0) {
+                    lastEmptyNanos = System.nanoTime();
+                }
+            }
+            inFlight++;
+            admitted++;
+            totalQueueNanos += System.nanoTime() - now;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a slot taken with {@link #tryAcquire(long)}.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            slotReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the queue has stayed non-empty for longer than the interval.
+     *
+     * @return true while callers are being held to the short target wait
+     */
+    public boolean isOverloaded() {
+        lock.lock();
+        try {
+            return isOverloaded(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the limits, current usage and admission counters.
+     *
+     * @return limiter metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maxConcurrent", maxConcurrent);
+            stats.put("maxQueued", maxQueued);
+            stats.put("inFlight", inFlight);
+            stats.put("queued", queued);
+            stats.put("overloaded", isOverloaded(System.nanoTime()));
+            stats.put("admitted", admitted);
+            stats.put("shed", shed);
+            stats.put("averageQueueMs", admitted == 0 ? 0.0 : totalQueueNanos / 1_000_000.0 / admitted);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isOverloaded(long now) {
+        return queued > 0 && now - lastEmptyNanos > intervalNanos;
+    }
+}
@@ -0,0 +1,132 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import com.mlspamdetection.webapp_backend.exception.DeadlineExceededException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Point in time by which the current request must be answered.
+ *
+ * <p>{@code DeadlineFilter} creates one per request and binds it to the handling thread, where
+ * every stage can read it through {@link #current()}. Work handed to other threads must carry it
+ * along explicitly, with {@link #bind(Supplier)} or {@link #bind(Function)}. Stages use
+ * {@link #check(String)} to abandon work once the deadline has passed, and
+ * {@link #capMillis(long)} to shorten their own timeouts to the remaining budget.</p>
+ */
+public final class Deadline {
+
+    /**
+     * Header carrying a time budget in milliseconds, read from clients and sent to the ML service.
+     */
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Creates a deadline the given time from now.
+     *
+     * @param budgetMs time budget in milliseconds
+     * @return the deadline
+     */
+    public static Deadline afterMillis(long budgetMs) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs));
+    }
+
+    /**
+     * Returns the deadline bound to the current thread.
+     *
+     * @return the deadline, or null if the current work has none
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds a deadline to the current thread, or clears it.
+     *
+     * @param deadline the deadline, or null to clear
+     * @return the deadline that was bound before, to be restored afterwards
+     */
+    public static Deadline set(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the time left until the deadline.
+     *
+     * @return remaining milliseconds, zero or negative once the deadline has passed
+     */
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Abandons the current stage if the deadline has passed.
+     *
+     * @param stage name of the stage, used in the exception message
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public void check(String stage) {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Request deadline exceeded before " + stage);
+        }
+    }
+
+    /**
+     * Shortens a timeout to the remaining budget.
+     *
+     * @param timeoutMs the stage's own timeout in milliseconds
+     * @return the smaller of the timeout and the remaining budget, at least one millisecond
+     */
+    public long capMillis(long timeoutMs) {
+        return Math.max(1, Math.min(timeoutMs, remainingMillis()));
+    }
+
+    /**
+     * Wraps work so that it runs with this deadline bound, on whichever thread runs it.
+     *
+     * @param work the work to wrap
+     * @param <T> the result type
+     * @return the wrapped work
+     */
+    public <T> Supplier<T> bind(Supplier<T> work) {
+        return () -> {
+            Deadline previous = set(this);
+            try {
+                return work.get();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * Wraps a function so that it runs with this deadline bound, on whichever thread runs it.
+     *
+     * @param function the function to wrap
+     * @param <A> the argument type
+     * @param <R> the result type
+     * @return the wrapped function
+     */
+    public <A, R> Function<A, R> bind(Function<A, R> function) {
+        return argument -> bind(() -> function.apply(argument)).get();
+    }
+}
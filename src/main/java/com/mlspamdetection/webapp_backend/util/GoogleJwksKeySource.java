@@ -0,0 +1,118 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches Google's ID token signing keys from its JSON Web Key Set endpoint.
+ *
+ * <p>The cache lifetime is the response's {@code Cache-Control: max-age} minus its {@code Age},
+ * or {@code app.google.keys.default-max-age-seconds} when the response carries neither. The URL is
+ * configurable so that a local key server can stand in for Google.</p>
+ */
+@Component
+public class GoogleJwksKeySource implements GooglePublicKeys.KeySource {
+
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+
+    /**
+     * URL of the JSON Web Key Set.
+     */
+    @Value("${app.google.keys.url:https://www.googleapis.com/oauth2/v3/certs}")
+    private String url;
+
+    /**
+     * Timeout in milliseconds for fetching the keys.
+     */
+    @Value("${app.google.keys.timeout-ms:5000}")
+    private long timeoutMs;
+
+    /**
+     * Cache lifetime in seconds when the response does not specify one.
+     */
+    @Value("${app.google.keys.default-max-age-seconds:3600}")
+    private long defaultMaxAgeSeconds;
+
+    public GoogleJwksKeySource(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Override
+    public GooglePublicKeys.KeySet fetch() throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .GET()
+                .build();
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching " + url, e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Fetching " + url + " returned HTTP " + response.statusCode());
+        }
+
+        Map<String, PublicKey> keys = parseKeys(objectMapper.readTree(response.body()));
+        if (keys.isEmpty()) {
+            throw new IOException("No RSA keys in response from " + url);
+        }
+        return new GooglePublicKeys.KeySet(keys, maxAge(response));
+    }
+
+    private static Map<String, PublicKey> parseKeys(JsonNode jwks) throws IOException {
+        Map<String, PublicKey> keys = new HashMap<>();
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+            for (JsonNode jwk : jwks.path("keys")) {
+                if (!"RSA".equals(jwk.path("kty").asText()) || !jwk.hasNonNull("kid")) {
+                    continue;
+                }
+                BigInteger modulus = new BigInteger(1, decoder.decode(jwk.path("n").asText()));
+                BigInteger exponent = new BigInteger(1, decoder.decode(jwk.path("e").asText()));
+                keys.put(jwk.get("kid").asText(), keyFactory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IOException("Invalid key in JSON Web Key Set", e);
+        }
+        return keys;
+    }
+
+    private Duration maxAge(HttpResponse<?> response) {
+        long maxAgeSeconds = response.headers().firstValue("Cache-Control")
+                .map(MAX_AGE::matcher)
+                .filter(Matcher::find)
+                .map(matcher -> Long.parseLong(matcher.group(1)))
+                .orElse(defaultMaxAgeSeconds);
+        long ageSeconds = response.headers().firstValueAsLong("Age").orElse(0);
+        return Duration.ofSeconds(Math.max(0, maxAgeSeconds - ageSeconds));
+    }
+}
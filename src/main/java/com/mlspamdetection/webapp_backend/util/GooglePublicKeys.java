@@ -0,0 +1,198 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the public keys Google signs ID tokens with, refreshed in the background.
+ *
+ * <p>Keys come from a pluggable {@link KeySource}, which also reports how long they may be cached
+ * (the {@code Cache-Control: max-age} of Google's response). A background thread fetches the key
+ * set again {@code refreshMargin} before it expires, so verification never waits for a fetch once
+ * the first one has succeeded. Concurrent fetches are coalesced into one.</p>
+ *
+ * <p>If a refresh fails, the previous keys stay in use after they expire, for up to
+ * {@code maxStale}, while the refresh is retried every {@code minRefreshInterval}. A token signed
+ * with a key that is not in the cached set, as happens right after Google rotates its keys,
+ * triggers an immediate refresh, but at most once per {@code minRefreshInterval} so that tokens
+ * with made-up key ids cannot be used to hammer the key endpoint.</p>
+ */
+@Slf4j
+public class GooglePublicKeys implements AutoCloseable {
+
+    private static final String REFRESH_KEY = "keys";
+
+    /**
+     * Supplies the current key set.
+     */
+    @FunctionalInterface
+    public interface KeySource {
+
+        /**
+         * Fetches the current keys.
+         *
+         * @return the keys and how long they may be cached
+         * @throws IOException if the keys cannot be fetched or parsed
+         */
+        KeySet fetch() throws IOException;
+    }
+
+    /**
+     * A fetched key set.
+     *
+     * @param keys public keys by key id
+     * @param maxAge how long the keys may be used without fetching them again
+     */
+    public record KeySet(Map<String, PublicKey> keys, Duration maxAge) {
+    }
+
+    private record Snapshot(Map<String, PublicKey> keys, long fetchedAtNanos, long expiresAtNanos) {
+    }
+
+    private final KeySource source;
+    private final long minRefreshIntervalNanos;
+    private final long maxStaleNanos;
+    private final long refreshMarginNanos;
+    private final ScheduledExecutorService scheduler;
+    private final SingleFlight<String, Snapshot> refreshes = new SingleFlight<>();
+
+    private volatile Snapshot snapshot;
+    private volatile long lastAttemptNanos;
+
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder fetchFailures = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder unknownKeyRefreshes = new LongAdder();
+
+    /**
+     * Creates the cache; call {@link #start()} to fetch the keys ahead of the first token.
+     *
+     * @param source where the keys are fetched from
+     * @param minRefreshInterval minimum time between fetches that are not scheduled refreshes
+     * @param maxStale how long expired keys are still used while refreshes fail
+     * @param refreshMargin how long before expiry the keys are refreshed
+     */
+    public GooglePublicKeys(KeySource source, Duration minRefreshInterval, Duration maxStale, Duration refreshMargin) {
+        this.source = source;
+        this.minRefreshIntervalNanos = minRefreshInterval.toNanos();
+        this.maxStaleNanos = maxStale.toNanos();
+        this.refreshMarginNanos = refreshMargin.toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "google-keys-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lastAttemptNanos = System.nanoTime() - minRefreshIntervalNanos;
+    }
+
+    /**
+     * Starts fetching the keys in the background.
+     */
+    public void start() {
+        schedule(0);
+    }
+
+    /**
+     * Returns the key with the given id.
+     *
+     * @param keyId the {@code kid} from the token header
+     * @return the key, or null if Google does not currently publish a key with that id
+     * @throws UncheckedIOException if no usable keys are cached and they cannot be fetched
+     */
+    public PublicKey get(String keyId) {
+        Snapshot current = snapshot;
+        long now = System.nanoTime();
+        if (current == null || now - current.expiresAtNanos > maxStaleNanos) {
+            current = refresh();
+        } else if (now - current.expiresAtNanos >= 0) {
+            staleHits.increment();
+        }
+
+        PublicKey key = current.keys.get(keyId);
+        if (key == null && System.nanoTime() - lastAttemptNanos >= minRefreshIntervalNanos) {
+            unknownKeyRefreshes.increment();
+            try {
+                key = refresh().keys.get(keyId);
+            } catch (UncheckedIOException e) {
+                log.warn("Could not refresh Google signing keys for unknown key id: {}", e.getMessage());
+            }
+        }
+        return key;
+    }
+
+    private Snapshot refresh() {
+        return refreshes.execute(REFRESH_KEY, () -> {
+            lastAttemptNanos = System.nanoTime();
+            fetches.increment();
+            KeySet keySet;
+            try {
+                keySet = source.fetch();
+            } catch (IOException e) {
+                fetchFailures.increment();
+                throw new UncheckedIOException("Could not fetch Google signing keys", e);
+            }
+            long fetchedAt = System.nanoTime();
+            Snapshot fetched = new Snapshot(Map.copyOf(keySet.keys()), fetchedAt, fetchedAt + keySet.maxAge().toNanos());
+            snapshot = fetched;
+            return fetched;
+        });
+    }
+
+    private void backgroundRefresh() {
+        long delayNanos;
+        try {
+            Snapshot fetched = refresh();
+            delayNanos = Math.max(minRefreshIntervalNanos, fetched.expiresAtNanos - fetched.fetchedAtNanos - refreshMarginNanos);
+        } catch (RuntimeException e) {
+            log.warn("Google signing key refresh failed, retrying in {} s: {}",
+                    TimeUnit.NANOSECONDS.toSeconds(minRefreshIntervalNanos), e.getMessage());
+            delayNanos = minRefreshIntervalNanos;
+        }
+        schedule(delayNanos);
+    }
+
+    private void schedule(long delayNanos) {
+        try {
+            scheduler.schedule(this::backgroundRefresh, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed
+        }
+    }
+
+    /**
+     * Returns the cached key count, the age of the keys and the fetch counters.
+     *
+     * @return key cache metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("keys", current != null ? current.keys.size() : 0);
+        stats.put("ageSeconds", current != null ? TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - current.fetchedAtNanos) : -1);
+        stats.put("expiresInSeconds", current != null ? TimeUnit.NANOSECONDS.toSeconds(current.expiresAtNanos - System.nanoTime()) : -1);
+        stats.put("fetches", fetches.sum());
+        stats.put("fetchFailures", fetchFailures.sum());
+        stats.put("staleHits", staleHits.sum());
+        stats.put("unknownKeyRefreshes", unknownKeyRefreshes.sum());
+        return stats;
+    }
+
+    /**
+     * Stops the background refresh.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
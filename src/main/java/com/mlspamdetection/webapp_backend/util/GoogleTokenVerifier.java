@@ -1,43 +1,118 @@
 package com.mlspamdetection.webapp_backend.util;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
-import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Verifies Google ID tokens from the Sign in with Google button.
+ *
+ * <p>The verifier and its {@link GooglePublicKeys} cache live as long as the application, so the
+ * signing keys are fetched once and then refreshed in the background, rather than on each login.
+ * Tokens must be RS256-signed by a current Google key, issued by Google for
+ * {@code spring.security.oauth2.client.registration.google.client-id}, and unexpired.</p>
+ */
 @Component
 public class GoogleTokenVerifier {
+
+    private static final List<String> ISSUERS = List.of("accounts.google.com", "https://accounts.google.com");
+    private static final long ACCEPTABLE_TIME_SKEW_SECONDS = 300;
+
+    private final GooglePublicKeys.KeySource keySource;
+    private final JsonFactory jsonFactory = GsonFactory.getDefaultInstance();
+
     @Value("${spring.security.oauth2.client.registration.google.client-id}")
     private String clientId;
 
+    /**
+     * Minimum time in seconds between key fetches that are not scheduled refreshes.
+     */
+    @Value("${app.google.keys.min-refresh-interval-seconds:30}")
+    private long minRefreshIntervalSeconds;
+
+    /**
+     * How long in seconds expired keys are still used while they cannot be refreshed.
+     */
+    @Value("${app.google.keys.max-stale-seconds:21600}")
+    private long maxStaleSeconds;
+
+    /**
+     * How long in seconds before expiry the keys are refreshed.
+     */
+    @Value("${app.google.keys.refresh-margin-seconds:300}")
+    private long refreshMarginSeconds;
+
+    private List<String> audience;
+    private GooglePublicKeys publicKeys;
+
+    public GoogleTokenVerifier(GooglePublicKeys.KeySource keySource) {
+        this.keySource = keySource;
+    }
+
+    /**
+     * Creates the key cache and starts fetching the keys.
+     */
+    @PostConstruct
+    void init() {
+        audience = Collections.singletonList(clientId);
+        publicKeys = new GooglePublicKeys(keySource, Duration.ofSeconds(minRefreshIntervalSeconds),
+                Duration.ofSeconds(maxStaleSeconds), Duration.ofSeconds(refreshMarginSeconds));
+        publicKeys.start();
+    }
+
+    /**
+     * Stops refreshing the keys.
+     */
+    @PreDestroy
+    void close() {
+        publicKeys.close();
+    }
+
     public GoogleUserData verify(String idTokenString) {
         try {
-            GoogleIdTokenVerifier verifier = new GoogleIdTokenVerifier.Builder(
-                    new NetHttpTransport(), new GsonFactory())
-                    .setAudience(Collections.singletonList(clientId))
-                    .build();
-
-            GoogleIdToken idToken = verifier.verify(idTokenString);
-            if ( idToken != null) {
-                GoogleIdToken.Payload payload = idToken.getPayload();
-
-                return new GoogleUserData(
-                    payload.getSubject(),
-                    payload.getEmail(),
-                    (String) payload.get("name"),
-                    (String) payload.get("picture")
-                );
-            } else {
+            GoogleIdToken idToken = GoogleIdToken.parse(jsonFactory, idTokenString);
+            if (!"RS256".equals(idToken.getHeader().getAlgorithm()) || idToken.getHeader().getKeyId() == null) {
                 throw new RuntimeException("Invalid Google ID token");
             }
-        } catch (GeneralSecurityException | IOException e) {
+            PublicKey key = publicKeys.get(idToken.getHeader().getKeyId());
+            if (key == null
+                    || !idToken.verifySignature(key)
+                    || !idToken.verifyIssuer(ISSUERS)
+                    || !idToken.verifyAudience(audience)
+                    || !idToken.verifyTime(System.currentTimeMillis(), ACCEPTABLE_TIME_SKEW_SECONDS)) {
+                throw new RuntimeException("Invalid Google ID token");
+            }
+
+            GoogleIdToken.Payload payload = idToken.getPayload();
+            return new GoogleUserData(
+                payload.getSubject(),
+                payload.getEmail(),
+                (String) payload.get("name"),
+                (String) payload.get("picture")
+            );
+        } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
             throw new RuntimeException("Error verifying Google ID token", e);
         }
     }
+
+    /**
+     * Returns the signing key cache metrics.
+     *
+     * @return key cache metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        return publicKeys.stats();
+    }
 }
@@ -7,6 +7,10 @@ public class GoogleUserData {
     private String pictureUrl;
 
     public GoogleUserData(String subject, String email, String name, String picture) {
+        this.googleId = subject;
+        this.email = email;
+        this.name = name;
+        this.pictureUrl = picture;
     }
 
     public GoogleUserData() {
@@ -0,0 +1,139 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.ConsumptionProbe;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rate limiter that spends tokens leased in batches from a shared bucket.
+ *
+ * <p>Each key keeps a local lease of up to {@code leaseSize} tokens taken from a {@link LeaseSource},
+ * typically a database row shared by all replicas. Requests spend local tokens without any remote
+ * call; only when the lease is spent, or older than {@code leaseTtl}, is a new batch requested.
+ * Unspent tokens of an expired lease are dropped, never returned, so a replica can only be stricter
+ * than the shared limit, by at most {@code leaseSize - 1} tokens per key and replica.</p>
+ *
+ * <p>When the source has no tokens left, the time until its next token is remembered and requests
+ * for that key are rejected locally until then, so clients that are already limited do not cause
+ * remote calls either.</p>
+ */
+public class LeasingRateLimiter {
+
+    /**
+     * Shared bucket store that tokens are leased from.
+     */
+    @FunctionalInterface
+    public interface LeaseSource {
+
+        /**
+         * Takes up to the requested number of tokens from a key's shared bucket.
+         *
+         * @param key the bucket key
+         * @param tokens the number of tokens wanted
+         * @return the tokens granted, possibly none
+         */
+        Lease lease(String key, long tokens);
+    }
+
+    /**
+     * Tokens granted by a {@link LeaseSource}.
+     *
+     * @param granted number of tokens granted
+     * @param nanosToNextToken time until the shared bucket has a token again, used when none were granted
+     */
+    public record Lease(long granted, long nanosToNextToken) {
+    }
+
+    private final LeaseSource source;
+    private final long leaseSize;
+    private final long leaseTtlNanos;
+    private final Cache<String, LocalLease> leases;
+
+    private final LongAdder remoteLeases = new LongAdder();
+
+    /**
+     * Creates a limiter.
+     *
+     * @param source the shared bucket store
+     * @param leaseSize number of tokens requested per lease
+     * @param leaseTtl maximum age of a lease before unspent tokens are dropped
+     * @param maxKeys maximum number of keys holding a local lease
+     */
+    public LeasingRateLimiter(LeaseSource source, long leaseSize, Duration leaseTtl, long maxKeys) {
+        this.source = source;
+        this.leaseSize = leaseSize;
+        this.leaseTtlNanos = leaseTtl.toNanos();
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(leaseTtl)
+                .build();
+    }
+
+    /**
+     * Spends one token for a key, leasing a new batch if the local one is spent.
+     *
+     * @param key the bucket key
+     * @return the consumption result; the remaining count refers to the local lease
+     */
+    public ConsumptionProbe tryConsume(String key) {
+        LocalLease lease = leases.get(key, k -> new LocalLease());
+        lease.lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (lease.tokens > 0 && now - lease.leasedAt < leaseTtlNanos) {
+                lease.tokens--;
+                return ConsumptionProbe.consumed(lease.tokens, 0);
+            }
+            if (now - lease.rejectedUntil < 0) {
+                long wait = lease.rejectedUntil - now;
+                return ConsumptionProbe.rejected(0, wait, wait);
+            }
+
+            remoteLeases.increment();
+            Lease granted = source.lease(key, leaseSize);
+            now = System.nanoTime();
+            if (granted.granted() <= 0) {
+                lease.tokens = 0;
+                lease.rejectedUntil = now + granted.nanosToNextToken();
+                return ConsumptionProbe.rejected(0, granted.nanosToNextToken(), granted.nanosToNextToken());
+            }
+            lease.tokens = granted.granted() - 1;
+            lease.leasedAt = now;
+            return ConsumptionProbe.consumed(lease.tokens, 0);
+        } finally {
+            lease.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of keys holding a local lease.
+     *
+     * @return the estimated key count
+     */
+    public long keyCount() {
+        return leases.estimatedSize();
+    }
+
+    /**
+     * Returns the number of calls made to the lease source.
+     *
+     * @return the remote lease count
+     */
+    public long remoteLeaseCount() {
+        return remoteLeases.sum();
+    }
+
+    /**
+     * Local lease of one key.
+     */
+    private static final class LocalLease {
+        final ReentrantLock lock = new ReentrantLock();
+        long tokens;
+        long leasedAt;
+        long rejectedUntil = System.nanoTime();
+    }
+}
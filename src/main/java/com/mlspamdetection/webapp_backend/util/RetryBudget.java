@@ -0,0 +1,88 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits retries to a fraction of regular traffic.
+ *
+ * <p>Every first attempt deposits {@code ratio} tokens and every retry withdraws one, so retries
+ * can never exceed about {@code ratio} of all calls. The balance is capped at {@code maxTokens},
+ * which also bounds the burst of retries allowed after a quiet period. When the dependency is
+ * down, the budget runs dry quickly and retries stop amplifying the load on it.</p>
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private final ReentrantLock lock = new ReentrantLock();
+    private double tokens;
+
+    private long retriesAllowed;
+    private long retriesDenied;
+
+    /**
+     * Creates a full retry budget.
+     *
+     * @param ratio tokens deposited per first attempt, i.e. the allowed retries per call
+     * @param maxTokens maximum number of retries that can be saved up
+     */
+    public RetryBudget(double ratio, double maxTokens) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    /**
+     * Records a first attempt, earning a fraction of a retry.
+     */
+    public void deposit() {
+        lock.lock();
+        try {
+            tokens = Math.min(maxTokens, tokens + ratio);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes one retry from the budget.
+     *
+     * @return true if the retry may be made, false if the budget is exhausted
+     */
+    public boolean tryWithdraw() {
+        lock.lock();
+        try {
+            if (tokens >= 1.0) {
+                tokens -= 1.0;
+                retriesAllowed++;
+                return true;
+            }
+            retriesDenied++;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current balance and retry counters.
+     *
+     * @return retry budget metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("availableRetries", Math.floor(tokens));
+            stats.put("maxRetries", maxTokens);
+            stats.put("ratio", ratio);
+            stats.put("retriesAllowed", retriesAllowed);
+            stats.put("retriesDenied", retriesDenied);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
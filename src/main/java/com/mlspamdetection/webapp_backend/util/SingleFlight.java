@@ -0,0 +1,185 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import com.mlspamdetection.webapp_backend.exception.DeadlineExceededException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into a single execution.
+ *
+ * <p>The first caller for a key becomes the leader and runs the call. Callers that arrive with
+ * the same key while the leader is still running wait for the leader's outcome instead of
+ * running the call again, and receive the same result or exception. Once the call finishes the
+ * key is released, so the next caller starts a fresh execution.</p>
+ *
+ * <p>{@link #executeAsync(Object, Supplier)} does the same for calls that return a future; blocking
+ * and asynchronous callers of the same key join each other's calls.</p>
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Runs the call for a key, or joins the call already running for it.
+     *
+     * @param key the key identifying identical calls
+     * @param call the call to run if no identical call is in flight
+     * @return the result of the call
+     * @throws RuntimeException the exception thrown by the call, for the leader and all joined callers
+     */
+    public V execute(K key, Supplier<V> call) {
+        return execute(key, call, null);
+    }
+
+    /**
+     * Runs the call for a key, or joins the call already running for it and waits for it until
+     * a deadline.
+     *
+     * <p>The deadline bounds only this caller's wait: a joined call keeps running for the other
+     * callers. The leader runs the call on its own thread, so it waits for as long as the call
+     * takes.</p>
+     *
+     * @param key the key identifying identical calls
+     * @param call the call to run if no identical call is in flight
+     * @param waitDeadline deadline for waiting on a joined call, or null to wait until it finishes
+     * @return the result of the call
+     * @throws DeadlineExceededException if the deadline passes while waiting on a joined call
+     * @throws RuntimeException the exception thrown by the call, for the leader and all joined callers
+     */
+    public V execute(K key, Supplier<V> call, Deadline waitDeadline) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            coalesced.increment();
+            return waitDeadline != null ? await(running, waitDeadline) : await(running);
+        }
+
+        executions.increment();
+        try {
+            V result = call.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Runs the call for a key on an executor, or joins the call already running for it, and
+     * waits for it until a deadline.
+     *
+     * <p>Unlike {@link #execute(Object, Supplier, Deadline)}, the deadline also bounds the leader:
+     * the call runs on the executor and keeps running for the joined callers after the leader
+     * has given up.</p>
+     *
+     * @param key the key identifying identical calls
+     * @param call the call to run if no identical call is in flight
+     * @param waitDeadline deadline for waiting on the call, or null to wait until it finishes
+     * @param executor the executor running the call
+     * @return the result of the call
+     * @throws DeadlineExceededException if the deadline passes while waiting on the call
+     * @throws RuntimeException the exception thrown by the call, for the leader and all joined callers
+     */
+    public V execute(K key, Supplier<V> call, Deadline waitDeadline, Executor executor) {
+        CompletableFuture<V> running = executeAsync(key, () -> CompletableFuture.supplyAsync(call, executor));
+        return waitDeadline != null ? await(running, waitDeadline) : await(running);
+    }
+
+    /**
+     * Starts the asynchronous call for a key, or joins the call already running for it.
+     *
+     * @param key the key identifying identical calls
+     * @param call the call to start if no identical call is in flight
+     * @return a future completed with the outcome of the call
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            coalesced.increment();
+            return running.copy();
+        }
+
+        executions.increment();
+        CompletableFuture<V> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            inFlight.remove(key, own);
+            if (error != null) {
+                own.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                own.complete(value);
+            }
+        });
+        return own.copy();
+    }
+
+    /**
+     * Returns how many calls ran and how many were coalesced into a running call.
+     *
+     * @return single-flight metrics suitable for an admin response
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.size());
+        stats.put("executions", executions.sum());
+        stats.put("coalesced", coalesced.sum());
+        return stats;
+    }
+
+    private V await(CompletableFuture<V> running, Deadline waitDeadline) {
+        waitDeadline.check("joining an identical call");
+        try {
+            return running.get(waitDeadline.capMillis(Long.MAX_VALUE), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Request deadline exceeded waiting for an identical call");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for an identical call", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private V await(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+-- One-off migration of refresh and verification tokens from the plaintext columns on users to
+-- SHA-256 digests in auth_tokens. Run it once with psql after the first startup of the version
+-- that introduced auth_tokens, which creates the table:
+--
+--   psql "$DATABASE_URL" -f src/main/resources/db/migrate-plaintext-tokens.sql
+--
+-- Requires PostgreSQL 13 or later for gen_random_uuid(). The application never runs this script.
+BEGIN;
+
+-- Refresh tokens were JWTs: keep each live one until its exp claim, as a session of its own
+INSERT INTO auth_tokens (token_hash, type, user_id, family_id, created_at, expires_at, revoked)
+SELECT encode(sha256(convert_to(u.refresh_token, 'UTF8')), 'hex'), 'REFRESH', u.id,
+       gen_random_uuid()::text, now(), claims.expires_at, false
+FROM users u
+CROSS JOIN LATERAL (
+    SELECT to_timestamp((convert_from(decode(rpad(translate(split_part(u.refresh_token, '.', 2), '-_', '+/'),
+                (length(split_part(u.refresh_token, '.', 2)) + 3) / 4 * 4, '='), 'base64'), 'UTF8')::json ->> 'exp')::bigint)
+           AS expires_at
+) claims
+WHERE u.refresh_token IS NOT NULL
+  AND claims.expires_at > now()
+ON CONFLICT (token_hash) DO NOTHING;
+
+-- Verification tokens had no expiry: give pending ones the default app.tokens.verification-ttl-hours
+INSERT INTO auth_tokens (token_hash, type, user_id, family_id, created_at, expires_at, revoked)
+SELECT encode(sha256(convert_to(u.verification_token, 'UTF8')), 'hex'), 'VERIFICATION', u.id,
+       NULL, now(), now() + interval '48 hours', false
+FROM users u
+WHERE u.verification_token IS NOT NULL
+  AND u.is_verified IS NOT TRUE
+ON CONFLICT (token_hash) DO NOTHING;
+
+ALTER TABLE users DROP COLUMN verification_token;
+ALTER TABLE users DROP COLUMN refresh_token;
+
+COMMIT;
@@ -0,0 +1,120 @@
+package com.mlspamdetection.webapp_backend.filter;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Admits, sheds and releases requests through the admission control filter.
+ */
+class AdmissionControlFilterTest {
+
+    private static final FilterChain SYNC = (request, response) -> { };
+    private static final FilterChain ASYNC = (request, response) -> request.startAsync(request, response);
+
+    private AdmissionControlFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new AdmissionControlFilter();
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "targetQueueMs", 10L);
+        ReflectionTestUtils.setField(filter, "intervalMs", 50L);
+        ReflectionTestUtils.setField(filter, "retryAfterSeconds", 2);
+        for (String priority : new String[]{"health", "auth", "admin", "interactive", "bulk"}) {
+            ReflectionTestUtils.setField(filter, priority + "MaxConcurrent", 1);
+            ReflectionTestUtils.setField(filter, priority + "MaxQueued", 1);
+        }
+        filter.createLimiters();
+    }
+
+    @Test
+    void releasesTheSlotWhenASynchronousRequestReturns() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request("/api/predict"), response, SYNC);
+            assertEquals(200, response.getStatus());
+        }
+        assertEquals(0, stats("interactive").get("inFlight"));
+        assertEquals(3L, stats("interactive").get("admitted"));
+    }
+
+    @Test
+    void holdsTheSlotOfAnAsynchronousRequestUntilItCompletes() throws Exception {
+        MockHttpServletRequest request = request("/api/predict");
+        filter.doFilter(request, new MockHttpServletResponse(), ASYNC);
+        assertEquals(1, stats("interactive").get("inFlight"));
+
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+
+        assertEquals(0, stats("interactive").get("inFlight"));
+    }
+
+    @Test
+    void releasesTheSlotOfAFailedAsynchronousRequestOnlyOnce() throws Exception {
+        MockHttpServletRequest request = request("/api/predict");
+        filter.doFilter(request, new MockHttpServletResponse(), ASYNC);
+
+        MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+        AsyncEvent event = new AsyncEvent(asyncContext, request, null);
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onError(event);
+            listener.onTimeout(event);
+        }
+        asyncContext.complete();
+
+        assertEquals(0, stats("interactive").get("inFlight"));
+        filter.doFilter(request("/api/predict"), new MockHttpServletResponse(), ASYNC);
+        assertEquals(1, stats("interactive").get("inFlight"));
+    }
+
+    @Test
+    void shedsWith503AndRetryAfterWhenTheClassIsFull() throws Exception {
+        filter.doFilter(request("/api/predict/batch"), new MockHttpServletResponse(), ASYNC);
+
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        filter.doFilter(request("/api/predict/batch"), shed, SYNC);
+
+        assertEquals(503, shed.getStatus());
+        assertEquals("2", shed.getHeader("Retry-After"));
+        assertEquals(1L, stats("bulk").get("shed"));
+
+        // Other classes have their own slots
+        MockHttpServletResponse interactive = new MockHttpServletResponse();
+        filter.doFilter(request("/api/predict"), interactive, SYNC);
+        assertEquals(200, interactive.getStatus());
+    }
+
+    @Test
+    void leavesPathsOutsideTheApiAlone() throws Exception {
+        filter.doFilter(request("/api/predict"), new MockHttpServletResponse(), ASYNC);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request("/index.html"), response, SYNC);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(1L, stats("interactive").get("admitted"));
+        assertEquals(0L, stats("interactive").get("shed"));
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> stats(String priority) {
+        return (Map<String, Object>) filter.stats().get(priority);
+    }
+}
@@ -0,0 +1,109 @@
+package com.mlspamdetection.webapp_backend.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the token work done by {@link JwtAuthenticationFilter} per request.
+ *
+ * <p>{@code legacy} reproduces the previous filter: the signing key is rebuilt and the token parsed
+ * and verified three times. {@code parseOnce} verifies a different token each time with the shared
+ * key and parser, and {@code cachedClaims} repeats one token, as a client does between logins.
+ * Run with {@code mvn test -Dtest=JwtAuthenticationBenchmark -Dbenchmark=true}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(0)
+public class JwtAuthenticationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+    private static final int TOKENS = 100_000;
+
+    private JwtUtil jwtUtil;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpiration", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaxSize", 10_000L);
+        jwtUtil.init();
+
+        // More distinct tokens than the cache holds, so parseOnce measures verification
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = jwtUtil.generateToken(new User("user" + i + "@example.com", "", List.of()), List.of("USER"));
+        }
+    }
+
+    @Benchmark
+    public Object legacy() {
+        String token = nextToken();
+        String username = legacyClaims(token).getSubject();
+        legacyClaims(token);
+        List<?> roles = legacyClaims(token).get("roles", List.class);
+        return username + roles.stream().map(role -> new SimpleGrantedAuthority("ROLE_" + role)).toList();
+    }
+
+    @Benchmark
+    public Object parseOnce() {
+        Claims claims = jwtUtil.parseVerifiedClaims(nextToken());
+        Collection<? extends GrantedAuthority> authorities = jwtUtil.getAuthorities(claims);
+        return claims.getSubject() + authorities;
+    }
+
+    @Benchmark
+    public Object cachedClaims() {
+        Claims claims = jwtUtil.parseVerifiedClaims(tokens[0]);
+        Collection<? extends GrantedAuthority> authorities = jwtUtil.getAuthorities(claims);
+        return claims.getSubject() + authorities;
+    }
+
+    private String nextToken() {
+        next = (next + 1) % TOKENS;
+        return tokens[next];
+    }
+
+    private static Claims legacyClaims(String token) {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtAuthenticationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,147 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.mlspamdetection.webapp_backend.model.AuthToken;
+import com.mlspamdetection.webapp_backend.model.User;
+import com.mlspamdetection.webapp_backend.repo.AuthTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Rotates refresh tokens and redeems verification tokens against an in-memory token table.
+ */
+class AuthTokenServiceTest {
+
+    private final List<AuthToken> tokens = new ArrayList<>();
+    private AuthTokenService service;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        AuthTokenRepository repository = mock(AuthTokenRepository.class);
+        when(repository.save(any(AuthToken.class))).thenAnswer(invocation -> {
+            tokens.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(repository.findByTokenHashForUpdate(anyString())).thenAnswer(invocation -> tokens.stream()
+                .filter(t -> t.getTokenHash().equals(invocation.getArgument(0)))
+                .findFirst());
+        when(repository.revokeFamily(anyString())).thenAnswer(invocation -> {
+            List<AuthToken> family = tokens.stream()
+                    .filter(t -> invocation.getArgument(0).equals(t.getFamilyId()) && !t.isRevoked())
+                    .toList();
+            family.forEach(t -> t.setRevoked(true));
+            return family.size();
+        });
+        when(repository.deleteByUserAndType(anyLong(), any())).thenAnswer(invocation -> {
+            int before = tokens.size();
+            tokens.removeIf(t -> t.getUser().getId().equals(invocation.getArgument(0)) && t.getType() == invocation.getArgument(1));
+            return before - tokens.size();
+        });
+        doAnswer(invocation -> tokens.remove(invocation.<AuthToken>getArgument(0))).when(repository).delete(any(AuthToken.class));
+
+        service = new AuthTokenService(repository, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "refreshTokenExpirationMs", 60_000L);
+        ReflectionTestUtils.setField(service, "verificationTtlHours", 48L);
+
+        user = new User();
+        ReflectionTestUtils.setField(user, "id", 1L);
+    }
+
+    @Test
+    void rotatesRefreshTokenIntoItsSuccessor() {
+        String first = service.issueRefreshToken(user);
+
+        Optional<AuthTokenService.Rotation> rotation = service.rotateRefreshToken(first);
+
+        assertTrue(rotation.isPresent());
+        assertEquals(user, rotation.get().user());
+        assertNotEquals(first, rotation.get().refreshToken());
+        assertTrue(service.rotateRefreshToken(rotation.get().refreshToken()).isPresent());
+        assertEquals(2L, service.stats().get("refreshed"));
+    }
+
+    @Test
+    void revokesTheWholeFamilyWhenARotatedTokenIsPresentedAgain() {
+        String first = service.issueRefreshToken(user);
+        String otherSession = service.issueRefreshToken(user);
+        String successor = service.rotateRefreshToken(first).orElseThrow().refreshToken();
+
+        assertTrue(service.rotateRefreshToken(first).isEmpty());
+
+        // The successor belongs to the reused family and is revoked with it
+        assertTrue(service.rotateRefreshToken(successor).isEmpty());
+        assertEquals(1L, service.stats().get("reuseDetected"));
+        // Other sessions of the same user keep working
+        assertTrue(service.rotateRefreshToken(otherSession).isPresent());
+    }
+
+    @Test
+    void rejectsExpiredRefreshToken() {
+        ReflectionTestUtils.setField(service, "refreshTokenExpirationMs", -1_000L);
+        String expired = service.issueRefreshToken(user);
+
+        assertTrue(service.rotateRefreshToken(expired).isEmpty());
+        assertEquals(0L, service.stats().get("reuseDetected"));
+    }
+
+    @Test
+    void rejectsUnknownTokensAndVerificationTokensPresentedForRefresh() {
+        String verification = service.issueVerificationToken(user);
+
+        assertTrue(service.rotateRefreshToken("unknown").isEmpty());
+        assertTrue(service.rotateRefreshToken(verification).isEmpty());
+    }
+
+    @Test
+    void verificationTokenCanBeUsedOnlyOnce() {
+        String token = service.issueVerificationToken(user);
+
+        assertEquals(Optional.of(user), service.consumeVerificationToken(token));
+        assertTrue(service.consumeVerificationToken(token).isEmpty());
+    }
+
+    @Test
+    void rejectsExpiredVerificationTokenAndDeletesIt() {
+        ReflectionTestUtils.setField(service, "verificationTtlHours", -1L);
+        String token = service.issueVerificationToken(user);
+
+        assertTrue(service.consumeVerificationToken(token).isEmpty());
+        assertTrue(tokens.isEmpty());
+    }
+
+    @Test
+    void newVerificationTokenReplacesThePreviousOne() {
+        String previous = service.issueVerificationToken(user);
+        String current = service.issueVerificationToken(user);
+
+        assertTrue(service.consumeVerificationToken(previous).isEmpty());
+        assertFalse(service.consumeVerificationToken(current).isEmpty());
+    }
+
+    @Test
+    void storesOnlyTheTokenDigest() {
+        String token = service.issueRefreshToken(user);
+
+        assertEquals(1, tokens.size());
+        assertNotEquals(token, tokens.get(0).getTokenHash());
+        assertEquals(AuthTokenService.hash(token), tokens.get(0).getTokenHash());
+        assertEquals(64, tokens.get(0).getTokenHash().length());
+    }
+}
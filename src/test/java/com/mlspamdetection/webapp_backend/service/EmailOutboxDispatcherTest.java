@@ -0,0 +1,141 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.mlspamdetection.webapp_backend.model.EmailOutboxMessage;
+import com.mlspamdetection.webapp_backend.repo.EmailOutboxRepository;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Delivers outbox batches to an in-process SMTP server.
+ */
+class EmailOutboxDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension smtp = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final List<EmailOutboxMessage> outbox = new ArrayList<>();
+    private EmailOutboxRepository repository;
+    private EmailOutboxDispatcher dispatcher;
+    private JavaMailSenderImpl mailSender;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(EmailOutboxRepository.class);
+        when(repository.findDueForUpdate(any(), any())).thenAnswer(invocation -> outbox.stream()
+                .filter(m -> m.getStatus() == EmailOutboxMessage.Status.PENDING)
+                .filter(m -> !m.getNextAttemptAt().isAfter(invocation.getArgument(0)))
+                .toList());
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+
+        EmailService emailService = new EmailService();
+        ReflectionTestUtils.setField(emailService, "mailSender", mailSender);
+
+        dispatcher = new EmailOutboxDispatcher(repository, emailService, mailSender, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(dispatcher, "enabled", true);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 50);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 2);
+        ReflectionTestUtils.setField(dispatcher, "initialBackoffMs", 5000L);
+        ReflectionTestUtils.setField(dispatcher, "maxBackoffMs", 60000L);
+        ReflectionTestUtils.setField(dispatcher, "claimTimeoutSeconds", 300L);
+        ReflectionTestUtils.setField(dispatcher, "retentionHours", 24L);
+        ReflectionTestUtils.setField(dispatcher, "sweepBatchSize", 100);
+    }
+
+    @Test
+    void sendsQueuedEmailsInOneBatch() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            queue("user" + i + "@example.com");
+        }
+
+        assertEquals(3, dispatcher.dispatchBatch());
+
+        MimeMessage[] received = smtp.getReceivedMessages();
+        assertEquals(3, received.length);
+        assertEquals("Email Verification - ML Spam Detection", received[0].getSubject());
+        for (EmailOutboxMessage message : outbox) {
+            assertEquals(EmailOutboxMessage.Status.SENT, message.getStatus());
+            assertEquals(1, message.getAttempts());
+            assertNotNull(message.getSentAt());
+        }
+        assertEquals(0, dispatcher.dispatchBatch());
+    }
+
+    @Test
+    void retriesWithBackoffWhileServerIsDownThenGivesUp() {
+        mailSender.setPort(1);
+        EmailOutboxMessage message = queue("user@example.com");
+
+        Instant before = Instant.now();
+        assertEquals(1, dispatcher.dispatchBatch());
+        assertEquals(EmailOutboxMessage.Status.PENDING, message.getStatus());
+        assertEquals(1, message.getAttempts());
+        assertTrue(!message.getNextAttemptAt().isBefore(before.plusSeconds(5)));
+        assertNotNull(message.getLastError());
+
+        // Not due yet, so the next poll leaves it alone
+        assertEquals(0, dispatcher.dispatchBatch());
+
+        message.setNextAttemptAt(Instant.now());
+        assertEquals(1, dispatcher.dispatchBatch());
+        assertEquals(EmailOutboxMessage.Status.FAILED, message.getStatus());
+        assertEquals(0, smtp.getReceivedMessages().length);
+    }
+
+    @Test
+    void sweepsFinishedEmailsOlderThanTheRetentionInBatches() {
+        when(repository.deleteFinishedBefore(any(), anyInt())).thenReturn(100, 100, 7);
+
+        Instant now = Instant.now();
+        dispatcher.sweepFinished();
+
+        ArgumentCaptor<Instant> before = ArgumentCaptor.forClass(Instant.class);
+        verify(repository, times(3)).deleteFinishedBefore(before.capture(), eq(100));
+        assertTrue(!before.getValue().isAfter(now.minus(Duration.ofHours(24)).plusSeconds(1)));
+        assertEquals(207L, dispatcher.stats().get("sweptSinceStart"));
+    }
+
+    @Test
+    void backoffDoublesUpToTheMaximum() {
+        assertEquals(Duration.ofSeconds(5), dispatcher.backoff(1));
+        assertEquals(Duration.ofSeconds(10), dispatcher.backoff(2));
+        assertEquals(Duration.ofSeconds(40), dispatcher.backoff(4));
+        assertEquals(Duration.ofSeconds(60), dispatcher.backoff(10));
+    }
+
+    private EmailOutboxMessage queue(String recipient) {
+        EmailOutboxMessage message = new EmailOutboxMessage(recipient, "Email Verification - ML Spam Detection",
+                "<p>Verify</p>", Instant.now());
+        ReflectionTestUtils.setField(message, "id", (long) outbox.size() + 1);
+        outbox.add(message);
+        return message;
+    }
+}
@@ -0,0 +1,107 @@
+package com.mlspamdetection.webapp_backend.service;
+
+import com.mlspamdetection.webapp_backend.model.User;
+import com.mlspamdetection.webapp_backend.security.AuthenticatedUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the burst and sustained windows of the per-user quotas against a controlled clock.
+ *
+ * <p>Users get 5 requests per 10 s (one every 2 s) and 8 requests per hour (one every 450 s).</p>
+ */
+class UserQuotaServiceTest {
+
+    private static final long T = TimeUnit.DAYS.toNanos(1);
+
+    private final AuthenticatedUser user = new AuthenticatedUser(1L, "user@example.com", User.UserRole.USER, true);
+    private UserQuotaService quotas;
+
+    @BeforeEach
+    void setUp() {
+        quotas = new UserQuotaService();
+        ReflectionTestUtils.setField(quotas, "enabled", true);
+        ReflectionTestUtils.setField(quotas, "burstPeriodSeconds", 10L);
+        ReflectionTestUtils.setField(quotas, "sustainedPeriodSeconds", 3600L);
+        ReflectionTestUtils.setField(quotas, "userBurstLimit", 5L);
+        ReflectionTestUtils.setField(quotas, "userSustainedLimit", 8L);
+        ReflectionTestUtils.setField(quotas, "adminBurstLimit", 0L);
+        ReflectionTestUtils.setField(quotas, "adminSustainedLimit", 0L);
+        ReflectionTestUtils.setField(quotas, "userOverrides", new String[]{"7:1:0"});
+        ReflectionTestUtils.setField(quotas, "maxTrackedUsers", 1000L);
+        quotas.init();
+    }
+
+    @Test
+    void allowsTheBurstLimitThenRejectsUntilARequestHasRefilled() {
+        for (long remaining = 4; remaining >= 0; remaining--) {
+            assertEquals(new UserQuotaService.Decision(true, 5, remaining, 0), quotas.tryAcquire(user, 1, T));
+        }
+
+        assertEquals(new UserQuotaService.Decision(false, 5, 0, 2), quotas.tryAcquire(user, 1, T));
+        assertTrue(quotas.tryAcquire(user, 1, T + seconds(2)).allowed());
+    }
+
+    @Test
+    void roundsRetryAfterUpToWholeSeconds() {
+        quotas.tryAcquire(user, 5, T);
+
+        assertEquals(2, quotas.tryAcquire(user, 1, T + 1).retryAfterSeconds());
+        assertEquals(1, quotas.tryAcquire(user, 1, T + seconds(1)).retryAfterSeconds());
+        assertEquals(1, quotas.tryAcquire(user, 1, T + seconds(2) - 1).retryAfterSeconds());
+    }
+
+    @Test
+    void refundsTheBurstWindowWhenTheSustainedWindowRejects() {
+        quotas.tryAcquire(user, 5, T);
+        quotas.tryAcquire(user, 3, T + seconds(10));
+
+        // Without the refund, these rejections would use up the burst window and be reported against it
+        for (int i = 0; i < 10; i++) {
+            assertEquals(new UserQuotaService.Decision(false, 8, 0, 430), quotas.tryAcquire(user, 1, T + seconds(20)));
+        }
+        assertEquals(new UserQuotaService.Decision(true, 8, 0, 0), quotas.tryAcquire(user, 1, T + seconds(450)));
+    }
+
+    @Test
+    void chargesABatchOneRequestPerItemAllOrNothing() {
+        assertEquals(new UserQuotaService.Decision(true, 5, 2, 0), quotas.tryAcquire(user, 3, T));
+
+        assertEquals(new UserQuotaService.Decision(false, 5, 0, 2), quotas.tryAcquire(user, 3, T));
+        // The rejected batch took nothing, so two single requests still fit
+        assertTrue(quotas.tryAcquire(user, 2, T).allowed());
+    }
+
+    @Test
+    void chargesABatchLargerThanTheLimitTheWholeWindow() {
+        assertEquals(new UserQuotaService.Decision(true, 5, 0, 0), quotas.tryAcquire(user, 50, T));
+        assertEquals(new UserQuotaService.Decision(false, 5, 0, 2), quotas.tryAcquire(user, 1, T));
+
+        AuthenticatedUser other = new AuthenticatedUser(2L, "other@example.com", User.UserRole.USER, true);
+        quotas.tryAcquire(other, 1, T);
+        assertEquals(new UserQuotaService.Decision(false, 5, 0, 2), quotas.tryAcquire(other, 50, T));
+    }
+
+    @Test
+    void appliesUserOverridesAndUnlimitedTiers() {
+        AuthenticatedUser overridden = new AuthenticatedUser(7L, "vip@example.com", User.UserRole.USER, true);
+        assertEquals(new UserQuotaService.Decision(true, 1, 0, 0), quotas.tryAcquire(overridden, 1, T));
+        assertEquals(new UserQuotaService.Decision(false, 1, 0, 10), quotas.tryAcquire(overridden, 1, T));
+
+        AuthenticatedUser admin = new AuthenticatedUser(3L, "admin@example.com", User.UserRole.ADMIN, true);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(new UserQuotaService.Decision(true, -1, -1, 0), quotas.tryAcquire(admin, 1, T));
+        }
+        assertEquals(new UserQuotaService.Decision(true, -1, -1, 0), quotas.tryAcquire(user, 0, T));
+    }
+
+    private static long seconds(long seconds) {
+        return TimeUnit.SECONDS.toNanos(seconds);
+    }
+}
@@ -0,0 +1,120 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks admission, queueing and shedding of the CoDel limiter with real waiting threads.
+ */
+class CoDelLimiterTest {
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    void admitsUpToTheLimitWithoutWaiting() {
+        CoDelLimiter limiter = new CoDelLimiter(2, 2, 10, 100);
+
+        assertTrue(limiter.tryAcquire(0));
+        assertTrue(limiter.tryAcquire(0));
+        assertFalse(limiter.tryAcquire(0));
+
+        limiter.release();
+        assertTrue(limiter.tryAcquire(0));
+        assertEquals(3L, limiter.stats().get("admitted"));
+        assertEquals(1L, limiter.stats().get("shed"));
+    }
+
+    @Test
+    void queuedCallerTakesTheReleasedSlot() throws Exception {
+        CoDelLimiter limiter = new CoDelLimiter(1, 1, 10, 5_000);
+        assertTrue(limiter.tryAcquire(0));
+
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> limiter.tryAcquire(5_000), threads);
+        awaitQueued(limiter, 1);
+        limiter.release();
+
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, limiter.stats().get("inFlight"));
+        assertEquals(0, limiter.stats().get("queued"));
+    }
+
+    @Test
+    void shedsWithoutWaitingOnceMaxQueuedCallersWait() throws Exception {
+        CoDelLimiter limiter = new CoDelLimiter(1, 1, 10, 5_000);
+        assertTrue(limiter.tryAcquire(0));
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> limiter.tryAcquire(5_000), threads);
+        awaitQueued(limiter, 1);
+
+        long start = System.nanoTime();
+        assertFalse(limiter.tryAcquire(5_000));
+        assertTrue(elapsedMillis(start) < 1_000);
+
+        limiter.release();
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void waitsUpToTheIntervalOrTheCallersBound() {
+        CoDelLimiter limiter = new CoDelLimiter(1, 10, 10, 200);
+        assertTrue(limiter.tryAcquire(0));
+
+        long start = System.nanoTime();
+        assertFalse(limiter.tryAcquire(5_000));
+        assertTrue(elapsedMillis(start) >= 190);
+
+        start = System.nanoTime();
+        assertFalse(limiter.tryAcquire(50));
+        long elapsed = elapsedMillis(start);
+        assertTrue(elapsed >= 45 && elapsed < 190);
+    }
+
+    @Test
+    void holdsNewCallersToTheTargetWhileTheQueueIsStanding() throws Exception {
+        CoDelLimiter limiter = new CoDelLimiter(1, 10, 20, 400);
+        assertTrue(limiter.tryAcquire(0));
+
+        // Two overlapping waiters keep the queue non-empty for longer than the interval
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> limiter.tryAcquire(5_000), threads);
+        awaitQueued(limiter, 1);
+        Thread.sleep(200);
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> limiter.tryAcquire(5_000), threads);
+        assertFalse(first.get(5, TimeUnit.SECONDS));
+        awaitQueued(limiter, 1);
+        assertTrue(limiter.isOverloaded());
+
+        long start = System.nanoTime();
+        assertFalse(limiter.tryAcquire(5_000));
+        assertTrue(elapsedMillis(start) < 150);
+
+        assertFalse(second.get(5, TimeUnit.SECONDS));
+        assertFalse(limiter.isOverloaded());
+        limiter.release();
+        assertTrue(limiter.tryAcquire(0));
+    }
+
+    private static void awaitQueued(CoDelLimiter limiter, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Integer.valueOf(queued).equals(limiter.stats().get("queued"))) {
+            assertTrue(System.nanoTime() < deadline, "caller did not queue");
+            Thread.sleep(1);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
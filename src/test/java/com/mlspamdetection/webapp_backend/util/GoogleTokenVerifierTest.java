@@ -0,0 +1,138 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.json.webtoken.JsonWebSignature;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Verifies Google ID tokens against signing keys served by a local key server.
+ */
+class GoogleTokenVerifierTest {
+
+    private static final String CLIENT_ID = "test-client.apps.googleusercontent.com";
+
+    private final AtomicInteger keyRequests = new AtomicInteger();
+    private volatile int keyStatus = 200;
+    private volatile String cacheControl = "public, max-age=3600";
+
+    private KeyPair keyPair;
+    private HttpServer keyServer;
+    private GoogleTokenVerifier verifier;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+
+        keyServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        keyServer.createContext("/certs", exchange -> {
+            keyRequests.incrementAndGet();
+            byte[] body = jwks("key-1").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+            exchange.sendResponseHeaders(keyStatus, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        keyServer.start();
+
+        GoogleJwksKeySource keySource = new GoogleJwksKeySource(new ObjectMapper());
+        ReflectionTestUtils.setField(keySource, "url", "http://127.0.0.1:" + keyServer.getAddress().getPort() + "/certs");
+        ReflectionTestUtils.setField(keySource, "timeoutMs", 2000L);
+        ReflectionTestUtils.setField(keySource, "defaultMaxAgeSeconds", 3600L);
+
+        verifier = new GoogleTokenVerifier(keySource);
+        ReflectionTestUtils.setField(verifier, "clientId", CLIENT_ID);
+        ReflectionTestUtils.setField(verifier, "minRefreshIntervalSeconds", 1L);
+        ReflectionTestUtils.setField(verifier, "maxStaleSeconds", 3600L);
+        ReflectionTestUtils.setField(verifier, "refreshMarginSeconds", 0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifier.close();
+        keyServer.stop(0);
+    }
+
+    @Test
+    void verifiesTokensWithoutFetchingKeysAgain() throws Exception {
+        verifier.init();
+        verifier.verify(token("key-1", CLIENT_ID));
+        int fetched = keyRequests.get();
+        for (int i = 0; i < 5; i++) {
+            GoogleUserData user = verifier.verify(token("key-1", CLIENT_ID));
+            assertEquals("google-subject", user.getGoogleId());
+            assertEquals("user@example.com", user.getEmail());
+            assertEquals("Test User", user.getName());
+        }
+        assertEquals(fetched, keyRequests.get());
+    }
+
+    @Test
+    void rejectsWrongAudienceAndUnknownKey() throws Exception {
+        verifier.init();
+        assertThrows(RuntimeException.class, () -> verifier.verify(token("key-1", "another-client")));
+        assertThrows(RuntimeException.class, () -> verifier.verify(token("key-2", CLIENT_ID)));
+    }
+
+    @Test
+    void keepsUsingExpiredKeysWhileTheKeyServerFails() throws Exception {
+        cacheControl = "max-age=0";
+        verifier.init();
+        verifier.verify(token("key-1", CLIENT_ID));
+
+        keyStatus = 503;
+        GoogleUserData user = verifier.verify(token("key-1", CLIENT_ID));
+        assertEquals("user@example.com", user.getEmail());
+    }
+
+    private String token(String keyId, String audience) throws Exception {
+        JsonWebSignature.Header header = new JsonWebSignature.Header()
+                .setAlgorithm("RS256")
+                .setKeyId(keyId);
+        long now = System.currentTimeMillis() / 1000;
+        GoogleIdToken.Payload payload = new GoogleIdToken.Payload()
+                .setIssuer("https://accounts.google.com")
+                .setAudience(audience)
+                .setSubject("google-subject")
+                .setEmail("user@example.com")
+                .setIssuedAtTimeSeconds(now)
+                .setExpirationTimeSeconds(now + 3600);
+        payload.set("name", "Test User");
+        return JsonWebSignature.signUsingRsaSha256(keyPair.getPrivate(), GsonFactory.getDefaultInstance(), header, payload);
+    }
+
+    private String jwks(String keyId) {
+        RSAPublicKey key = (RSAPublicKey) keyPair.getPublic();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return "{\"keys\":[{\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\",\"kid\":\"" + keyId + "\","
+                + "\"n\":\"" + encoder.encodeToString(unsigned(key.getModulus().toByteArray())) + "\","
+                + "\"e\":\"" + encoder.encodeToString(unsigned(key.getPublicExponent().toByteArray())) + "\"}]}";
+    }
+
+    private static byte[] unsigned(byte[] bytes) {
+        if (bytes.length > 1 && bytes[0] == 0) {
+            byte[] trimmed = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, trimmed, 0, trimmed.length);
+            return trimmed;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,70 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Compares the per-request cost of local-only and leased rate limiting.
+ *
+ * <p>The shared bucket is simulated with a fixed round trip of {@value #ROUND_TRIP_MICROS} microseconds
+ * instead of a real database, so the benchmark runs anywhere and measures how well leasing keeps
+ * that round trip off the request path. Lease size 1 is equivalent to asking the database on every
+ * request. Run with {@code mvn test -Dtest=LeasingRateLimiterBenchmark -Dbenchmark=true}.</p>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class LeasingRateLimiterBenchmark {
+
+    private static final long ROUND_TRIP_MICROS = 500;
+    private static final int KEYS = 100;
+    private static final int REQUESTS = 50_000;
+
+    @Test
+    void compareLocalAndLeasedModes() {
+        Map<String, Bucket> localBuckets = new HashMap<>();
+        measure("local buckets", key -> localBuckets
+                .computeIfAbsent(key, k -> Bucket.builder()
+                        .addLimit(Bandwidth.classic(Long.MAX_VALUE / 2, Refill.greedy(1, Duration.ofSeconds(1))))
+                        .build())
+                .tryConsume(1));
+
+        for (long leaseSize : new long[]{1, 2, 10, 100}) {
+            LeasingRateLimiter limiter = new LeasingRateLimiter(LeasingRateLimiterBenchmark::simulatedLease,
+                    leaseSize, Duration.ofMinutes(10), 2 * KEYS);
+            measure("leased, lease size " + leaseSize, key -> limiter.tryConsume(key).isConsumed());
+        }
+    }
+
+    private static LeasingRateLimiter.Lease simulatedLease(String key, long tokens) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(ROUND_TRIP_MICROS));
+        return new LeasingRateLimiter.Lease(tokens, 0);
+    }
+
+    private static void measure(String mode, Predicate<String> limiter) {
+        String[] keys = new String[KEYS];
+        String[] warmupKeys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "10.0.0." + i;
+            warmupKeys[i] = "10.0.1." + i;
+        }
+        // Warm up on other keys, so measured keys start without a lease
+        for (int i = 0; i < REQUESTS / 10; i++) {
+            limiter.test(warmupKeys[i % KEYS]);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            limiter.test(keys[i % KEYS]);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-24s %10.2f us/request%n", mode, elapsed / 1_000.0 / REQUESTS);
+    }
+}
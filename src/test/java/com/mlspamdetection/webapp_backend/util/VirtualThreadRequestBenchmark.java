@@ -0,0 +1,157 @@
+package com.mlspamdetection.webapp_backend.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JMH comparison of platform and virtual threads serving a burst of blocking {@code /api/predict}
+ * requests.
+ *
+ * <p>Each request takes a {@link CircuitBreaker} permission, waits {@value #ML_CALL_MILLIS} ms for a
+ * simulated ML call, then borrows one of {@value #CONNECTIONS} pooled connections (Hikari's default
+ * pool size) and spends {@value #JDBC_MICROS} microseconds on a simulated log INSERT. {@code platform}
+ * runs the burst on {@value #PLATFORM_THREADS} threads, Tomcat's default; {@code virtual} starts one
+ * virtual thread per request and is only run on JDK 21 or later. {@code jdbcGuard} selects how the
+ * connection is held during the round trip: {@code lock} like pgjdbc's ReentrantLock-based
+ * {@code ResourceLock}, or {@code monitor}, a {@code synchronized} block, which on JDK 21 pins the
+ * carrier thread for the whole round trip. Run with
+ * {@code mvn test -Dtest=VirtualThreadRequestBenchmark -Dbenchmark=true} on a JDK 21 runtime.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(0)
+public class VirtualThreadRequestBenchmark {
+
+    private static final int REQUESTS = 2_000;
+    private static final int PLATFORM_THREADS = 200;
+    private static final int CONNECTIONS = 10;
+    private static final long ML_CALL_MILLIS = 50;
+    private static final long JDBC_MICROS = 500;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"lock", "monitor"})
+    public String jdbcGuard;
+
+    private ExecutorService executor;
+    private CircuitBreaker circuitBreaker;
+    private BlockingQueue<Connection> connections;
+
+    @Setup
+    public void setUp() {
+        executor = "virtual".equals(threads) ? newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(PLATFORM_THREADS);
+        circuitBreaker = new CircuitBreaker("benchmark", 50, 20, 50, 10_000, 30_000, 5);
+        connections = new ArrayBlockingQueue<>(CONNECTIONS);
+        for (int i = 0; i < CONNECTIONS; i++) {
+            connections.add(new Connection());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            executor.execute(() -> {
+                try {
+                    handleRequest();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    private void handleRequest() throws InterruptedException {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return;
+        }
+        long start = System.nanoTime();
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(ML_CALL_MILLIS));
+        circuitBreaker.onSuccess(System.nanoTime() - start);
+
+        Connection connection = connections.take();
+        try {
+            if ("monitor".equals(jdbcGuard)) {
+                connection.writeSynchronized();
+            } else {
+                connection.writeLocked();
+            }
+        } finally {
+            connections.add(connection);
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads need JDK 21 or later", e);
+        }
+    }
+
+    /**
+     * A pooled JDBC connection whose round trip is guarded like a driver guards its socket.
+     */
+    private static final class Connection {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        void writeLocked() {
+            lock.lock();
+            try {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(JDBC_MICROS));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        synchronized void writeSynchronized() {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(JDBC_MICROS));
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void run() throws RunnerException {
+        String[] modes = Runtime.version().feature() >= 21 ? new String[]{"platform", "virtual"} : new String[]{"platform"};
+        new Runner(new OptionsBuilder()
+                .include(VirtualThreadRequestBenchmark.class.getSimpleName())
+                .param("threads", modes)
+                .build()).run();
+    }
+}